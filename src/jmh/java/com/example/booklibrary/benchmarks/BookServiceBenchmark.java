@@ -0,0 +1,139 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookFacet;
+import com.example.booklibrary.models.BookFilter;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.models.BookSort;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.JournalStorage;
+import com.example.booklibrary.storage.ReservationCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/***
+ * Benchmarks of BookService hot paths on generated catalogs of 1k, 100k and 1M books,
+ * with every tenth book reserved. Every operation is measured for throughput and average time.
+ * Allocation rate is measured by running with the GC profiler: -Djmh.args="-prof gc".
+ * Data files are kept with journal persistence, so checkout benchmarks measure the service
+ * and an append, not a rewrite of the whole library file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BookServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int catalogSize;
+
+    private Path dataDirectory;
+
+    private BookService bookService;
+
+    private BookFilter authorFilter;
+
+    private String author;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDirectory = Files.createTempDirectory("booklibrary-benchmark");
+        new CatalogGenerator(42).writeCatalog(dataDirectory, catalogSize);
+
+        bookService = new BookService(
+                new BookRepository(new JournalStorage<>(dataDirectory.resolve("library.json").toString(), new BookCodec())),
+                new ReservationRepository(new JournalStorage<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec())));
+        author = CatalogGenerator.authorOf(catalogSize / 2, catalogSize);
+        authorFilter = new BookFilter.Equals(BookFacet.AUTHOR, author);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /***
+     * Index of the next book, walking the catalog, so lookups do not hit one cached book.
+     */
+    private int nextIndex() {
+        next = next + 7919 < catalogSize ? next + 7919 : (next + 7919) % catalogSize;
+        return next;
+    }
+
+    @Benchmark
+    public Book findBookByGUID() {
+        return bookService.findBookByGUID(CatalogGenerator.GUIDOf(nextIndex()));
+    }
+
+    @Benchmark
+    public List<Book> getListOfBooks() {
+        return bookService.getListOfBooks();
+    }
+
+    @Benchmark
+    public Object getPageOfBooks() {
+        return bookService.getPageOfBooks(BookSort.NAME, null, null, 20);
+    }
+
+    /***
+     * Author filter served from the facet index.
+     */
+    @Benchmark
+    public List<Book> getBooksByParameter() {
+        return bookService.getBooksByParameter("author", author);
+    }
+
+    /***
+     * Author filter of several fields' grammar, which is served from the facet index.
+     */
+    @Benchmark
+    public List<Book> getBooksByFilter() {
+        return bookService.getBooksByFilter(authorFilter);
+    }
+
+    /***
+     * Taken books found in the catalog's index of taken books.
+     */
+    @Benchmark
+    public List<Book> findTakenBooksByIndex() {
+        return bookService.getBooksByParameter("taken or available books", "Taken");
+    }
+
+    /***
+     * Checkout of a reserved book (every tenth book is reserved), which is rejected without a write.
+     */
+    @Benchmark
+    public String takeReservedBook() {
+        int index = nextIndex() / 10 * 10;
+
+        return bookService.takeBook(new BookReservation("Reader", 14, CatalogGenerator.GUIDOf(index)));
+    }
+
+    /***
+     * Checkout of an available book and its return, so the catalog stays the same between invocations.
+     */
+    @Benchmark
+    public void takeAndReturnBook(Blackhole blackhole) {
+        String GUID = CatalogGenerator.GUIDOf(nextIndex() / 10 * 10 + 1);
+
+        blackhole.consume(bookService.takeBook(new BookReservation("Reader", 14, GUID)));
+        bookService.removeBooksByGUID(GUID, "reservations");
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.JournalStorage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/***
+ * Heap footprint of the books' catalog. A generated catalog is written to a library file and loaded
+ * by a BookRepository like at startup, so every book's strings are parsed from the file, and the
+ * heap, which stays in use after full garbage collections, is printed in total and per book.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Dbenchmark.main=com.example.booklibrary.benchmarks.CatalogFootprint -Djmh.args=1000000
+ */
+public class CatalogFootprint {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dataDirectory = Files.createTempDirectory("booklibrary-footprint");
+        new CatalogGenerator(42).writeCatalog(dataDirectory, size);
+
+        long before = usedHeap();
+        BookRepository repository = new BookRepository(new JournalStorage<>(dataDirectory.resolve("library.json").toString(), new BookCodec()));
+        long after = usedHeap();
+
+        System.out.printf("%d books: %.1f MB of heap, %d bytes per book%n",
+                repository.count(), (after - before) / 1e6, (after - before) / Math.max(1, repository.count()));
+
+        Reference.reachabilityFence(repository);
+        delete(dataDirectory);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.JsonRecordFile;
+import com.example.booklibrary.storage.ReservationCodec;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/***
+ * Generator of synthetic library and reservations files for benchmarks. Catalogs are generated
+ * from a seed, so every run and every release benchmarks the same data.
+ * Every author has about 20 books, there are 20 categories and 8 languages,
+ * and every tenth book is reserved, by persons having 3 books each.
+ */
+public class CatalogGenerator {
+
+    private static final String[] WORDS = {"The", "Great", "Night", "River", "Stone", "King", "House", "War", "Peace", "Love", "Time", "Garden"};
+
+    private static final String[] LANGUAGES = {"English", "Lithuanian", "German", "French", "Spanish", "Polish", "Latvian", "Italian"};
+
+    private final Random random;
+
+    public CatalogGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static String authorOf(int index, int size) {
+        return "Author " + index % Math.max(1, size / 20);
+    }
+
+    public static String GUIDOf(int index) {
+        return String.format("%07d%c", index, 'A' + index % 26);
+    }
+
+    /***
+     * Generates books with GUIDs GUIDOf(0) .. GUIDOf(size - 1).
+     * @param size count of books.
+     * @return list of books.
+     */
+    public List<Book> books(int size) {
+        List<Book> books = new ArrayList<>(size);
+
+        for(int i = 0; i < size; i++){
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            LocalDate publicationDate = LocalDate.of(1900, 1, 1).plusDays(random.nextInt(45_000));
+
+            books.add(new Book(name, authorOf(i, size), "Category " + i % 20, LANGUAGES[i % LANGUAGES.length],
+                    publicationDate, 1_000_000 + i, GUIDOf(i)));
+        }
+
+        return books;
+    }
+
+    /***
+     * Generates reservations of every tenth book, 3 books per person.
+     * @param books books of the catalog.
+     * @return list of reservations.
+     */
+    public List<BookReservation> reservations(List<Book> books) {
+        List<BookReservation> reservations = new ArrayList<>(books.size() / 10 + 1);
+
+        for(int i = 0; i < books.size(); i += 10){
+            reservations.add(new BookReservation("Person " + reservations.size() / 3, 1 + random.nextInt(30), books.get(i).getGUID()));
+        }
+
+        return reservations;
+    }
+
+    /***
+     * Writes a generated catalog of the given size to library.json and reservations.json in the directory.
+     * @param directory directory of the data files.
+     * @param size count of books.
+     */
+    public void writeCatalog(Path directory, int size) {
+        List<Book> books = books(size);
+
+        new JsonRecordFile<>(directory.resolve("library.json").toString(), new BookCodec()).write(books);
+        new JsonRecordFile<>(directory.resolve("reservations.json").toString(), new ReservationCodec()).write(reservations(books));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/***
+ * Throughput of concurrent checkouts (a checkout and a return of a book, like /takebook and its removal)
+ * in every durability mode, with the reservations kept in a snapshot or in a journal.
+ * Every thread takes its own books, so the threads only meet in the storage.
+ * Windows are the defaults of application.properties: no group commit window, 5 ms write-behind delay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(16)
+@Fork(1)
+public class DurabilityBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"sync", "group", "async"})
+    private String durability;
+
+    @Param({"snapshot", "journal"})
+    private String persistenceMode;
+
+    private Path dataDirectory;
+
+    private BookService bookService;
+
+    private DataStorage<BookReservation> reservationsStorage;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Checkouts {
+
+        private int thread = -1;
+
+        private int next;
+
+        private String nextGUID(DurabilityBenchmark benchmark) {
+            if(thread < 0)
+                thread = benchmark.threads.getAndIncrement();
+
+            next = (next + 1) % 50;
+            return CatalogGenerator.GUIDOf((thread * 50 + next) * 10 + 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDirectory = Files.createTempDirectory("booklibrary-durability");
+        new CatalogGenerator(42).writeCatalog(dataDirectory, CATALOG_SIZE);
+
+        Durability mode = Durability.fromPropertyName(durability);
+        long window = mode == Durability.ASYNC ? 5 : 0;
+        SnapshotFile<BookReservation> reservations = new JsonRecordFile<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec());
+        reservationsStorage = persistenceMode.equals("journal")
+                ? new JournalStorage<>(reservations, new ReservationCodec(), mode, window)
+                : new SnapshotStorage<>(reservations, mode, window);
+
+        bookService = new BookService(
+                new BookRepository(new JournalStorage<>(dataDirectory.resolve("library.json").toString(), new BookCodec())),
+                new ReservationRepository(reservationsStorage));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reservationsStorage.close();
+
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void takeAndReturnBook(Checkouts checkouts, Blackhole blackhole) {
+        String GUID = checkouts.nextGUID(this);
+
+        blackhole.consume(bookService.takeBook(new BookReservation("Reader " + checkouts.thread, 14, GUID)));
+        bookService.removeBooksByGUID(GUID, "reservations");
+    }
+}
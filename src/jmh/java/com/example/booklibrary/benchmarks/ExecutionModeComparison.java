@@ -0,0 +1,175 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.config.ExecutionConfiguration;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.DataStorage;
+import com.example.booklibrary.storage.JournalStorage;
+import com.example.booklibrary.storage.ReservationCodec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/***
+ * Load test of the execution modes on a simulated slow disk. A burst of requests is run
+ * on Tomcat's default pool of 200 platform threads and on a virtual thread per request,
+ * and the wall time and latency percentiles of both runs are printed.
+ * Every request waits 5 ms for the disk to read the catalog, and every twentieth request checks out
+ * a book and returns it, waiting 20 ms more for each write, so the threads are blocked, not busy.
+ * On runtimes without virtual threads only the platform run is made.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Dbenchmark.main=com.example.booklibrary.benchmarks.ExecutionModeComparison -Djmh.args=
+ */
+public class ExecutionModeComparison {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    private static final int REQUESTS = 20_000;
+
+    private static final int PLATFORM_THREADS = 200;
+
+    private static final long READ_MILLIS = 5;
+
+    private static final long WRITE_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        Path dataDirectory = Files.createTempDirectory("booklibrary-execution");
+        new CatalogGenerator(42).writeCatalog(dataDirectory, CATALOG_SIZE);
+
+        BookService bookService = new BookService(
+                new BookRepository(new SlowDiskStorage<>(new JournalStorage<>(dataDirectory.resolve("library.json").toString(), new BookCodec()))),
+                new ReservationRepository(new SlowDiskStorage<>(new JournalStorage<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec()))));
+
+        run("platform", () -> Executors.newFixedThreadPool(PLATFORM_THREADS), bookService);
+
+        if(Runtime.version().feature() >= 21){
+            run("virtual", ExecutionConfiguration::newVirtualThreadExecutor, bookService);
+        } else {
+            System.out.println("virtual: skipped, virtual threads need Java 21, running on Java " + Runtime.version().feature());
+        }
+
+        delete(dataDirectory);
+    }
+
+    private static void run(String mode, Supplier<ExecutorService> executors, BookService bookService) throws Exception {
+        runRequests(executors, bookService, REQUESTS / 10);
+
+        long start = System.nanoTime();
+        long[] latencies = runRequests(executors, bookService, REQUESTS);
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Arrays.sort(latencies);
+        System.out.printf("%s: %d requests in %d ms, %.0f requests/s, latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                mode, REQUESTS, wallMillis, REQUESTS * 1000.0 / Math.max(1, wallMillis),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+    }
+
+    /***
+     * Submits all the requests at once, like a burst of connections, and measures every request
+     * from its submission, so the time spent waiting for a free thread is counted.
+     */
+    private static long[] runRequests(Supplier<ExecutorService> executors, BookService bookService, int count) throws Exception {
+        long[] latencies = new long[count];
+        List<Future<?>> futures = new ArrayList<>(count);
+
+        ExecutorService executor = executors.get();
+
+        try {
+            for(int i = 0; i < count; i++){
+                int request = i;
+                long submitted = System.nanoTime();
+
+                futures.add(executor.submit(() -> {
+                    handle(bookService, request);
+                    latencies[request] = System.nanoTime() - submitted;
+                }));
+            }
+
+            for(Future<?> future : futures){
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        return latencies;
+    }
+
+    /***
+     * One request: every twentieth takes an available book and returns it, the others look up a book.
+     */
+    private static void handle(BookService bookService, int request) {
+        int index = request * 7919 % CATALOG_SIZE;
+        SlowDiskStorage.access(READ_MILLIS);
+
+        if(request % 20 == 0){
+            String GUID = CatalogGenerator.GUIDOf(index / 10 * 10 + 1);
+            bookService.takeBook(new BookReservation("Reader " + request, 14, GUID));
+            bookService.removeBooksByGUID(GUID, "reservations");
+        } else {
+            bookService.findBookByGUID(CatalogGenerator.GUIDOf(index));
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /***
+     * Storage, which waits like a slow disk before every write. The wait is made before the
+     * delegate's lock is taken, so concurrent writes wait in parallel, like requests queued on a disk.
+     */
+    private static class SlowDiskStorage<T> implements DataStorage<T> {
+
+        private final DataStorage<T> delegate;
+
+        private SlowDiskStorage(DataStorage<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        private static void access(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void load(Consumer<T> consumer) {
+            delegate.load(consumer);
+        }
+
+        @Override
+        public void recordAdded(T record, Supplier<? extends Collection<T>> state) {
+            access(WRITE_MILLIS);
+            delegate.recordAdded(record, state);
+        }
+
+        @Override
+        public void recordsAdded(Collection<T> records, Supplier<? extends Collection<T>> state) {
+            access(WRITE_MILLIS);
+            delegate.recordsAdded(records, state);
+        }
+
+        @Override
+        public void recordRemoved(String GUID, Supplier<? extends Collection<T>> state) {
+            access(WRITE_MILLIS);
+            delegate.recordRemoved(GUID, state);
+        }
+    }
+}
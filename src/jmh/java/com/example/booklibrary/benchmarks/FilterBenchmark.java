@@ -0,0 +1,90 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookFilter;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.JournalStorage;
+import com.example.booklibrary.storage.ReservationCodec;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/***
+ * Scaling of multi-field filters across cores on generated catalogs of 100k and 1M books.
+ * Every filter runs in a fork-join pool of the given parallelism, in which the parallel scan forks its tasks,
+ * so the time of the scan at 1, 2, 4 and 8 workers shows how it scales with the cores of the machine.
+ * The filter with an author is served from the facet index, so it stays as fast at any parallelism.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="FilterBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FilterBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int catalogSize;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private Path dataDirectory;
+
+    private BookService bookService;
+
+    private ForkJoinPool pool;
+
+    private BookFilter scannedFilter;
+
+    private BookFilter indexedFilter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDirectory = Files.createTempDirectory("booklibrary-benchmark");
+        new CatalogGenerator(42).writeCatalog(dataDirectory, catalogSize);
+
+        bookService = new BookService(
+                new BookRepository(new JournalStorage<>(dataDirectory.resolve("library.json").toString(), new BookCodec())),
+                new ReservationRepository(new JournalStorage<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec())));
+        pool = new ForkJoinPool(parallelism);
+        scannedFilter = BookFilter.parse("(language = English OR language = German) AND publicationDate >= 1990-01-01 AND ISBN < " + (1_000_000 + catalogSize / 2));
+        indexedFilter = BookFilter.parse("author = \"" + CatalogGenerator.authorOf(catalogSize / 2, catalogSize) + "\" AND publicationDate >= 1990-01-01");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /***
+     * Ranges and languages, which match about 3% of the books, found by the parallel scan.
+     */
+    @Benchmark
+    public List<Book> scanFilter() {
+        return pool.submit(() -> bookService.getBooksByFilter(scannedFilter)).join();
+    }
+
+    /***
+     * An author and a date range, found in the facet index and checked on the columns.
+     */
+    @Benchmark
+    public List<Book> indexedFilter() {
+        return pool.submit(() -> bookService.getBooksByFilter(indexedFilter)).join();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.ImportReport;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookImporter;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.ImportFormat;
+import com.example.booklibrary.storage.ReservationCodec;
+import com.example.booklibrary.storage.SnapshotStorage;
+import org.openjdk.jmh.annotations.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/***
+ * Scaling of the bulk import across cores: a generated CSV dump of 100k or 1M books is imported into an empty
+ * library kept in a snapshot file, with 1, 2, 4 and 8 workers parsing and validating the chunks.
+ * The catalog is written once per 100 chunks, so the time at 1 to 8 workers shows how much of the import
+ * runs in parallel and how much is left to the one writer.
+ * Run with: mvn -Pbenchmarks test-compile exec:exec -Djmh.args="ImportBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ImportBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int dumpSize;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private byte[] dump;
+
+    private Path dataDirectory;
+
+    private BookImporter bookImporter;
+
+    @Setup(Level.Trial)
+    public void generateDump() {
+        StringBuilder csv = new StringBuilder("GUID,Name,Author,Category,Language,Publication date,ISBN\n");
+
+        for(Book book : new CatalogGenerator(42).books(dumpSize)){
+            csv.append(book.getGUID()).append(',').append(book.getName()).append(',').append(book.getAuthor()).append(',')
+                    .append(book.getCategory()).append(',').append(book.getLanguage()).append(',')
+                    .append(book.getPublicationDate()).append(',').append(book.getISBN()).append('\n');
+        }
+
+        dump = csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        dataDirectory = Files.createTempDirectory("booklibrary-import");
+
+        BookService bookService = new BookService(
+                new BookRepository(new SnapshotStorage<>(dataDirectory.resolve("library.json").toString(), new BookCodec())),
+                new ReservationRepository(new SnapshotStorage<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec())));
+        bookImporter = new BookImporter(bookService, 1000, parallelism, 100);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public ImportReport importDump() {
+        return bookImporter.importBooks(new ByteArrayInputStream(dump), ImportFormat.CSV);
+    }
+}
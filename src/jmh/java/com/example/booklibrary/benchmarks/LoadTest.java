@@ -0,0 +1,309 @@
+package com.example.booklibrary.benchmarks;
+import com.example.booklibrary.BookLibraryApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/***
+ * Load test of the web pages over HTTP. The application is booted on a random port with a generated catalog
+ * (or a running one is driven by url=), and a mix of /getbook, /listbooks and /takebook requests is sent
+ * by plain java.net.http clients for the warm-up and the measured duration. Latencies of every endpoint
+ * are recorded in HdrHistograms and written with a summary by LoadTestReport, which can be compared with
+ * the summary of an earlier run (baseline=).
+ * Two models of the users:
+ * "closed" - users= users send a request, wait for the response and think= milliseconds, so the load drops,
+ * when the server slows down, and latency is measured from the send;
+ * "open" - requests arrive at rate= per second, whatever the server does, and latency is measured
+ * from the time the request was due, so the queueing of late requests is counted (no coordinated omission).
+ * At most connections= requests are in flight, later arrivals wait for a connection.
+ * Takes are made by a new reader each time, so they are not refused for the limit of books per person,
+ * but a book, which is already taken, is refused with a message, like it would be for a real user.
+ * Options are key=value, arguments starting with -- are passed to the application, for example:
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark.main=com.example.booklibrary.benchmarks.LoadTest
+ *     -Djmh.args="mode=open rate=2000 duration=60 mix=getbook:70,listbooks:25,takebook:5 --booklibrary.durability=group"
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "mode", "closed",
+            "users", "32",
+            "think", "0",
+            "rate", "1000",
+            "connections", "256",
+            "catalog", "100000",
+            "warmup", "10",
+            "duration", "60",
+            "mix", "getbook:70,listbooks:25,takebook:5",
+            "report", "target/loadtest");
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final long PROGRESS_SECONDS = 5;
+
+    private final Map<String, String> options;
+
+    private final int catalogSize;
+
+    private final NavigableMap<Integer, String> mix = new TreeMap<>();
+
+    private final int mixTotal;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final LoadTestReport report;
+
+    private URI base;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.catalogSize = intOption("catalog");
+
+        int total = 0;
+
+        for(String entry : options.get("mix").split(",")){
+            String[] weight = entry.split(":");
+
+            if(weight.length != 2 || !List.of("getbook", "listbooks", "takebook").contains(weight[0]))
+                throw new IllegalArgumentException("Wrong mix entry \"" + entry + "\", expected getbook|listbooks|takebook:weight.");
+
+            total += Integer.parseInt(weight[1]);
+            mix.put(total, weight[0]);
+        }
+
+        this.mixTotal = total;
+        this.report = new LoadTestReport(mix.values());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        List<String> applicationArgs = new ArrayList<>();
+
+        for(String arg : args){
+            if(arg.startsWith("--")){
+                applicationArgs.add(arg);
+            } else if(arg.contains("=")){
+                options.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("Wrong option \"" + arg + "\", expected key=value or --application.property=value.");
+            }
+        }
+
+        new LoadTest(options).run(applicationArgs);
+    }
+
+    private void run(List<String> applicationArgs) throws Exception {
+        Path dataDirectory = null;
+        ConfigurableApplicationContext application = null;
+
+        try {
+            if(options.containsKey("url")){
+                base = URI.create(options.get("url"));
+            } else {
+                dataDirectory = Files.createTempDirectory("booklibrary-loadtest");
+                new CatalogGenerator(42).writeCatalog(dataDirectory, catalogSize);
+                application = boot(dataDirectory, applicationArgs);
+                base = URI.create("http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort());
+            }
+
+            System.out.printf("%s load of %s, catalog of %d books, %s%n", options.get("mode"), base, catalogSize, describeLoad());
+
+            long start = System.nanoTime();
+            long measureStart = start + TimeUnit.SECONDS.toNanos(intOption("warmup"));
+            long end = measureStart + TimeUnit.SECONDS.toNanos(intOption("duration"));
+            ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+            progress.scheduleAtFixedRate(report::printInterval, PROGRESS_SECONDS, PROGRESS_SECONDS, TimeUnit.SECONDS);
+
+            try {
+                if(options.get("mode").equals("open")){
+                    runOpen(measureStart, end);
+                } else if(options.get("mode").equals("closed")){
+                    runClosed(measureStart, end);
+                } else {
+                    throw new IllegalArgumentException("Unknown mode: " + options.get("mode") + ", expected open or closed.");
+                }
+            } finally {
+                progress.shutdown();
+                progress.awaitTermination(1, TimeUnit.MINUTES);
+            }
+
+            Path reportDirectory = report.write(Path.of(options.get("report")), options, intOption("duration"));
+            System.out.println("Report: " + reportDirectory.toAbsolutePath());
+
+            if(options.containsKey("baseline"))
+                report.compare(Path.of(options.get("baseline")));
+        } finally {
+            if(application != null)
+                application.close();
+
+            if(dataDirectory != null)
+                delete(dataDirectory);
+        }
+    }
+
+    /***
+     * Boots the application in this JVM with the data files in the directory. The load is generated
+     * in the same JVM, so on a small machine the clients take some of the server's CPU,
+     * a separate server can be driven with url= instead.
+     */
+    private static ConfigurableApplicationContext boot(Path dataDirectory, List<String> applicationArgs) {
+        return new SpringApplicationBuilder(BookLibraryApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn",
+                        "booklibrary.library-file=" + dataDirectory.resolve("library.json"),
+                        "booklibrary.reservations-file=" + dataDirectory.resolve("reservations.json"))
+                .run(applicationArgs.toArray(String[]::new));
+    }
+
+    /***
+     * Every user sends its requests one by one, each user with its own seed.
+     */
+    private void runClosed(long measureStart, long end) throws InterruptedException {
+        int users = intOption("users");
+        long thinkMillis = intOption("think");
+        ExecutorService threads = Executors.newFixedThreadPool(users);
+
+        for(int user = 0; user < users; user++){
+            SplittableRandom random = new SplittableRandom(user);
+
+            threads.execute(() -> {
+                for(long sent = System.nanoTime(); sent < end; sent = System.nanoTime()){
+                    Request request = nextRequest(random);
+                    boolean ok;
+
+                    try {
+                        ok = succeeded(client.send(request.http(), HttpResponse.BodyHandlers.discarding()).statusCode());
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    if(sent >= measureStart)
+                        report.record(request.endpoint(), System.nanoTime() - sent, ok);
+
+                    if(thinkMillis > 0)
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkMillis));
+                }
+            });
+        }
+
+        threads.shutdown();
+        threads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /***
+     * Sends the requests at their due times from one thread, without waiting for the responses.
+     * Latency of every request is measured from its due time, so the wait for a connection
+     * and a late schedule are counted in it.
+     */
+    private void runOpen(long measureStart, long end) throws InterruptedException {
+        double intervalNanos = 1e9 / intOption("rate");
+        Semaphore connections = new Semaphore(intOption("connections"));
+        SplittableRandom random = new SplittableRandom(0);
+        long start = System.nanoTime();
+
+        for(long i = 0; ; i++){
+            long due = start + (long) (i * intervalNanos);
+
+            if(due >= end)
+                break;
+
+            long wait = due - System.nanoTime();
+
+            if(wait > 0)
+                LockSupport.parkNanos(wait);
+
+            Request request = nextRequest(random);
+            connections.acquire();
+
+            client.sendAsync(request.http(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                connections.release();
+
+                if(due >= measureStart)
+                    report.record(request.endpoint(), System.nanoTime() - due, error == null && succeeded(response.statusCode()));
+            });
+        }
+
+        connections.acquire(intOption("connections"));
+    }
+
+    private record Request(String endpoint, HttpRequest http) {}
+
+    /***
+     * Picks an endpoint by the mix and a random book. Listings alternate between the first page by name,
+     * a page of an author and a filter of several fields.
+     */
+    private Request nextRequest(SplittableRandom random) {
+        String endpoint = mix.higherEntry(random.nextInt(mixTotal)).getValue();
+        int book = random.nextInt(catalogSize);
+
+        HttpRequest http = switch(endpoint) {
+            case "getbook" -> post("/getbook", "bookGUID=" + CatalogGenerator.GUIDOf(book));
+            case "takebook" -> post("/takebook", "reservation=" + encode("Reader " + random.nextLong(Long.MAX_VALUE))
+                    + "&reservation=" + (1 + random.nextInt(60)) + "&reservation=" + CatalogGenerator.GUIDOf(book));
+            default -> switch(random.nextInt(3)) {
+                case 0 -> get("/listbooks?sort=name");
+                case 1 -> get("/listbooks?filter=author&value=" + encode(CatalogGenerator.authorOf(book, catalogSize)));
+                default -> get("/listbooks?where=" + encode("language = English AND ISBN < " + (1_000_000 + book)));
+            };
+        };
+
+        return new Request(endpoint, http);
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private HttpRequest post(String path, String form) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private static boolean succeeded(int status) {
+        return status >= 200 && status < 400;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private String describeLoad() {
+        return options.get("mode").equals("open")
+                ? options.get("rate") + " requests/s over at most " + options.get("connections") + " connections"
+                : options.get("users") + " users thinking " + options.get("think") + " ms";
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for(Path file : files.sorted(Comparator.reverseOrder()).toList()){
+                Files.delete(file);
+            }
+        }
+    }
+}
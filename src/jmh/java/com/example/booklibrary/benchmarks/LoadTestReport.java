@@ -0,0 +1,167 @@
+package com.example.booklibrary.benchmarks;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Latencies of a LoadTest by endpoint. Responses are recorded in nanoseconds into HdrHistogram recorders,
+ * which take values from many threads without locks, and are drained into the totals every interval.
+ * The report of a run is a directory with summary.json (options, throughput, errors and percentiles
+ * in milliseconds) and the full percentile distribution of every endpoint in <endpoint>.hgrm,
+ * which can be plotted with HdrHistogram's plotter next to the files of other runs.
+ */
+final class LoadTestReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+
+    private final Map<String, Histogram> totals = new LinkedHashMap<>();
+
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private long intervalStart = System.nanoTime();
+
+    LoadTestReport(Collection<String> endpoints) {
+        for(String endpoint : new LinkedHashSet<>(endpoints)){
+            recorders.put(endpoint, new Recorder(3));
+            totals.put(endpoint, new Histogram(3));
+            errors.put(endpoint, new LongAdder());
+        }
+    }
+
+    /***
+     * Records a response. Failed requests (errors, timeouts and 4xx/5xx statuses) are only counted.
+     * @param endpoint endpoint of the request.
+     * @param nanos latency of the request.
+     * @param ok true, if the request succeeded.
+     */
+    void record(String endpoint, long nanos, boolean ok) {
+        if(ok){
+            recorders.get(endpoint).recordValue(nanos);
+        } else {
+            errors.get(endpoint).increment();
+        }
+    }
+
+    /***
+     * Moves the latencies recorded since the last interval into the totals and prints their throughput and p99.
+     */
+    synchronized void printInterval() {
+        double seconds = (System.nanoTime() - intervalStart) / 1e9;
+        StringBuilder line = new StringBuilder();
+        intervalStart = System.nanoTime();
+
+        for(Map.Entry<String, Recorder> recorder : recorders.entrySet()){
+            Histogram interval = recorder.getValue().getIntervalHistogram();
+            totals.get(recorder.getKey()).add(interval);
+
+            if(interval.getTotalCount() > 0)
+                line.append(String.format("  %s %.0f/s p99 %.2f ms", recorder.getKey(), interval.getTotalCount() / seconds,
+                        interval.getValueAtPercentile(99) / NANOS_PER_MILLI));
+        }
+
+        System.out.println(line.length() == 0 ? "  warming up" : line);
+    }
+
+    /***
+     * Writes the report of the run into a new directory named by the time of the run and prints the summary.
+     * @param directory directory of the reports.
+     * @param options options of the run.
+     * @param seconds measured duration.
+     * @return directory of the report.
+     */
+    synchronized Path write(Path directory, Map<String, String> options, double seconds) throws IOException {
+        printInterval();
+
+        Path run = Files.createDirectories(directory.resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))));
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        summary.put("options", new TreeMap<>(options));
+        summary.put("seconds", seconds);
+        summary.put("endpoints", endpoints);
+
+        System.out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        for(Map.Entry<String, Histogram> total : totals.entrySet()){
+            Histogram histogram = total.getValue();
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("requests", histogram.getTotalCount());
+            endpoint.put("errors", errors.get(total.getKey()).sum());
+            endpoint.put("throughput", histogram.getTotalCount() / seconds);
+            endpoint.put("mean", histogram.getMean() / NANOS_PER_MILLI);
+
+            for(double percentile : PERCENTILES){
+                endpoint.put(percentileName(percentile), histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI);
+            }
+
+            endpoint.put("max", histogram.getMaxValue() / NANOS_PER_MILLI);
+            endpoints.put(total.getKey(), endpoint);
+
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(run.resolve(total.getKey() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(hgrm, NANOS_PER_MILLI);
+            }
+
+            System.out.printf("%-10s %10d %8d %10.0f %9.2f %9.2f %9.2f %9.2f %9.2f%n", total.getKey(), endpoint.get("requests"),
+                    endpoint.get("errors"), endpoint.get("throughput"), endpoint.get("p50"), endpoint.get("p90"),
+                    endpoint.get("p99"), endpoint.get("p99.9"), endpoint.get("max"));
+        }
+
+        mapper.writeValue(run.resolve("summary.json").toFile(), summary);
+
+        return run;
+    }
+
+    /***
+     * Prints the change of throughput and percentiles of every endpoint against an earlier run.
+     * @param baseline report directory or summary.json of the earlier run.
+     */
+    synchronized void compare(Path baseline) throws IOException {
+        Path file = Files.isDirectory(baseline) ? baseline.resolve("summary.json") : baseline;
+        JsonNode previous = mapper.readTree(file.toFile()).path("endpoints");
+
+        System.out.println("Change against " + file + ":");
+
+        for(Map.Entry<String, Histogram> total : totals.entrySet()){
+            JsonNode endpoint = previous.path(total.getKey());
+
+            if(endpoint.isMissingNode()){
+                System.out.printf("%-10s not in the baseline%n", total.getKey());
+                continue;
+            }
+
+            Histogram histogram = total.getValue();
+            StringBuilder line = new StringBuilder(String.format("%-10s", total.getKey()));
+
+            for(double percentile : PERCENTILES){
+                line.append(String.format(" %s %+.1f%%", percentileName(percentile),
+                        change(endpoint.path(percentileName(percentile)).asDouble(), histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI)));
+            }
+
+            line.append(String.format(" max %+.1f%%", change(endpoint.path("max").asDouble(), histogram.getMaxValue() / NANOS_PER_MILLI)));
+            System.out.println(line);
+        }
+    }
+
+    private static String percentileName(double percentile) {
+        return percentile == Math.rint(percentile) ? "p" + (int) percentile : "p" + percentile;
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) * 100 / before;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.booklibrary.config;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/***
+ * Chooses how requests are executed by the execution mode:
+ * "platform" - Tomcat's pool of platform threads (server.tomcat.threads.max),
+ * "virtual" - a new virtual thread for every request, so requests waiting for the disk
+ * do not hold a pooled thread, and streaming exports are written on virtual threads as well.
+ * Both use one executor, which is shut down with the context. Virtual threads need Java 21, on older runtimes
+ * the application fails to start in the "virtual" mode instead of silently using the pool.
+ */
+@Configuration
+public class ExecutionConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "booklibrary.execution-mode", havingValue = "virtual")
+    public ExecutorService virtualThreadExecutor() {
+        return newVirtualThreadExecutor();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "booklibrary.execution-mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequests(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /***
+     * Runs streaming responses (exports) on virtual threads too, instead of the pool of the MVC async executor.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "booklibrary.execution-mode", havingValue = "virtual")
+    public WebMvcConfigurer virtualThreadStreaming(ExecutorService virtualThreadExecutor) {
+        AsyncTaskExecutor executor = new TaskExecutorAdapter(virtualThreadExecutor);
+
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(executor);
+            }
+        };
+    }
+
+    /***
+     * Creates an executor, which starts a new virtual thread for every task. The executor is looked up
+     * at runtime, so the application still compiles and runs on Java 17 in the "platform" mode.
+     * @return virtual thread per task executor.
+     * @throws IllegalStateException if the runtime has no virtual threads.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Virtual thread execution mode needs Java 21, running on Java " + Runtime.version().feature(), e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.booklibrary.config;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.storage.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/***
+ * Creates storages of the library and reservations' data files by the persistence mode:
+ * "snapshot" - whole data file is rewritten on every mutation,
+ * "journal" - mutations are appended to a journal, which is compacted in the background.
+ * Books' library can be kept in the JSON data file or in the binary catalog format ("json" or "binary").
+ * Mutations reach the disk by the durability mode ("sync", "group" or "async", see Durability).
+ */
+@Configuration
+@EnableScheduling
+public class StorageConfiguration {
+
+    @Value("${booklibrary.persistence-mode:snapshot}")
+    private String persistenceMode;
+
+    @Value("${booklibrary.library-format:json}")
+    private String libraryFormat;
+
+    @Value("${booklibrary.durability:sync}")
+    private String durability;
+
+    @Value("${booklibrary.durability.group-commit-window:0}")
+    private long groupCommitWindow;
+
+    @Value("${booklibrary.durability.write-behind-delay:5}")
+    private long writeBehindDelay;
+
+    @Bean
+    public DataStorage<Book> libraryStorage(@Value("${booklibrary.library-file}") String location,
+                                            @Value("${booklibrary.library-binary-file}") String binaryLocation) {
+        SnapshotFile<Book> dataFile = switch (libraryFormat) {
+            case "json" -> new JsonRecordFile<>(location, new BookCodec());
+            case "binary" -> new BinaryCatalogFile(binaryLocation);
+            default -> throw new IllegalArgumentException("Unknown library format: " + libraryFormat);
+        };
+
+        return createStorage(dataFile, new BookCodec());
+    }
+
+    @Bean
+    public DataStorage<BookReservation> reservationsStorage(@Value("${booklibrary.reservations-file}") String location) {
+        return createStorage(new JsonRecordFile<>(location, new ReservationCodec()), new ReservationCodec());
+    }
+
+    private <T> DataStorage<T> createStorage(SnapshotFile<T> dataFile, RecordCodec<T> codec) {
+        Durability mode = Durability.fromPropertyName(durability);
+        long window = mode == Durability.ASYNC ? writeBehindDelay : groupCommitWindow;
+
+        return switch (persistenceMode) {
+            case "snapshot" -> new SnapshotStorage<>(dataFile, mode, window);
+            case "journal" -> new JournalStorage<>(dataFile, codec, mode, window);
+            default -> throw new IllegalArgumentException("Unknown persistence mode: " + persistenceMode);
+        };
+    }
+}
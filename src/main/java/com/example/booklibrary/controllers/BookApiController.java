@@ -0,0 +1,110 @@
+package com.example.booklibrary.controllers;
+import com.example.booklibrary.models.BatchItemResult;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookDetails;
+import com.example.booklibrary.models.ImportReport;
+import com.example.booklibrary.services.BookImporter;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.ImportFormat;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+
+/***
+ * JSON API of the library. Books are in the same format as in the library file:
+ * {"Name":..,"Author":..,"Category":..,"Language":..,"Publication date":"yyyy-MM-dd","ISBN":..,"GUID":..}
+ */
+@RestController
+@RequestMapping("/api/books")
+@Timed(value = "booklibrary.http", histogram = true)
+public class BookApiController {
+
+    private static final int MAX_RESULTS = 100;
+
+    private final BookService bookService;
+
+    private final BookImporter bookImporter;
+
+    public BookApiController(BookService bookService, BookImporter bookImporter) {
+        this.bookService = bookService;
+        this.bookImporter = bookImporter;
+    }
+
+    /***
+     * Rest API endpoint to get a book by GUID.
+     * @param GUID GUID unique code of the book.
+     * @return book's details or 404 Not Found.
+     */
+    @GetMapping("/{GUID}")
+    public ResponseEntity<BookDetails> getBook(@PathVariable String GUID) {
+        Book book = bookService.findBookByGUID(GUID);
+
+        if(Objects.equals(book, null))
+            return ResponseEntity.notFound().build();
+
+        return ResponseEntity.ok(BookDetails.of(book));
+    }
+
+    /***
+     * Rest API endpoint to search books by words of their names and authors. The last word can be
+     * typed partly, for example /api/books/search?q=great%20gats
+     * @param q words to search for.
+     * @param limit maximum count of books, 10 by default and 100 at most.
+     * @return books' details, best match first.
+     */
+    @GetMapping("/search")
+    public List<BookDetails> searchBooks(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return bookService.searchBooks(q, Math.min(limit, MAX_RESULTS)).stream().map(BookDetails::of).toList();
+    }
+
+    /***
+     * Rest API endpoint for autocomplete of the search box.
+     * @param q text typed so far.
+     * @param limit maximum count of words, 10 by default and 100 at most.
+     * @return completions of the last word, most common first.
+     */
+    @GetMapping("/suggest")
+    public List<String> suggestSearchWords(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return bookService.suggestSearchWords(q, Math.min(limit, MAX_RESULTS));
+    }
+
+    /***
+     * Rest API endpoint to add an array of books with one write of the library file.
+     * Every book is accepted or rejected on its own, so a wrong book does not reject the rest of the batch.
+     * @param batch array of books' details.
+     * @return result of every book, in the order of the request.
+     */
+    @PostMapping("/batch")
+    public List<BatchItemResult> addBooks(@RequestBody List<BookDetails> batch) {
+        return bookService.addBooks(batch);
+    }
+
+    /***
+     * Rest API endpoint to import a catalog dump, which is streamed in the request body.
+     * For example: curl --data-binary @books.csv -H "Content-Type: text/csv" "http://localhost:8080/api/books/import?format=csv"
+     * @param format csv (with a header line) or ndjson.
+     * @param body request body, read line by line.
+     * @return report with counts of accepted and rejected rows and the errors' line numbers,
+     * or 400 Bad Request, if the format or the CSV header is wrong.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importBooks(@RequestParam(defaultValue = "csv") String format, InputStream body) {
+        try {
+            return ResponseEntity.ok(bookImporter.importBooks(body, ImportFormat.fromParameterName(format)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /***
+     * Rest API endpoint to follow the progress of running imports.
+     * @return reports of the running and the last finished imports, the newest first.
+     */
+    @GetMapping("/imports")
+    public List<ImportReport> getImports() {
+        return bookImporter.getRecentImports();
+    }
+}
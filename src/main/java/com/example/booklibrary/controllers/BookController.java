@@ -1,19 +1,61 @@
 package com.example.booklibrary.controllers;
+import com.example.booklibrary.models.BookFilter;
+import com.example.booklibrary.models.BookPage;
 import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.models.BookSort;
+import com.example.booklibrary.repositories.CatalogSnapshot;
 import com.example.booklibrary.services.BookService;
 import com.example.booklibrary.models.Book;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Controller
+@Timed(value = "booklibrary.http", histogram = true)
 public class BookController {
 
-    private String filterBy = "";
+    private static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
 
-    private List<Book> booksOfListPage = new ArrayList<>();
+    private static final MediaType HTML = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
+    private final BookService bookService;
+
+    @Value("${booklibrary.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${booklibrary.max-page-size:100}")
+    private int maxPageSize;
+
+    private final CacheControl listingCacheControl;
+
+    private final ListingCache listingCache;
+
+    private final ITemplateEngine templateEngine;
+
+    public BookController(BookService bookService, ListingCache listingCache, ITemplateEngine templateEngine,
+                          @Value("${booklibrary.listing.max-age:0}") long listingMaxAge) {
+        this.bookService = bookService;
+        this.listingCache = listingCache;
+        this.templateEngine = templateEngine;
+        this.listingCacheControl = CacheControl.maxAge(listingMaxAge, TimeUnit.SECONDS).mustRevalidate();
+    }
 
     @GetMapping("/addbook")
     public String addBookPage(Model model) {
@@ -47,10 +89,10 @@ public class BookController {
                         Integer.parseInt(bookDetails.get(5)),
                         bookDetails.get(6)
                 );
-                Book bookForCheck = BookService.findBookByGUID(bookDetails.get(6));
+                Book bookForCheck = bookService.findBookByGUID(bookDetails.get(6));
 
                 if(Objects.equals(bookForCheck, null)) {
-                    BookService.saveDataToFile(book, "library");
+                    bookService.saveDataToFile(book, "library");
                     model.addAttribute("message", "Successfully added.");
                 } else{
                     model.addAttribute("message", "Book with specified unique GUID is in the library. Try different GUID.");
@@ -89,7 +131,7 @@ public class BookController {
             try {
                 if (Integer.parseInt(reservation.get(1)) <= 60 && Integer.parseInt(reservation.get(1)) > 0) {
                     BookReservation bookReservation = new BookReservation(reservation.get(0), Integer.parseInt(reservation.get(1)), reservation.get(2));
-                    String message = BookService.takeBook(bookReservation);
+                    String message = bookService.takeBook(bookReservation);
 
                     model.addAttribute("reservation", bookReservation);
                     model.addAttribute("message", message);
@@ -124,7 +166,7 @@ public class BookController {
     @PostMapping("/getbook")
     public void getBookByGUIDSubmit(@RequestParam String bookGUID, Model model) {
         if(!Objects.equals(bookGUID, "")){
-            Book book = BookService.findBookByGUID(bookGUID);
+            Book book = bookService.findBookByGUID(bookGUID);
             model.addAttribute("GUID", bookGUID);
 
             if(!Objects.equals(book, null)) {
@@ -139,11 +181,78 @@ public class BookController {
         }
     }
 
+    /***
+     * Rest API endpoint for page /listbooks, which shows one page of books. All the state is in the query
+     * parameters, so the controller keeps nothing between requests. Pages are navigated with keyset
+     * cursors (after and before), so only the books of the requested page are collected.
+     * When only filter is given, shows the filter's parameters with counts of books to choose from.
+     * When filter and value are given, shows a page of the filtered books.
+     * When where is given, shows a page of the books, which match the filter expression of several fields.
+     * The whole response is built from one snapshot of the catalog, without locks, so the page, its counts
+     * and filter parameters always agree. The snapshot's version is sent in X-Catalog-Version header and
+     * as an ETag, so a repeated request with If-None-Match gets 304 Not Modified without building the page.
+     * Rendered pages are cached by the query with the version of the catalog, which the view depends on, so the same
+     * view is built and rendered once per change of its content. Filtered lists of books' fields do not show
+     * taken state, so they depend only on the books' version and stay cached, when books are taken or returned,
+     * and so does their ETag.
+     * @param filter "filter by" value, for example /listbooks?filter=author&value=...
+     * @param value filter's parameter value of the filtered list.
+     * @param where filter expression, for example author = "J. K. Rowling" AND publicationDate &gt; 1990-12-31.
+     * @param sort order of the books: GUID or name. Filtered lists are always in GUID order.
+     * @param after cursor, after which the page starts.
+     * @param before cursor, before which the page ends.
+     * @param size page size, limited by booklibrary.max-page-size.
+     * @param request request used for the ETag check.
+     * @return rendered listbooks page or null, if the response is 304 Not Modified.
+     */
     @GetMapping("/listbooks")
-    public String listBooksPage(Model model) {
-        this.booksOfListPage = BookService.getListOfBooks();
+    public ResponseEntity<String> listBooksPage(@RequestParam(required = false) String filter,
+                                                @RequestParam(required = false) String value,
+                                                @RequestParam(required = false) String where,
+                                                @RequestParam(required = false) String sort,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(required = false) String before,
+                                                @RequestParam(required = false) Integer size,
+                                                WebRequest request,
+                                                HttpServletRequest servletRequest,
+                                                HttpServletResponse response) {
+        CatalogSnapshot catalog = bookService.getCatalog();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, listingCacheControl.getHeaderValue());
+        response.setHeader(CATALOG_VERSION_HEADER, String.valueOf(catalog.getVersion()));
+
+        long viewVersion = viewVersion(catalog, filter, value, where);
+
+        if(request.checkNotModified("\"" + viewVersion + "\""))
+            return null;
+
+        BookSort bookSort = BookSort.fromParameterName(sort);
+        int pageSize = pageSize(size);
+        List<Object> query = Arrays.asList(filter, value, where, bookSort, after, before, pageSize);
+
+        String page = listingCache.get(viewVersion, query, () -> {
+            Model model = new ExtendedModelMap();
+            buildListBooksPage(catalog, filter, value, where, bookSort, after, before, pageSize, model);
 
-        model.addAttribute("books", booksOfListPage);
+            return templateEngine.process("listbooks", new WebContext(servletRequest, response,
+                    servletRequest.getServletContext(), servletRequest.getLocale(), model.asMap()));
+        });
+
+        return ResponseEntity.ok().contentType(HTML).body(page);
+    }
+
+    /***
+     * Version of the catalog, which the view depends on. The full list shows counts of taken books
+     * and Taken or Available lists show taken state, the other filtered lists change only with the books.
+     */
+    private static long viewVersion(CatalogSnapshot catalog, String filter, String value, String where) {
+        boolean byField = filter != null && value != null && !value.equals("Taken") && !value.equals("Available");
+        boolean byExpression = (filter == null || value == null) && where != null && !where.isBlank();
+
+        return byField || byExpression ? catalog.getBooksVersion() : catalog.getVersion();
+    }
+
+    private void buildListBooksPage(CatalogSnapshot catalog, String filter, String value, String where, BookSort bookSort,
+                                    String after, String before, int pageSize, Model model) {
         model.addAttribute("parameters", "");
         model.addAttribute("filter", "");
         model.addAttribute("displayFirstFilter", "");
@@ -151,60 +260,103 @@ public class BookController {
         model.addAttribute("showFilter", "");
         model.addAttribute("displaySecondFilter", "");
 
-        if(booksOfListPage.size() == 0){
-            model.addAttribute("showFilter", "showFilter");
+        if(filter != null && value != null) {
+            showFilteredPage(catalog, filter, value, after, before, pageSize, model);
+            return;
         }
 
-        String message = "Showing " + booksOfListPage.size() + " books";
-        model.addAttribute("message", message);
+        if(where != null && !where.isBlank()) {
+            showPageByFilter(catalog, where, after, before, pageSize, model);
+            return;
+        }
 
-        return "listbooks";
-    }
+        BookPage page;
 
-    /***
-     * Rest API endpoint for page /listbooks, to select a "filter by" value, so later in the next select input, user
-     * could be able to select a parameter of the "filter by" input.
-     * @param selected Request parameter of selected value from selection input.
-     * @param model Model used for attributes and interaction with the form.
-     */
-    @PostMapping(value="/listbooks", params="submit1")
-    public void filterBy(@RequestParam String selected, Model model) {
-        HashSet<String> foundParameters = BookService.getListOfParameters(booksOfListPage, selected);
+        try {
+            page = bookService.getPageOfBooks(catalog, bookSort, after, before, pageSize);
+        } catch (IllegalArgumentException e) {
+            page = bookService.getPageOfBooks(catalog, bookSort, null, null, pageSize);
+        }
 
-        model.addAttribute("filter", selected);
-        model.addAttribute("parameters", foundParameters);
-        model.addAttribute("books", booksOfListPage);
+        addPage(page, "sort=" + bookSort.getParameterName() + "&size=" + pageSize, model);
 
-        if(booksOfListPage.size() > 0) {
-            this.filterBy = selected;
+        if(page.getTotal() == 0){
+            model.addAttribute("showFilter", "showFilter");
+        } else if(filter != null){
+            model.addAttribute("filter", filter);
+            model.addAttribute("parameters", bookService.getParametersWithCounts(catalog, filter));
             model.addAttribute("displaySecondFilter", "show");
             model.addAttribute("displayFirstFilter", 0);
         }
 
-        String message = "Showing " + booksOfListPage.size() + " books";
+        String message = "Showing " + page.getBooks().size() + " of " + page.getTotal() + " books ("
+                + catalog.countTaken() + " taken, " + catalog.countAvailable() + " available)";
         model.addAttribute("message", message);
     }
 
-    /***
-     * Rest API endpoint for page /listbooks, to select a parameter of "filter by" input and filter books list.
-     * Writes a message how the list has been filtered.
-     * @param selectedFilter Request parameter of selected value from selection input.
-     * @param model Model used for attributes and interaction with the form.
-     */
-    @PostMapping(value="/listbooks", params="submit2")
-    public void chooseByFilter(@RequestParam String selectedFilter, Model model) {
-        List<Book> books = this.booksOfListPage;
-        List<Book> filteredBooks = BookService.getBooksByParameters(books, filterBy, selectedFilter);
-        String filterMessage = "Books list filtered: " + filterBy.toUpperCase() + " → " + selectedFilter.toUpperCase();
-        String message = "Showing " + filteredBooks.size() + " books";
+    private void showFilteredPage(CatalogSnapshot catalog, String filter, String value, String after, String before, int size, Model model) {
+        BookPage page;
 
+        try {
+            page = bookService.getPageOfBooksByParameter(catalog, filter, value, after, before, size);
+        } catch (IllegalArgumentException e) {
+            page = bookService.getPageOfBooksByParameter(catalog, filter, value, null, null, size);
+        }
+
+        String filterMessage = "Books list filtered: " + filter.toUpperCase() + " → " + value.toUpperCase();
+        String message = "Showing " + page.getBooks().size() + " of " + page.getTotal() + " books";
+
+        addPage(page, "filter=" + URLEncoder.encode(filter, StandardCharsets.UTF_8)
+                + "&value=" + URLEncoder.encode(value, StandardCharsets.UTF_8) + "&size=" + size, model);
         model.addAttribute("filterMessage", filterMessage);
-        model.addAttribute("books", filteredBooks);
         model.addAttribute("showFilterMessage", "showFilterMessage");
         model.addAttribute("showFilter", "showFilter");
         model.addAttribute("message", message);
     }
 
+    private void showPageByFilter(CatalogSnapshot catalog, String where, String after, String before, int size, Model model) {
+        BookFilter bookFilter;
+
+        try {
+            bookFilter = BookFilter.parse(where);
+        } catch (IllegalArgumentException e) {
+            addPage(new BookPage(new ArrayList<>(), 0, null, null), "", model);
+            model.addAttribute("showFilterMessage", "showFilterMessage");
+            model.addAttribute("showFilter", "showFilter");
+            model.addAttribute("filterMessage", e.getMessage());
+            model.addAttribute("message", "");
+            return;
+        }
+
+        BookPage page;
+
+        try {
+            page = bookService.getPageOfBooksByFilter(catalog, bookFilter, after, before, size);
+        } catch (IllegalArgumentException e) {
+            page = bookService.getPageOfBooksByFilter(catalog, bookFilter, null, null, size);
+        }
+
+        addPage(page, "where=" + URLEncoder.encode(where, StandardCharsets.UTF_8) + "&size=" + size, model);
+        model.addAttribute("filterMessage", "Books list filtered: " + where);
+        model.addAttribute("showFilterMessage", "showFilterMessage");
+        model.addAttribute("showFilter", "showFilter");
+        model.addAttribute("message", "Showing " + page.getBooks().size() + " of " + page.getTotal() + " books");
+    }
+
+    private void addPage(BookPage page, String pageQuery, Model model) {
+        model.addAttribute("books", page.getBooks());
+        model.addAttribute("previousCursor", page.getPreviousCursor());
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("pageQuery", pageQuery);
+    }
+
+    private int pageSize(Integer size) {
+        if(size == null || size <= 0)
+            return defaultPageSize;
+
+        return Math.min(size, maxPageSize);
+    }
+
     /***
      * Rest API endpoint for page /listbooks, to delete a book from the list.
      * Book is being identified by GUID code and deleted from the library
@@ -218,8 +370,8 @@ public class BookController {
     public String deleteBook(@RequestParam("submit3") String param, Model model) {
         model.addAttribute("GUID", param);
 
-        BookService.removeBooksByGUID(param, "library");
-        BookService.removeBooksByGUID(param, "reservations");
+        bookService.removeBooksByGUID(param, "library");
+        bookService.removeBooksByGUID(param, "reservations");
 
         return "redirect:/listbooks";
     }
@@ -0,0 +1,73 @@
+package com.example.booklibrary.controllers;
+import com.example.booklibrary.services.CatalogExporter;
+import com.example.booklibrary.storage.ExportFormat;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.nio.charset.StandardCharsets;
+
+/***
+ * Streaming exports of the catalog and the reservations, for example:
+ * curl -o books.ndjson "http://localhost:8080/api/export/books?format=ndjson"
+ * Responses have no length and are sent in chunks, while the export is written. Exports are written
+ * on the MVC async executor, so a long download does not hold a request thread.
+ */
+@RestController
+@RequestMapping("/api/export")
+@Timed(value = "booklibrary.http", histogram = true)
+public class ExportController {
+
+    private final CatalogExporter catalogExporter;
+
+    public ExportController(CatalogExporter catalogExporter) {
+        this.catalogExporter = catalogExporter;
+    }
+
+    /***
+     * Rest API endpoint to export all the books.
+     * @param format json (array, like the library file), ndjson (one book per line) or csv (with a header line).
+     * @return stream of the books or 400 Bad Request, if the format is wrong.
+     */
+    @GetMapping("/books")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "ndjson") String format) {
+        try {
+            ExportFormat exportFormat = ExportFormat.fromParameterName(format);
+
+            return attachment("books", exportFormat, output -> catalogExporter.exportBooks(exportFormat, output));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+    }
+
+    /***
+     * Rest API endpoint to export all the reservations.
+     * @param format json (array, like the reservations file), ndjson (one reservation per line) or csv (with a header line).
+     * @return stream of the reservations or 400 Bad Request, if the format is wrong.
+     */
+    @GetMapping("/reservations")
+    public ResponseEntity<StreamingResponseBody> exportReservations(@RequestParam(defaultValue = "ndjson") String format) {
+        try {
+            ExportFormat exportFormat = ExportFormat.fromParameterName(format);
+
+            return attachment("reservations", exportFormat, output -> catalogExporter.exportReservations(exportFormat, output));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+    }
+
+    private static ResponseEntity<StreamingResponseBody> attachment(String name, ExportFormat format, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "." + format.getParameterName() + "\"")
+                .body(body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> badRequest(String message) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(output -> output.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+}
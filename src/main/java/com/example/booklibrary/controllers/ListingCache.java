@@ -0,0 +1,97 @@
+package com.example.booklibrary.controllers;
+import com.example.booklibrary.metrics.LibraryMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/***
+ * Cache of rendered /listbooks pages, keyed by the page's query (filter, value, sort, cursors and size).
+ * Every page is kept with the version of the catalog, from which it was rendered, and it is served only
+ * for that version. The caller gives the version of the catalog, which the view depends on, so a view,
+ * which does not show taken state, keeps its page, when books are taken or returned. A page of a newer version
+ * replaces only the page of the same query, so a change invalidates only the views, whose versions it moved.
+ * The cache is bounded by the total length of the pages and evicts the least recently used ones.
+ * Hits and misses are counted by the booklibrary.listing.cache meter.
+ */
+@Component
+public class ListingCache {
+
+    private record Page(long version, String content) {}
+
+    private final long maxSize;
+
+    private final LinkedHashMap<List<?>, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    /***
+     * Guards the pages, which are reordered by every get. It is a ReentrantLock rather than a monitor,
+     * so virtual threads waiting for it do not pin their carrier threads.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long size;
+
+    public ListingCache(@Value("${booklibrary.listing.cache-size:8388608}") long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /***
+     * Gets a rendered page from the cache or renders and caches it. Pages are rendered outside of the lock,
+     * so a page, which is missed by two requests at once, may be rendered twice.
+     * @param version version of the catalog, which the page depends on.
+     * @param query request parameters of the page, which identify it.
+     * @param render renders the page.
+     * @return rendered page.
+     */
+    public String get(long version, List<?> query, Supplier<String> render) {
+        Page cached;
+
+        lock.lock();
+        try {
+            cached = pages.get(query);
+        } finally {
+            lock.unlock();
+        }
+
+        boolean hit = cached != null && cached.version() == version;
+        LibraryMetrics.listingCache(hit);
+
+        if(hit)
+            return cached.content();
+
+        String page = render.get();
+        put(query, new Page(version, page));
+
+        return page;
+    }
+
+    /***
+     * Keeps the page, unless the cache has a page of the query of a newer version.
+     */
+    private void put(List<?> query, Page page) {
+        if(page.content().length() > maxSize)
+            return;
+
+        lock.lock();
+        try {
+            Page previous = pages.get(query);
+
+            if(previous != null && previous.version() > page.version())
+                return;
+
+            pages.put(query, page);
+            size += page.content().length() - (previous == null ? 0 : previous.content().length());
+
+            for(Iterator<Map.Entry<List<?>, Page>> eldest = pages.entrySet().iterator(); size > maxSize; ){
+                size -= eldest.next().getValue().content().length();
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
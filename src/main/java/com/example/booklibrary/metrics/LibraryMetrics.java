@@ -0,0 +1,137 @@
+package com.example.booklibrary.metrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/***
+ * Meters of the library's service and storage operations. Meters are registered in the global
+ * Micrometer registry, to which Spring Boot adds its registries (Prometheus), so storages and services
+ * created outside of Spring are measured too. Meters are cached by their tags, so recording
+ * is a map lookup and no registration on every call.
+ * Meters (in Prometheus format at /actuator/prometheus):
+ * booklibrary.operation - latency histogram of service operations, by operation;
+ * booklibrary.records.scanned - records scanned per request, by operation;
+ * booklibrary.reservations - checkouts by outcome (accepted, not_found, already_reserved, limit_reached)
+ * and reservations, which have expired (expired);
+ * booklibrary.storage - latency histogram of data files' load, write, append and compaction, by file;
+ * booklibrary.storage.bytes - bytes read and written, by file and direction;
+ * booklibrary.listing.cache - lookups of rendered /listbooks pages, by result (hit, miss).
+ */
+public final class LibraryMetrics {
+
+    private static final Map<String, Timer> operationTimers = new ConcurrentHashMap<>();
+
+    private static final Map<String, DistributionSummary> scannedSummaries = new ConcurrentHashMap<>();
+
+    private static final Map<String, Counter> reservationCounters = new ConcurrentHashMap<>();
+
+    private static final Map<String, Timer> storageTimers = new ConcurrentHashMap<>();
+
+    private static final Map<String, Counter> byteCounters = new ConcurrentHashMap<>();
+
+    private static final Map<String, Counter> listingCacheCounters = new ConcurrentHashMap<>();
+
+    private LibraryMetrics() {}
+
+    /***
+     * Times a service operation.
+     * @param operation name of the operation, for example findBookByGUID.
+     * @param action operation.
+     * @return result of the operation.
+     */
+    public static <T> T time(String operation, Supplier<T> action) {
+        return operationTimer(operation).record(action);
+    }
+
+    public static void time(String operation, Runnable action) {
+        operationTimer(operation).record(action);
+    }
+
+    /***
+     * Records the count of records, which an operation has walked through to answer one request.
+     * @param operation name of the operation.
+     * @param count count of scanned books or reservations.
+     */
+    public static void recordsScanned(String operation, int count) {
+        scannedSummaries.computeIfAbsent(operation, key -> DistributionSummary.builder("booklibrary.records.scanned")
+                .description("Records scanned per request")
+                .baseUnit("records")
+                .tag("operation", key)
+                .register(Metrics.globalRegistry)).record(count);
+    }
+
+    /***
+     * Counts an outcome of a book's checkout.
+     * @param outcome accepted or the reason of rejection.
+     */
+    public static void reservation(String outcome) {
+        reservations(outcome, 1);
+    }
+
+    /***
+     * Counts several reservations with the same outcome, for example a batch of expired reservations.
+     * @param outcome outcome of the reservations.
+     * @param count count of the reservations.
+     */
+    public static void reservations(String outcome, int count) {
+        reservationCounters.computeIfAbsent(outcome, key -> Counter.builder("booklibrary.reservations")
+                .description("Checkouts by outcome")
+                .tag("outcome", key)
+                .register(Metrics.globalRegistry)).increment(count);
+    }
+
+    /***
+     * Times an operation of a data file.
+     * @param file name of the data file, for example library.json.
+     * @param operation load, write, append or compaction.
+     * @param action operation.
+     */
+    public static void timeStorage(String file, String operation, Runnable action) {
+        storageTimers.computeIfAbsent(file + "/" + operation, key -> Timer.builder("booklibrary.storage")
+                .description("Latency of data files' operations")
+                .tag("file", file)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry)).record(action);
+    }
+
+    public static void bytesRead(String file, long bytes) {
+        byteCounter(file, "read").increment(bytes);
+    }
+
+    public static void bytesWritten(String file, long bytes) {
+        byteCounter(file, "written").increment(bytes);
+    }
+
+    /***
+     * Counts a lookup of a rendered /listbooks page in the cache.
+     * @param hit true, if the page was in the cache.
+     */
+    public static void listingCache(boolean hit) {
+        listingCacheCounters.computeIfAbsent(hit ? "hit" : "miss", key -> Counter.builder("booklibrary.listing.cache")
+                .description("Lookups of rendered /listbooks pages")
+                .tag("result", key)
+                .register(Metrics.globalRegistry)).increment();
+    }
+
+    private static Timer operationTimer(String operation) {
+        return operationTimers.computeIfAbsent(operation, key -> Timer.builder("booklibrary.operation")
+                .description("Latency of service operations")
+                .tag("operation", key)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry));
+    }
+
+    private static Counter byteCounter(String file, String direction) {
+        return byteCounters.computeIfAbsent(file + "/" + direction, key -> Counter.builder("booklibrary.storage.bytes")
+                .description("Bytes read from and written to data files")
+                .baseUnit("bytes")
+                .tag("file", file)
+                .tag("direction", direction)
+                .register(Metrics.globalRegistry));
+    }
+}
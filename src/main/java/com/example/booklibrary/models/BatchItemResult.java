@@ -0,0 +1,49 @@
+package com.example.booklibrary.models;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/***
+ * Result of one item of a batch request: its position in the batch, GUID and
+ * whether it was accepted, with the reason of rejection.
+ */
+public class BatchItemResult {
+
+    private final int index;
+
+    private final String GUID;
+
+    private final boolean accepted;
+
+    private final String message;
+
+    private BatchItemResult(int index, String GUID, boolean accepted, String message) {
+        this.index = index;
+        this.GUID = GUID;
+        this.accepted = accepted;
+        this.message = message;
+    }
+
+    public static BatchItemResult accepted(int index, String GUID) {
+        return new BatchItemResult(index, GUID, true, "Successfully added.");
+    }
+
+    public static BatchItemResult rejected(int index, String GUID, String message) {
+        return new BatchItemResult(index, GUID, false, message);
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    @JsonProperty("GUID")
+    public String getGUID() {
+        return this.GUID;
+    }
+
+    public boolean isAccepted() {
+        return this.accepted;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+}
@@ -1,5 +1,4 @@
 package com.example.booklibrary.models;
-import org.json.simple.JSONObject;
 import java.time.LocalDate;
 
 public class Book {
@@ -30,31 +29,6 @@ public class Book {
         this.GUID = GUID;
     }
 
-    public Book(JSONObject book){
-        this.name = book.get("Name").toString();
-        this.author = book.get("Author").toString();
-        this.category = book.get("Category").toString();
-        this.language = book.get("Language").toString();
-        this.publicationDate = LocalDate.parse(book.get("Publication date").toString());
-        this.ISBN = Integer.parseInt(book.get("ISBN").toString());
-        this.GUID = book.get("GUID").toString();
-    }
-
-    @SuppressWarnings("unchecked")
-    public JSONObject returnBookAsJSONObject(){
-        JSONObject newBook = new JSONObject();
-
-        newBook.put("Name", this.getName());
-        newBook.put("Author", this.getAuthor());
-        newBook.put("Category", this.getCategory());
-        newBook.put("Language", this.getLanguage());
-        newBook.put("Publication date", this.getPublicationDate().toString());
-        newBook.put("ISBN", this.getISBN());
-        newBook.put("GUID", this.getGUID());
-
-        return newBook;
-    }
-
     public void setGUID(String GUID) {
         this.GUID = GUID;
     }
@@ -0,0 +1,107 @@
+package com.example.booklibrary.models;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/***
+ * Book's details in the JSON API, with the same field names as the library file.
+ * All the fields are taken as Strings, so a wrong date or ISBN rejects only its own book
+ * instead of the whole request.
+ */
+public class BookDetails {
+
+    @JsonProperty("Name")
+    private String name;
+
+    @JsonProperty("Author")
+    private String author;
+
+    @JsonProperty("Category")
+    private String category;
+
+    @JsonProperty("Language")
+    private String language;
+
+    @JsonProperty("Publication date")
+    private String publicationDate;
+
+    @JsonProperty("ISBN")
+    private String ISBN;
+
+    @JsonProperty("GUID")
+    private String GUID;
+
+    public BookDetails() {}
+
+    public BookDetails(String name, String author, String category, String language, String publicationDate, String ISBN, String GUID) {
+        this.name = name;
+        this.author = author;
+        this.category = category;
+        this.language = language;
+        this.publicationDate = publicationDate;
+        this.ISBN = ISBN;
+        this.GUID = GUID;
+    }
+
+    public static BookDetails of(Book book) {
+        return new BookDetails(book.getName(), book.getAuthor(), book.getCategory(), book.getLanguage(),
+                book.getPublicationDate().toString(), String.valueOf(book.getISBN()), book.getGUID());
+    }
+
+    /***
+     * Checks if all the fields are filled in.
+     * @return true, if no field is missing or blank.
+     */
+    @JsonIgnore
+    public boolean isComplete() {
+        return Stream.of(name, author, category, language, publicationDate, ISBN, GUID)
+                .allMatch(field -> !Objects.equals(field, null) && !field.isBlank());
+    }
+
+    /***
+     * Converts details to a book.
+     * @return book with the parsed publication date and ISBN.
+     * @throws java.time.format.DateTimeParseException if publication date is not yyyy-MM-dd.
+     * @throws NumberFormatException if ISBN is not a number.
+     */
+    public Book toBook() {
+        return new Book(name, author, category, language, LocalDate.parse(publicationDate), Integer.parseInt(ISBN), GUID);
+    }
+
+    @JsonProperty("Name")
+    public String getName() {
+        return this.name;
+    }
+
+    @JsonProperty("Author")
+    public String getAuthor() {
+        return this.author;
+    }
+
+    @JsonProperty("Category")
+    public String getCategory() {
+        return this.category;
+    }
+
+    @JsonProperty("Language")
+    public String getLanguage() {
+        return this.language;
+    }
+
+    @JsonProperty("Publication date")
+    public String getPublicationDate() {
+        return this.publicationDate;
+    }
+
+    @JsonProperty("ISBN")
+    public String getISBN() {
+        return this.ISBN;
+    }
+
+    @JsonProperty("GUID")
+    public String getGUID() {
+        return this.GUID;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.booklibrary.models;
+import java.util.function.Function;
+
+/***
+ * Book's fields, by which the books' list can be filtered. Names are the values of "filter by" option.
+ */
+public enum BookFacet {
+
+    AUTHOR("author", Book::getAuthor),
+    CATEGORY("category", Book::getCategory),
+    LANGUAGE("language", Book::getLanguage),
+    ISBN("ISBN", book -> book.getISBN().toString()),
+    NAME("name", Book::getName);
+
+    private final String filterName;
+
+    private final Function<Book, String> value;
+
+    BookFacet(String filterName, Function<Book, String> value) {
+        this.filterName = filterName;
+        this.value = value;
+    }
+
+    /***
+     * Finds a facet by "filter by" option value.
+     * @param filterName value of "filter by" option.
+     * @return facet or null, if the option is not a book's field.
+     */
+    public static BookFacet fromFilterName(String filterName) {
+        for(BookFacet facet : values()){
+            if(facet.filterName.equals(filterName))
+                return facet;
+        }
+
+        return null;
+    }
+
+    public String valueOf(Book book) {
+        return value.apply(book);
+    }
+
+    public String getFilterName() {
+        return this.filterName;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.booklibrary.models;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+/***
+ * Filter of the books' list, composed of conditions on the books' fields with AND and OR.
+ * Text fields and ISBN are compared for equality, ISBN and publication date also by ranges.
+ * A filter is written as an expression, for example
+ * author = "J. K. Rowling" AND language = English AND publicationDate > 1990-12-31, see parse().
+ */
+public sealed interface BookFilter {
+
+    boolean test(Book book);
+
+    /***
+     * Parses a filter expression. Conditions are "field operator value", where the fields are the "filter by"
+     * option values (author, category, language, ISBN, name) and publicationDate. Text fields support only "=",
+     * ISBN and publicationDate also "&gt;", "&gt;=", "&lt;" and "&lt;=". Values with spaces are quoted.
+     * Conditions are joined by AND, which binds tighter than OR, and can be grouped in parentheses.
+     * @param expression filter expression.
+     * @return filter of the expression.
+     * @throws IllegalArgumentException if the expression is not a valid filter.
+     */
+    static BookFilter parse(String expression) {
+        return new BookFilterParser(expression).parse();
+    }
+
+    /***
+     * Books, which have the facet's value.
+     */
+    record Equals(BookFacet facet, String value) implements BookFilter {
+        @Override
+        public boolean test(Book book) {
+            return Objects.equals(facet.valueOf(book), value);
+        }
+    }
+
+    /***
+     * Books with an ISBN between the bounds, inclusive. A null bound is open.
+     */
+    record ISBNRange(Integer from, Integer to) implements BookFilter {
+        @Override
+        public boolean test(Book book) {
+            Integer ISBN = book.getISBN();
+
+            return ISBN != null && (from == null || ISBN >= from) && (to == null || ISBN <= to);
+        }
+    }
+
+    /***
+     * Books published between the dates, inclusive. A null bound is open.
+     */
+    record PublicationDateRange(LocalDate from, LocalDate to) implements BookFilter {
+        @Override
+        public boolean test(Book book) {
+            LocalDate date = book.getPublicationDate();
+
+            return date != null && (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+        }
+    }
+
+    /***
+     * Books, which match all the filters. Without filters it matches every book.
+     */
+    record And(List<BookFilter> filters) implements BookFilter {
+        @Override
+        public boolean test(Book book) {
+            return filters.stream().allMatch(filter -> filter.test(book));
+        }
+    }
+
+    /***
+     * Books, which match any of the filters. Without filters it matches no book.
+     */
+    record Or(List<BookFilter> filters) implements BookFilter {
+        @Override
+        public boolean test(Book book) {
+            return filters.stream().anyMatch(filter -> filter.test(book));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.booklibrary.models;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Recursive descent parser of BookFilter expressions:
+ * or = and {"OR" and}, and = primary {"AND" primary}, primary = "(" or ")" | field operator value.
+ * Keywords and field names are case-insensitive, quoted values can have spaces and escaped quotes (\").
+ */
+final class BookFilterParser {
+
+    private static final String PUBLICATION_DATE = "publicationDate";
+
+    private record Token(String text, boolean quoted) {
+
+        private boolean is(String text) {
+            return !quoted && this.text.equalsIgnoreCase(text);
+        }
+    }
+
+    private final String expression;
+
+    private final List<Token> tokens;
+
+    private int position;
+
+    BookFilterParser(String expression) {
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+    }
+
+    BookFilter parse() {
+        if(tokens.isEmpty())
+            throw error("it is empty");
+
+        BookFilter filter = or();
+
+        if(position < tokens.size())
+            throw error("unexpected " + tokens.get(position).text());
+
+        return filter;
+    }
+
+    private BookFilter or() {
+        List<BookFilter> filters = new ArrayList<>(List.of(and()));
+
+        while(next("OR")){
+            filters.add(and());
+        }
+
+        return filters.size() == 1 ? filters.get(0) : new BookFilter.Or(filters);
+    }
+
+    private BookFilter and() {
+        List<BookFilter> filters = new ArrayList<>(List.of(primary()));
+
+        while(next("AND")){
+            filters.add(primary());
+        }
+
+        return filters.size() == 1 ? filters.get(0) : new BookFilter.And(filters);
+    }
+
+    private BookFilter primary() {
+        if(next("(")){
+            BookFilter filter = or();
+
+            if(!next(")"))
+                throw error("missing )");
+
+            return filter;
+        }
+
+        String field = take().text();
+        String operator = take().text();
+        String value = take().text();
+
+        if(field.equalsIgnoreCase(PUBLICATION_DATE))
+            return dateRange(operator, parseDate(value));
+
+        BookFacet facet = facetOf(field);
+
+        if(operator.equals("="))
+            return new BookFilter.Equals(facet, facet == BookFacet.ISBN ? String.valueOf(parseISBN(value)) : value);
+
+        if(facet != BookFacet.ISBN)
+            throw error(field + " can only be compared with =");
+
+        return ISBNRange(operator, parseISBN(value));
+    }
+
+    private BookFilter ISBNRange(String operator, int ISBN) {
+        return switch(operator){
+            case ">" -> ISBN == Integer.MAX_VALUE ? new BookFilter.Or(List.of()) : new BookFilter.ISBNRange(ISBN + 1, null);
+            case ">=" -> new BookFilter.ISBNRange(ISBN, null);
+            case "<" -> ISBN == Integer.MIN_VALUE ? new BookFilter.Or(List.of()) : new BookFilter.ISBNRange(null, ISBN - 1);
+            case "<=" -> new BookFilter.ISBNRange(null, ISBN);
+            default -> throw error("unknown operator " + operator);
+        };
+    }
+
+    private BookFilter dateRange(String operator, LocalDate date) {
+        return switch(operator){
+            case "=" -> new BookFilter.PublicationDateRange(date, date);
+            case ">" -> new BookFilter.PublicationDateRange(date.plusDays(1), null);
+            case ">=" -> new BookFilter.PublicationDateRange(date, null);
+            case "<" -> new BookFilter.PublicationDateRange(null, date.minusDays(1));
+            case "<=" -> new BookFilter.PublicationDateRange(null, date);
+            default -> throw error("unknown operator " + operator);
+        };
+    }
+
+    private BookFacet facetOf(String field) {
+        for(BookFacet facet : BookFacet.values()){
+            if(facet.getFilterName().equalsIgnoreCase(field))
+                return facet;
+        }
+
+        throw error("unknown field " + field);
+    }
+
+    private int parseISBN(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw error("ISBN " + value + " is not a number");
+        }
+    }
+
+    private LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw error("date " + value + " is not in yyyy-MM-dd format");
+        }
+    }
+
+    private boolean next(String keyword) {
+        if(position < tokens.size() && tokens.get(position).is(keyword)){
+            position++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private Token take() {
+        if(position == tokens.size())
+            throw error("it ends too early");
+
+        return tokens.get(position++);
+    }
+
+    private IllegalArgumentException error(String reason) {
+        return new IllegalArgumentException("Wrong filter \"" + expression + "\": " + reason);
+    }
+
+    private List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+
+        while(i < expression.length()){
+            char c = expression.charAt(i);
+
+            if(Character.isWhitespace(c)){
+                i++;
+            } else if(c == '(' || c == ')'){
+                tokens.add(new Token(String.valueOf(c), false));
+                i++;
+            } else if(c == '=' || c == '<' || c == '>'){
+                int end = i + 1 < expression.length() && c != '=' && expression.charAt(i + 1) == '=' ? i + 2 : i + 1;
+                tokens.add(new Token(expression.substring(i, end), false));
+                i = end;
+            } else if(c == '"'){
+                StringBuilder text = new StringBuilder();
+                i++;
+
+                while(i < expression.length() && expression.charAt(i) != '"'){
+                    if(expression.charAt(i) == '\\' && i + 1 < expression.length())
+                        i++;
+
+                    text.append(expression.charAt(i++));
+                }
+
+                if(i == expression.length())
+                    throw error("missing closing quote");
+
+                tokens.add(new Token(text.toString(), true));
+                i++;
+            } else {
+                int end = i;
+
+                while(end < expression.length() && !Character.isWhitespace(expression.charAt(end)) && "()=<>\"".indexOf(expression.charAt(end)) < 0){
+                    end++;
+                }
+
+                tokens.add(new Token(expression.substring(i, end), false));
+                i = end;
+            }
+        }
+
+        return tokens;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.booklibrary.models;
+import java.util.*;
+import java.util.function.Predicate;
+
+/***
+ * One page of the books' list with keyset cursors of the previous and the next page.
+ */
+public class BookPage {
+
+    private final List<Book> books;
+
+    private final int total;
+
+    private final String previousCursor;
+
+    private final String nextCursor;
+
+    public BookPage(List<Book> books, int total, String previousCursor, String nextCursor) {
+        this.books = books;
+        this.total = total;
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+
+    /***
+     * Builds a page by walking the sorted books from the cursor. Only the books of the page
+     * (and one more, to know if there is a next page) are visited after the cursor's position,
+     * apart from books skipped by the filter.
+     * @param books books sorted in the given order, which are not changed while the page is built.
+     * @param filter filter of the books, which are walked.
+     * @param sort order of the books.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null. Used only when after is null.
+     * @param size page size.
+     * @param total count of all the books, that meet the filter.
+     * @return page of books.
+     */
+    public static BookPage of(SortedBooks books, Predicate<Book> filter, BookSort sort,
+                              String after, String before, int size, int total) {
+        List<Book> page = new ArrayList<>(size + 1);
+
+        if(after == null && before != null){
+            Iterator<Book> iterator = books.before(sort.probeOf(before));
+            collect(iterator, filter, page, size + 1);
+
+            boolean hasPrevious = page.size() > size;
+            if(hasPrevious)
+                page.remove(size);
+
+            Collections.reverse(page);
+
+            return new BookPage(page, total,
+                    hasPrevious ? sort.cursorOf(page.get(0)) : null,
+                    page.isEmpty() ? null : sort.cursorOf(page.get(page.size() - 1)));
+        }
+
+        Iterator<Book> iterator = books.after(after == null ? null : sort.probeOf(after));
+        collect(iterator, filter, page, size + 1);
+
+        boolean hasNext = page.size() > size;
+        if(hasNext)
+            page.remove(size);
+
+        return new BookPage(page, total,
+                after != null && !page.isEmpty() ? sort.cursorOf(page.get(0)) : null,
+                hasNext ? sort.cursorOf(page.get(page.size() - 1)) : null);
+    }
+
+    private static void collect(Iterator<Book> iterator, Predicate<Book> filter, List<Book> page, int limit) {
+        while(page.size() < limit && iterator.hasNext()){
+            Book book = iterator.next();
+
+            if(filter.test(book))
+                page.add(book);
+        }
+    }
+
+    public List<Book> getBooks() {
+        return this.books;
+    }
+
+    public int getTotal() {
+        return this.total;
+    }
+
+    public String getPreviousCursor() {
+        return this.previousCursor;
+    }
+
+    public String getNextCursor() {
+        return this.nextCursor;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.booklibrary.models;
-import org.json.simple.JSONObject;
+import java.time.Duration;
+import java.time.Instant;
 
 public class BookReservation extends Book {
 
@@ -7,35 +8,52 @@ public class BookReservation extends Book {
 
     private final Integer period;
 
+    private final Instant takenAt;
+
     public BookReservation(String person, Integer period, String bookGUID) {
+        this(person, period, bookGUID, null);
+    }
+
+    /***
+     * @param person detail about the person.
+     * @param period reservation period in days.
+     * @param bookGUID GUID of the reserved book.
+     * @param takenAt instant of the checkout, null, if it is not known yet.
+     */
+    public BookReservation(String person, Integer period, String bookGUID, Instant takenAt) {
         this.person = person;
         this.period = period;
+        this.takenAt = takenAt;
         this.setBookGUID(bookGUID);
     }
 
-    public BookReservation(JSONObject reservation){
-        this.person = reservation.get("Person").toString();
-        this.period = Integer.parseInt(reservation.get("Period").toString());
-        this.setBookGUID(reservation.get("GUID").toString());
+    public String getPerson() {
+        return this.person;
     }
 
-    @SuppressWarnings("unchecked")
-    public JSONObject returnReservationAsJSONObject(){
-        JSONObject newReservation = new JSONObject();
-
-        newReservation.put("Person", this.getPerson());
-        newReservation.put("Period", this.getPeriod());
-        newReservation.put("GUID", this.getBookGUID());
+    public Integer getPeriod() {
+        return this.period;
+    }
 
-        return newReservation;
+    public Instant getTakenAt() {
+        return this.takenAt;
     }
 
-    public String getPerson() {
-        return this.person;
+    /***
+     * Gets the instant, when the reservation period ends.
+     * @return checkout instant plus the period in days.
+     */
+    public Instant getDueAt() {
+        return this.takenAt.plus(Duration.ofDays(this.period));
     }
 
-    public Integer getPeriod() {
-        return this.period;
+    /***
+     * Copies the reservation with the checkout instant.
+     * @param takenAt instant of the checkout.
+     * @return reservation taken at the instant.
+     */
+    public BookReservation takenAt(Instant takenAt) {
+        return new BookReservation(person, period, getBookGUID(), takenAt);
     }
 
     public String getBookGUID() {
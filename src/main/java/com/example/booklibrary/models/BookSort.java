@@ -0,0 +1,78 @@
+package com.example.booklibrary.models;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+
+/***
+ * Orders, in which the books' list can be paginated. Every order ends with GUID, so it is total
+ * and a book's position can be used as a keyset cursor. Cursor is the sort key of the boundary book,
+ * encoded as URL-safe Base64, so it stays valid even if that book is removed.
+ */
+public enum BookSort {
+
+    GUID("GUID", Comparator.comparing(Book::getGUID)),
+    NAME("name", Comparator.comparing(Book::getName).thenComparing(Book::getGUID));
+
+    private final String parameterName;
+
+    private final Comparator<Book> comparator;
+
+    BookSort(String parameterName, Comparator<Book> comparator) {
+        this.parameterName = parameterName;
+        this.comparator = comparator;
+    }
+
+    /***
+     * Finds an order by "sort" request parameter value.
+     * @param parameterName value of "sort" parameter.
+     * @return order of the books, GUID by default.
+     */
+    public static BookSort fromParameterName(String parameterName) {
+        for(BookSort sort : values()){
+            if(sort.parameterName.equals(parameterName))
+                return sort;
+        }
+
+        return GUID;
+    }
+
+    public Comparator<Book> comparator() {
+        return this.comparator;
+    }
+
+    public String getParameterName() {
+        return this.parameterName;
+    }
+
+    /***
+     * Encodes the position of a book in this order as a cursor.
+     * @param book boundary book of a page.
+     * @return cursor value.
+     */
+    public String cursorOf(Book book) {
+        String key = this == GUID ? book.getGUID() : book.getName() + "\n" + book.getGUID();
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /***
+     * Decodes a cursor into a probe book, which has only the fields of this order,
+     * so it can be used to navigate the sorted books.
+     * @param cursor cursor value.
+     * @return probe book.
+     * @throws IllegalArgumentException if the cursor is not valid.
+     */
+    public Book probeOf(String cursor) {
+        String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+        if(this == GUID)
+            return new Book(null, null, null, null, null, null, key);
+
+        int separator = key.lastIndexOf('\n');
+
+        if(separator < 0)
+            throw new IllegalArgumentException("Wrong cursor for sort by " + parameterName);
+
+        return new Book(key.substring(0, separator), null, null, null, null, null, key.substring(separator + 1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.booklibrary.models;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Progress and result of one bulk import. Counters are updated by parallel workers while the
+ * import runs, so the report can be read at any time. Only the first errors are kept, so
+ * the report's size does not depend on the size of the imported file.
+ */
+public class ImportReport {
+
+    private static final int MAX_ERRORS = 1000;
+
+    private final long id;
+
+    private final String format;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private volatile long finishedAt;
+
+    private volatile String status = "running";
+
+    private volatile String failure;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final List<BatchItemResult> errors = new ArrayList<>();
+
+    public ImportReport(long id, String format) {
+        this.id = id;
+        this.format = format;
+    }
+
+    public void rowsRead(int count) {
+        rowsRead.addAndGet(count);
+    }
+
+    public void accepted() {
+        accepted.incrementAndGet();
+    }
+
+    /***
+     * Counts a rejected row and keeps it, if there are less than 1000 errors in the report.
+     * @param row line number of the row in the file.
+     * @param GUID GUID of the row, if it was parsed.
+     * @param message reason of rejection.
+     */
+    public void rejected(long row, String GUID, String message) {
+        rejected.incrementAndGet();
+
+        synchronized (errors) {
+            if(errors.size() < MAX_ERRORS)
+                errors.add(BatchItemResult.rejected((int) row, GUID, message));
+        }
+    }
+
+    public void finish() {
+        this.finishedAt = System.currentTimeMillis();
+        this.status = failure == null ? "finished" : "failed";
+    }
+
+    public void fail(String failure) {
+        this.failure = failure;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public String getFormat() {
+        return this.format;
+    }
+
+    public String getStatus() {
+        return this.status;
+    }
+
+    public String getFailure() {
+        return this.failure;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getDurationMillis() {
+        return (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+    }
+
+    public List<BatchItemResult> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+}
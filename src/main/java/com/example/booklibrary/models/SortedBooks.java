@@ -0,0 +1,23 @@
+package com.example.booklibrary.models;
+import java.util.Iterator;
+
+/***
+ * Books sorted in one order, which can be walked in both directions from a position.
+ * Positions are probe books, which have only the fields of the order, like the probes of BookSort cursors.
+ */
+public interface SortedBooks {
+
+    /***
+     * Walks the books after the probe in ascending order.
+     * @param probe position, after which the walk starts, or null to walk all the books.
+     * @return iterator of the books.
+     */
+    Iterator<Book> after(Book probe);
+
+    /***
+     * Walks the books before the probe in descending order.
+     * @param probe position, before which the walk starts.
+     * @return iterator of the books.
+     */
+    Iterator<Book> before(Book probe);
+}
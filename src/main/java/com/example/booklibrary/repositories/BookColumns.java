@@ -0,0 +1,431 @@
+package com.example.booklibrary.repositories;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookFacet;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.ToIntFunction;
+
+/***
+ * Columnar store of the books' fields, in which every book is a row of primitive columns instead of
+ * a Book object with seven objects of its own. Author, category and language are int codes of
+ * per-column dictionaries, so a value, which repeats across thousands of books, is kept once.
+ * ISBN is an int and the publication date is an int epoch day, a missing one is a bit in the column's
+ * bitmap of nulls, so every int stays a valid value. Names and GUIDs are UTF-8 bytes
+ * packed into one array per column with the end offsets of the rows. Book objects are made
+ * only, when a row is read, so they live only as long as a request uses them.
+ * Rows are only appended, never changed, and every version of the catalog reads only its own rows,
+ * so the store is shared by the catalog's versions: a writer appends behind the rows of the published
+ * versions and publishes the rows with the next version. When the columns grow, they are copied
+ * into bigger arrays, which are volatile, so a reader, which sees a bigger array, also sees the copied rows.
+ * Rows of removed and replaced books stay until the catalog is rebuilt without them.
+ * Texts are compared by their UTF-8 bytes, which is the order of their code points.
+ * Appends are not thread-safe, they are serialized by the BookRepository.
+ */
+final class BookColumns {
+
+    private final Dictionary authors = new Dictionary();
+
+    private final Dictionary categories = new Dictionary();
+
+    private final Dictionary languages = new Dictionary();
+
+    private volatile int[] authorCodes;
+
+    private volatile int[] categoryCodes;
+
+    private volatile int[] languageCodes;
+
+    private volatile int[] ISBNs;
+
+    private volatile int[] publicationDays;
+
+    private volatile long[] nullISBNs;
+
+    private volatile long[] nullPublicationDays;
+
+    /***
+     * Position of a row's book in the order the books were added, which a replacing book keeps.
+     */
+    private volatile int[] sequences;
+
+    private final Text names = new Text();
+
+    private final Text GUIDs = new Text();
+
+    private int rows;
+
+    BookColumns(int capacity) {
+        int initial = Math.max(16, capacity);
+        authorCodes = new int[initial];
+        categoryCodes = new int[initial];
+        languageCodes = new int[initial];
+        ISBNs = new int[initial];
+        publicationDays = new int[initial];
+        sequences = new int[initial];
+        nullISBNs = new long[words(initial)];
+        nullPublicationDays = new long[words(initial)];
+    }
+
+    /***
+     * Count of the appended rows, including the rows of removed and replaced books.
+     */
+    int rows() {
+        return rows;
+    }
+
+    /***
+     * Appends a row of the book's fields.
+     * @param book book to store.
+     * @param sequence position of the book in the order the books were added.
+     * @return row of the book, which is shared by all the indexes of the book.
+     */
+    Integer append(Book book, int sequence) {
+        int row = rows;
+
+        if(row == ISBNs.length)
+            grow(row + row / 4 + 16);
+
+        authorCodes[row] = authors.code(book.getAuthor());
+        categoryCodes[row] = categories.code(book.getCategory());
+        languageCodes[row] = languages.code(book.getLanguage());
+
+        if(book.getISBN() == null){
+            nullISBNs[row >>> 6] |= 1L << row;
+        } else {
+            ISBNs[row] = book.getISBN();
+        }
+
+        if(book.getPublicationDate() == null){
+            nullPublicationDays[row >>> 6] |= 1L << row;
+        } else {
+            publicationDays[row] = Math.toIntExact(book.getPublicationDate().toEpochDay());
+        }
+
+        sequences[row] = sequence;
+        names.append(book.getName(), row);
+        GUIDs.append(book.getGUID(), row);
+        rows++;
+
+        return row;
+    }
+
+    /***
+     * Makes a Book object of the row.
+     */
+    Book book(int row) {
+        return new Book(names.get(row), author(row), category(row), language(row),
+                isNull(nullPublicationDays, row) ? null : LocalDate.ofEpochDay(publicationDays[row]),
+                isNull(nullISBNs, row) ? null : ISBNs[row], GUIDs.get(row));
+    }
+
+    String GUID(int row) {
+        return GUIDs.get(row);
+    }
+
+    String name(int row) {
+        return names.get(row);
+    }
+
+    String author(int row) {
+        return authors.value(authorCodes[row]);
+    }
+
+    String category(int row) {
+        return categories.value(categoryCodes[row]);
+    }
+
+    String language(int row) {
+        return languages.value(languageCodes[row]);
+    }
+
+    int sequence(int row) {
+        return sequences[row];
+    }
+
+    /***
+     * Order of the rows by GUID.
+     */
+    int compareGUIDs(int row, int other) {
+        return GUIDs.compare(row, other);
+    }
+
+    /***
+     * Order of the rows by name, then by GUID, like BookSort.NAME.
+     */
+    int compareNames(int row, int other) {
+        int comparison = names.compare(row, other);
+
+        return comparison != 0 ? comparison : GUIDs.compare(row, other);
+    }
+
+    int compareSequences(int row, int other) {
+        return Integer.compare(sequences[row], sequences[other]);
+    }
+
+    /***
+     * Hash of the row's GUID, which is the hashCode() of the GUID, so a row can be found by its GUID in a hash map.
+     */
+    int GUIDHash(int row) {
+        return GUID(row).hashCode();
+    }
+
+    /***
+     * Probe of a GUID position in rows ordered by GUID.
+     */
+    ToIntFunction<Integer> GUIDProbe(String GUID) {
+        byte[] key = Text.bytesOf(GUID);
+
+        return row -> GUIDs.compareTo(key, row);
+    }
+
+    /***
+     * Probe of a name and GUID position in rows ordered by name.
+     */
+    ToIntFunction<Integer> nameProbe(String name, String GUID) {
+        byte[] nameKey = Text.bytesOf(name);
+        byte[] GUIDKey = Text.bytesOf(GUID);
+
+        return row -> {
+            int comparison = names.compareTo(nameKey, row);
+
+            return comparison != 0 ? comparison : GUIDs.compareTo(GUIDKey, row);
+        };
+    }
+
+    /***
+     * Gets the facet's value of the row, like BookFacet.valueOf of its book.
+     */
+    String facetValue(BookFacet facet, int row) {
+        return switch(facet){
+            case AUTHOR -> author(row);
+            case CATEGORY -> category(row);
+            case LANGUAGE -> language(row);
+            case ISBN -> isNull(nullISBNs, row) ? null : Integer.toString(ISBNs[row]);
+            case NAME -> name(row);
+        };
+    }
+
+    /***
+     * Order of the rows by the facet's value. Dictionary values are compared as strings, names as bytes,
+     * ISBNs as numbers. Nulls are first.
+     */
+    Comparator<Integer> facetOrder(BookFacet facet) {
+        return switch(facet){
+            case AUTHOR -> (row, other) -> compareValues(author(row), author(other));
+            case CATEGORY -> (row, other) -> compareValues(category(row), category(other));
+            case LANGUAGE -> (row, other) -> compareValues(language(row), language(other));
+            case ISBN -> this::compareISBNs;
+            case NAME -> names::compare;
+        };
+    }
+
+    /***
+     * Probe of a facet's value in rows ordered by the facet. A value, which is not an ISBN, is before all the ISBNs.
+     */
+    ToIntFunction<Integer> facetProbe(BookFacet facet, String value) {
+        return switch(facet){
+            case AUTHOR -> row -> compareValues(value, author(row));
+            case CATEGORY -> row -> compareValues(value, category(row));
+            case LANGUAGE -> row -> compareValues(value, language(row));
+            case ISBN -> {
+                Integer ISBN = parseISBN(value);
+                yield ISBN == null ? row -> -1 : row -> isNull(nullISBNs, row) ? 1 : Integer.compare(ISBN, ISBNs[row]);
+            }
+            case NAME -> {
+                byte[] key = Text.bytesOf(value);
+                yield row -> names.compareTo(key, row);
+            }
+        };
+    }
+
+    /***
+     * Matches the rows with an ISBN between the bounds, inclusive. A null bound is open.
+     * The column is read once, it has all the rows, which were appended before.
+     */
+    IntPredicate ISBNBetween(Integer from, Integer to) {
+        int low = from == null ? Integer.MIN_VALUE : from;
+        int high = to == null ? Integer.MAX_VALUE : to;
+        int[] ISBNs = this.ISBNs;
+        long[] nulls = this.nullISBNs;
+
+        return row -> {
+            int ISBN = ISBNs[row];
+            return ISBN >= low && ISBN <= high && !isNull(nulls, row);
+        };
+    }
+
+    /***
+     * Matches the rows published between the dates, inclusive. A null bound is open.
+     */
+    IntPredicate publishedBetween(LocalDate from, LocalDate to) {
+        long low = from == null ? Integer.MIN_VALUE : from.toEpochDay();
+        long high = to == null ? Integer.MAX_VALUE : to.toEpochDay();
+        int[] publicationDays = this.publicationDays;
+        long[] nulls = this.nullPublicationDays;
+
+        return row -> {
+            int day = publicationDays[row];
+            return day >= low && day <= high && !isNull(nulls, row);
+        };
+    }
+
+    private int compareISBNs(int row, int other) {
+        boolean isNull = isNull(nullISBNs, row);
+        boolean otherIsNull = isNull(nullISBNs, other);
+
+        if(isNull || otherIsNull)
+            return isNull ? (otherIsNull ? 0 : -1) : 1;
+
+        return Integer.compare(ISBNs[row], ISBNs[other]);
+    }
+
+    private static Integer parseISBN(String value) {
+        try {
+            int ISBN = Integer.parseInt(value);
+            return Integer.toString(ISBN).equals(value) ? ISBN : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNull(long[] nulls, int row) {
+        return (nulls[row >>> 6] & 1L << row) != 0;
+    }
+
+    private static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    private static int compareValues(String value, String other) {
+        if(value == null || other == null)
+            return value == null ? (other == null ? 0 : -1) : 1;
+
+        return value.compareTo(other);
+    }
+
+    private void grow(int capacity) {
+        authorCodes = Arrays.copyOf(authorCodes, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        languageCodes = Arrays.copyOf(languageCodes, capacity);
+        ISBNs = Arrays.copyOf(ISBNs, capacity);
+        publicationDays = Arrays.copyOf(publicationDays, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        nullISBNs = Arrays.copyOf(nullISBNs, words(capacity));
+        nullPublicationDays = Arrays.copyOf(nullPublicationDays, words(capacity));
+    }
+
+    /***
+     * Dictionary of a column's values. Codes are given in the order of the first appearance of a value,
+     * null is code -1. The map of codes is used only by the writer, readers only decode codes.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        private volatile String[] values = new String[16];
+
+        private int code(String value) {
+            if(value == null)
+                return -1;
+
+            Integer code = codes.get(value);
+
+            if(code != null)
+                return code;
+
+            int next = codes.size();
+
+            if(next == values.length)
+                values = Arrays.copyOf(values, next * 2);
+
+            values[next] = value;
+            codes.put(value, next);
+
+            return next;
+        }
+
+        private String value(int code) {
+            return code < 0 ? null : values[code];
+        }
+    }
+
+    /***
+     * Texts of a column packed as UTF-8 bytes. The end offset of a row is the start of the next one,
+     * a null text is kept as the complement of its end offset.
+     */
+    private static final class Text {
+
+        private volatile byte[] bytes = new byte[256];
+
+        private volatile int[] ends = new int[16];
+
+        private int length;
+
+        private static byte[] bytesOf(String text) {
+            return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void append(String text, int row) {
+            byte[] encoded = bytesOf(text);
+
+            if(encoded != null && length + encoded.length > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(length + encoded.length, length + length / 4 + 256));
+
+            if(row == ends.length)
+                ends = Arrays.copyOf(ends, row + row / 4 + 16);
+
+            if(encoded == null){
+                ends[row] = ~length;
+                return;
+            }
+
+            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+            length += encoded.length;
+            ends[row] = length;
+        }
+
+        private String get(int row) {
+            int[] ends = this.ends;
+
+            if(ends[row] < 0)
+                return null;
+
+            int start = start(ends, row);
+
+            return new String(bytes, start, ends[row] - start, StandardCharsets.UTF_8);
+        }
+
+        private int compare(int row, int other) {
+            int[] ends = this.ends;
+            byte[] bytes = this.bytes;
+
+            if(ends[row] < 0 || ends[other] < 0)
+                return ends[row] < 0 ? (ends[other] < 0 ? 0 : -1) : 1;
+
+            int start = start(ends, row);
+            int otherStart = start(ends, other);
+
+            return Arrays.compareUnsigned(bytes, start, ends[row], bytes, otherStart, ends[other]);
+        }
+
+        private int compareTo(byte[] key, int row) {
+            int[] ends = this.ends;
+
+            if(key == null || ends[row] < 0)
+                return key == null ? (ends[row] < 0 ? 0 : -1) : 1;
+
+            return Arrays.compareUnsigned(key, 0, key.length, bytes, start(ends, row), ends[row]);
+        }
+
+        private static int start(int[] ends, int row) {
+            if(row == 0)
+                return 0;
+
+            int previous = ends[row - 1];
+
+            return previous < 0 ? ~previous : previous;
+        }
+    }
+}
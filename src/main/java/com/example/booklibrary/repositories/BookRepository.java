@@ -0,0 +1,373 @@
+package com.example.booklibrary.repositories;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookFacet;
+import com.example.booklibrary.models.BookFilter;
+import com.example.booklibrary.models.BookPage;
+import com.example.booklibrary.models.BookSort;
+import com.example.booklibrary.storage.DataStorage;
+import org.springframework.stereotype.Repository;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/***
+ * Catalog of the library books. Books' library storage is read only once, when
+ * the repository is created, and all reads are served from an immutable CatalogSnapshot in memory,
+ * which has the GUID-keyed index, secondary facet indexes (author, category, language, ISBN, name),
+ * books sorted in every BookSort order for keyset pagination, the inverted index of words of names
+ * and authors for search and autocomplete, and the index of taken books.
+ * Every write builds the next version of the snapshot, which shares all the unchanged parts with
+ * the previous one, publishes it with one volatile write and persists the change in the storage.
+ * If the storage fails, the previous version is published again, so a change is never kept without its write.
+ * Writes are serialized by a lock and wait for the storage's commit after they release it.
+ * Reads never lock: they take the current snapshot, which never changes, so readers are not blocked
+ * by writers and never see a half-done write. Callers, which need several reads to agree
+ * (like a page and its counts), take one snapshot() and read everything from it.
+ */
+@Repository
+public class BookRepository {
+
+    private final DataStorage<Book> storage;
+
+    private volatile CatalogSnapshot catalog;
+
+    /***
+     * Serializes writers. It is a ReentrantLock rather than a monitor, so virtual threads waiting for it
+     * or writing the storage under it do not pin their carrier threads.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public BookRepository(DataStorage<Book> storage) {
+        this.storage = storage;
+
+        Map<String, Book> books = new LinkedHashMap<>();
+        storage.load(book -> books.put(book.getGUID(), book));
+        this.catalog = CatalogSnapshot.of(books.values());
+    }
+
+    /***
+     * Gets the current version of the catalog. It never changes, so all reads of it are consistent.
+     * @return catalog snapshot.
+     */
+    public CatalogSnapshot snapshot() {
+        return catalog;
+    }
+
+    /***
+     * Finds a book by its GUID code. When the library is a binary catalog, which has all the written changes,
+     * only the one book is decoded from the mapped file, otherwise the book is found in the snapshot's index.
+     * @param GUID GUID code that is unique.
+     * @return book with its unique GUID code or null, if there is no such book.
+     */
+    public Book findByGUID(String GUID) {
+        Book[] found = new Book[1];
+
+        if(storage.findInCurrentFile(GUID, book -> found[0] = book))
+            return found[0];
+
+        return catalog.findByGUID(GUID);
+    }
+
+    /***
+     * Gets all the books in the order they were added to the library.
+     * @return list of books.
+     */
+    public List<Book> findAll() {
+        return catalog.findAll();
+    }
+
+    public int count() {
+        return catalog.count();
+    }
+
+    /***
+     * Gets one page of all the books in the given order.
+     * @param sort order of the books.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books.
+     */
+    public BookPage findPage(BookSort sort, String after, String before, int size) {
+        return catalog.findPage(sort, after, before, size);
+    }
+
+    /***
+     * Gets one page of books, which have the facet's value, in GUID order.
+     * @param facet book's field.
+     * @param value value of the field.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books.
+     */
+    public BookPage findPageByFacet(BookFacet facet, String value, String after, String before, int size) {
+        return catalog.findPageByFacet(facet, value, after, before, size);
+    }
+
+    /***
+     * Gets one page of taken or available books in GUID order.
+     * @param taken true for taken books, false for available books.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books.
+     */
+    public BookPage findPageByTaken(boolean taken, String after, String before, int size) {
+        return catalog.findPageByTaken(taken, after, before, size);
+    }
+
+    /***
+     * Finds books by a facet's value with one lookup in the facet index.
+     * @param facet book's field.
+     * @param value value of the field.
+     * @return list of books in GUID order.
+     */
+    public List<Book> findByFacet(BookFacet facet, String value) {
+        return catalog.findByFacet(facet, value);
+    }
+
+    /***
+     * Finds books, which match a filter of several fields.
+     * @param filter filter of the books.
+     * @return list of books in GUID order.
+     */
+    public List<Book> findByFilter(BookFilter filter) {
+        return catalog.findByFilter(filter);
+    }
+
+    /***
+     * Gets all the values of a facet with counts of books, which have the value.
+     * @param facet book's field.
+     * @return map of value and count of books, sorted by value.
+     */
+    public SortedMap<String, Integer> countByFacet(BookFacet facet) {
+        return catalog.countByFacet(facet);
+    }
+
+    /***
+     * Finds books by words or prefixes of words in their names and authors.
+     * @param query words to search for, for example "gats" or "great fitzg".
+     * @param limit maximum count of books.
+     * @return books, best match first.
+     */
+    public List<Book> search(String query, int limit) {
+        return catalog.search(query, limit);
+    }
+
+    /***
+     * Completes the last word of the input with words of names and authors in the catalog.
+     * @param input text typed so far.
+     * @param limit maximum count of words.
+     * @return completed words, most common first.
+     */
+    public List<String> suggest(String input, int limit) {
+        return catalog.suggest(input, limit);
+    }
+
+    /***
+     * Marks a book as taken or available. Books, which are not in the catalog, are ignored.
+     * @param GUID GUID unique code of the book.
+     * @param taken true, if the book is reserved by a person.
+     */
+    public void markTaken(String GUID, boolean taken) {
+        writeLock.lock();
+        try {
+            catalog = catalog.withTaken(GUID, taken);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /***
+     * Marks books as taken or available in one version of the catalog. Books, which are not in the catalog, are ignored.
+     * @param takenByGUID taken state of the books by their GUID unique codes.
+     */
+    public void markTaken(Map<String, Boolean> takenByGUID) {
+        writeLock.lock();
+        try {
+            catalog = catalog.withTaken(takenByGUID);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /***
+     * Gets taken books from the index of taken books.
+     * @return list of taken books in GUID order.
+     */
+    public List<Book> findTaken() {
+        return catalog.findTaken();
+    }
+
+    /***
+     * Gets available books, which are not in the index of taken books.
+     * @return list of available books in the order they were added to the library.
+     */
+    public List<Book> findAvailable() {
+        return catalog.findAvailable();
+    }
+
+    /***
+     * Gets the version of the catalog, which is incremented on every change of books or their taken state.
+     * @return catalog version.
+     */
+    public long getVersion() {
+        return catalog.getVersion();
+    }
+
+    public int countTaken() {
+        return catalog.countTaken();
+    }
+
+    public int countAvailable() {
+        return catalog.countAvailable();
+    }
+
+    /***
+     * Adds a book to the catalog and persists it in the library storage.
+     * @param book book to be saved.
+     */
+    public void save(Book book) {
+        writeLock.lock();
+        try {
+            CatalogSnapshot previous = catalog;
+            catalog = catalog.withBooks(List.of(book));
+            persist(previous, () -> storage.recordAdded(book, this::books));
+        } finally {
+            writeLock.unlock();
+        }
+
+        storage.awaitDurable();
+    }
+
+    /***
+     * Adds a batch of books to the catalog as one version and persists them in the library storage with one write.
+     * @param books books to be saved.
+     */
+    public void saveAll(Collection<Book> books) {
+        if(books.isEmpty())
+            return;
+
+        writeLock.lock();
+        try {
+            CatalogSnapshot previous = catalog;
+            catalog = catalog.withBooks(books);
+            persist(previous, () -> storage.recordsAdded(books, this::books));
+        } finally {
+            writeLock.unlock();
+        }
+
+        storage.awaitDurable();
+    }
+
+    /***
+     * Removes a book by GUID from the catalog and the library storage.
+     * The storage is written only when the book was found.
+     * @param GUID GUID unique code of the book.
+     * @return true, if the book was removed.
+     */
+    public boolean removeByGUID(String GUID) {
+        writeLock.lock();
+        try {
+            CatalogSnapshot changed = catalog.withoutBook(GUID);
+
+            if(changed == catalog)
+                return false;
+
+            CatalogSnapshot previous = catalog;
+            catalog = changed;
+            persist(previous, () -> storage.recordRemoved(GUID, this::books));
+        } finally {
+            writeLock.unlock();
+        }
+
+        storage.awaitDurable();
+        return true;
+    }
+
+    /***
+     * Persists a change, which was just published. If the storage fails, the previous version is published again
+     * before the failure is thrown, so the change is neither seen by readers nor written by a later write.
+     * Called with the write lock held, so no other change was made on top of it.
+     */
+    private void persist(CatalogSnapshot previous, Runnable mutation) {
+        try {
+            mutation.run();
+        } catch (RuntimeException e) {
+            catalog = previous;
+            throw e;
+        }
+    }
+
+    /***
+     * Opens the library file for sending it as it is, when it has all the persisted books in JSON.
+     * @return channel of the library file, which the caller closes, or null, if the books have to be written from a snapshot.
+     */
+    public FileChannel openCurrentFile() throws IOException {
+        return storage.openCurrentFile();
+    }
+
+    /***
+     * Gets the library file, whose changes by other processes are reloaded by reload().
+     * @return location of the library file, or null, if the storage does not reload it.
+     */
+    public Path reloadableFile() {
+        return storage.reloadableFile();
+    }
+
+    /***
+     * Reloads the catalog, when the library file was changed by another process. Only the books, which were
+     * added, changed or removed in the file, are indexed again, and the reloaded catalog is published
+     * as one version, so readers see the whole catalog before or after the reload, never a part of it.
+     * Writers wait for the reload, the changed file is not written again.
+     * @param reserved tells, whether a book, which is new in the catalog, is reserved.
+     * @return true, if the file was changed and the catalog was reloaded.
+     * @throws IOException if the changed file cannot be read whole, the catalog is kept then.
+     */
+    public boolean reload(Predicate<String> reserved) throws IOException {
+        writeLock.lock();
+        try {
+            Map<String, Book> books = new LinkedHashMap<>();
+
+            if(!storage.reloadIfChanged(book -> books.put(book.getGUID(), book)))
+                return false;
+
+            catalog = catalog.reloaded(books, reserved);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /***
+     * Folds journaled mutations of the library storage into a new snapshot. The catalog is taken
+     * under the write lock, so it is consistent with the journal, and written without it.
+     * The snapshot is immutable, so it is not copied.
+     */
+    public void compact() {
+        Collection<Book> state;
+
+        writeLock.lock();
+        try {
+            if(!storage.startCompaction())
+                return;
+
+            state = catalog.books();
+        } finally {
+            writeLock.unlock();
+        }
+
+        storage.finishCompaction(state);
+    }
+
+    /***
+     * Gets the books of the latest catalog for the storage, which may write them later.
+     */
+    private Collection<Book> books() {
+        return catalog.books();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.booklibrary.repositories;
+import com.example.booklibrary.models.BookFilter;
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.StreamSupport;
+
+/***
+ * Finds the rows of a catalog's version, which match a BookFilter. Every filter is compiled into a predicate
+ * on the rows' columns, and the rows it is tested on are chosen by the filter's selectivity:
+ * when the facet index gives few candidates (equal values, an AND with at least one of them,
+ * an OR of only such filters), only the candidates are tested, otherwise all the rows are scanned
+ * by a parallel stream, which splits the catalog into ranges for the fork-join pool of the caller.
+ */
+final class CatalogFilter {
+
+    /***
+     * Candidates are taken from the indexes, when they are at most 1/8 of the rows.
+     */
+    private static final int INDEX_SELECTIVITY = 8;
+
+    /***
+     * Smaller catalogs are scanned by the calling thread, forking would cost more than the scan.
+     */
+    private static final int PARALLEL_SCAN_MIN_ROWS = 16_384;
+
+    private final BookColumns columns;
+
+    private final PersistentSortedMap<Integer, Integer> rowsByGUID;
+
+    private final FacetIndex facetIndex;
+
+    CatalogFilter(BookColumns columns, PersistentSortedMap<Integer, Integer> rowsByGUID, FacetIndex facetIndex) {
+        this.columns = columns;
+        this.rowsByGUID = rowsByGUID;
+        this.facetIndex = facetIndex;
+    }
+
+    /***
+     * Finds the rows, which match the filter.
+     * @param filter filter of the books.
+     * @return rows in GUID order.
+     */
+    List<Integer> find(BookFilter filter) {
+        IntPredicate matcher = matcher(filter);
+        int candidates = candidatesCount(filter);
+
+        if(candidates >= 0 && (long) candidates * INDEX_SELECTIVITY <= rowsByGUID.size()){
+            List<Integer> rows = new ArrayList<>();
+
+            for(Integer row : candidates(filter)){
+                if(matcher.test(row))
+                    rows.add(row);
+            }
+
+            return rows;
+        }
+
+        return StreamSupport.stream(rowsByGUID.valuesSpliterator(), rowsByGUID.size() >= PARALLEL_SCAN_MIN_ROWS)
+                .filter(matcher::test)
+                .toList();
+    }
+
+    /***
+     * Counts the candidates, which the facet index gives for the filter.
+     * @return count of candidates, or -1, if the filter cannot be served by the index.
+     */
+    private int candidatesCount(BookFilter filter) {
+        if(filter instanceof BookFilter.Equals equals)
+            return facetIndex.rows(equals.facet(), equals.value()).size();
+
+        if(filter instanceof BookFilter.And and)
+            return and.filters().stream().mapToInt(this::candidatesCount).filter(count -> count >= 0).min().orElse(-1);
+
+        if(filter instanceof BookFilter.Or or){
+            long count = 0;
+
+            for(BookFilter child : or.filters()){
+                int childCount = candidatesCount(child);
+
+                if(childCount < 0)
+                    return -1;
+
+                count += childCount;
+            }
+
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        return -1;
+    }
+
+    /***
+     * Gets the candidates of a filter, which can be served by the index, in GUID order: the rows of an equal value,
+     * the candidates of the most selective filter of an AND, or the union of the candidates of an OR.
+     */
+    private Collection<Integer> candidates(BookFilter filter) {
+        if(filter instanceof BookFilter.Equals equals)
+            return facetIndex.rows(equals.facet(), equals.value()).values();
+
+        if(filter instanceof BookFilter.And and){
+            BookFilter mostSelective = and.filters().stream()
+                    .filter(child -> candidatesCount(child) >= 0)
+                    .min(Comparator.comparingInt(this::candidatesCount))
+                    .orElseThrow();
+
+            return candidates(mostSelective);
+        }
+
+        SortedSet<Integer> union = new TreeSet<>(columns::compareGUIDs);
+
+        for(BookFilter child : ((BookFilter.Or) filter).filters()){
+            union.addAll(candidates(child));
+        }
+
+        return union;
+    }
+
+    /***
+     * Compiles the filter into a predicate on the rows, which reads only the columns of the filter's fields.
+     */
+    private IntPredicate matcher(BookFilter filter) {
+        if(filter instanceof BookFilter.Equals equals){
+            ToIntFunction<Integer> probe = columns.facetProbe(equals.facet(), equals.value());
+            return row -> probe.applyAsInt(row) == 0;
+        }
+
+        if(filter instanceof BookFilter.ISBNRange range)
+            return columns.ISBNBetween(range.from(), range.to());
+
+        if(filter instanceof BookFilter.PublicationDateRange range)
+            return columns.publishedBetween(range.from(), range.to());
+
+        if(filter instanceof BookFilter.And and)
+            return and.filters().stream().map(this::matcher).reduce(row -> true, IntPredicate::and);
+
+        return ((BookFilter.Or) filter).filters().stream().map(this::matcher).reduce(row -> false, IntPredicate::or);
+    }
+}
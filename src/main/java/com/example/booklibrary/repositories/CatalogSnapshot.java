@@ -0,0 +1,559 @@
+package com.example.booklibrary.repositories;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookFacet;
+import com.example.booklibrary.models.BookFilter;
+import com.example.booklibrary.models.BookPage;
+import com.example.booklibrary.models.BookSort;
+import com.example.booklibrary.models.SortedBooks;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/***
+ * Immutable version of the books' catalog with all its indexes: books by GUID, in the order they were added
+ * and sorted by name, facet and search indexes and taken books. A change makes a new version, in which every
+ * changed index copies only O(log n) nodes of its persistent map and shares the rest with the previous version.
+ * A book is found by its GUID in a hash trie in O(1), the sorted index by GUID serves pages and scans,
+ * and taken books are also kept as a set of bits of their rows, so scans of available books check a row in O(1).
+ * Books' fields are kept once, in BookColumns, and the indexes keep only the shared row numbers of the books,
+ * so Book objects are made only for the books, which a read returns.
+ * BookRepository publishes every version at once, so a reader, which holds a snapshot, sees one consistent
+ * catalog as long as it needs, without locks and without waiting for writers.
+ */
+public final class CatalogSnapshot {
+
+    /***
+     * Count of dead rows of removed and replaced books, below which the catalog is never rebuilt.
+     */
+    private static final int MIN_DEAD_ROWS = 65_536;
+
+    private final long version;
+
+    private final long booksVersion;
+
+    private final BookColumns columns;
+
+    private final PersistentHashMap<Integer, Integer> GUIDLookup;
+
+    private final PersistentSortedMap<Integer, Integer> rowsByGUID;
+
+    private final PersistentSortedMap<Integer, Integer> rowsBySequence;
+
+    private final PersistentSortedMap<Integer, Integer> rowsByName;
+
+    private final PersistentSortedMap<Integer, Integer> takenRows;
+
+    private final PersistentBitSet takenBits;
+
+    private final FacetIndex facetIndex;
+
+    private final SearchIndex searchIndex;
+
+    private final int nextSequence;
+
+    private CatalogSnapshot(long version, long booksVersion, BookColumns columns, PersistentHashMap<Integer, Integer> GUIDLookup,
+                            PersistentSortedMap<Integer, Integer> rowsByGUID, PersistentSortedMap<Integer, Integer> rowsBySequence,
+                            PersistentSortedMap<Integer, Integer> rowsByName, PersistentSortedMap<Integer, Integer> takenRows,
+                            PersistentBitSet takenBits, FacetIndex facetIndex, SearchIndex searchIndex, int nextSequence) {
+        this.version = version;
+        this.booksVersion = booksVersion;
+        this.columns = columns;
+        this.GUIDLookup = GUIDLookup;
+        this.rowsByGUID = rowsByGUID;
+        this.rowsBySequence = rowsBySequence;
+        this.rowsByName = rowsByName;
+        this.takenRows = takenRows;
+        this.takenBits = takenBits;
+        this.facetIndex = facetIndex;
+        this.searchIndex = searchIndex;
+        this.nextSequence = nextSequence;
+    }
+
+    /***
+     * Builds the first version of the catalog. All the indexes are built from sorted rows at once.
+     * @param books books with distinct GUIDs in the order they were added.
+     * @return catalog of version 0 without taken books.
+     */
+    static CatalogSnapshot of(Collection<Book> books) {
+        return of(0, books, Set.of());
+    }
+
+    private static CatalogSnapshot of(long version, Collection<Book> books, Set<String> takenGUIDs) {
+        BookColumns columns = new BookColumns(books.size());
+        List<Integer> rows = new ArrayList<>(books.size());
+        List<Integer> taken = new ArrayList<>(takenGUIDs.size());
+
+        for(Book book : books){
+            Integer row = columns.append(book, rows.size());
+            rows.add(row);
+
+            if(takenGUIDs.contains(book.getGUID()))
+                taken.add(row);
+        }
+
+        Comparator<Integer> GUIDOrder = columns::compareGUIDs;
+        List<Integer> rowsInGUIDOrder = new ArrayList<>(rows);
+        rowsInGUIDOrder.sort(GUIDOrder);
+        taken.sort(GUIDOrder);
+
+        PersistentHashMap<Integer, Integer> GUIDLookup = PersistentHashMap.empty(columns::GUIDHash);
+
+        for(Integer row : rows){
+            GUIDLookup = GUIDLookup.put(row, row);
+        }
+
+        return new CatalogSnapshot(version, version, columns, GUIDLookup,
+                PersistentSortedMap.ofSorted(GUIDOrder, rowsInGUIDOrder, rowsInGUIDOrder),
+                PersistentSortedMap.ofSorted(columns::compareSequences, rows, rows),
+                PersistentSortedMap.of(columns::compareNames, rows, Function.identity()),
+                PersistentSortedMap.ofSorted(GUIDOrder, taken, taken),
+                PersistentBitSet.of(taken),
+                FacetIndex.of(columns, rows),
+                SearchIndex.of(columns, rows),
+                rows.size());
+    }
+
+    /***
+     * Gets the version of the catalog, which is incremented on every change of books or their taken state.
+     * @return catalog version.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /***
+     * Gets the version of the last change of the books themselves. It is not incremented, when a book is only
+     * taken or returned, so views, which do not show taken state, stay valid across checkouts.
+     * @return version of the catalog, in which the books were last added, replaced or removed.
+     */
+    public long getBooksVersion() {
+        return this.booksVersion;
+    }
+
+    /***
+     * Finds a book by its GUID code.
+     * @param GUID GUID code that is unique.
+     * @return book with its unique GUID code or null, if there is no such book.
+     */
+    public Book findByGUID(String GUID) {
+        Integer row = rowOf(GUID);
+
+        return row == null ? null : columns.book(row);
+    }
+
+    /***
+     * Gets all the books in the order they were added to the library.
+     * @return list of books.
+     */
+    public List<Book> findAll() {
+        return books(rowsBySequence.values());
+    }
+
+    public int count() {
+        return rowsByGUID.size();
+    }
+
+    /***
+     * Gets one page of all the books in the given order.
+     * @param sort order of the books.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books.
+     */
+    public BookPage findPage(BookSort sort, String after, String before, int size) {
+        return BookPage.of(sorted(sort), book -> true, sort, after, before, size, count());
+    }
+
+    /***
+     * Gets one page of books, which have the facet's value, in GUID order.
+     * @param facet book's field.
+     * @param value value of the field.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books.
+     */
+    public BookPage findPageByFacet(BookFacet facet, String value, String after, String before, int size) {
+        PersistentSortedMap<Integer, Integer> rows = facetIndex.rows(facet, value);
+
+        return BookPage.of(sortedByGUID(rows, row -> true), book -> true, BookSort.GUID, after, before, size, rows.size());
+    }
+
+    /***
+     * Gets one page of taken or available books in GUID order. Taken books are walked in their own index,
+     * available books are all the books, whose rows are not in the set of taken rows.
+     * @param taken true for taken books, false for available books.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books.
+     */
+    public BookPage findPageByTaken(boolean taken, String after, String before, int size) {
+        if(taken)
+            return BookPage.of(sortedByGUID(takenRows, row -> true), book -> true, BookSort.GUID, after, before, size, countTaken());
+
+        return BookPage.of(sortedByGUID(rowsByGUID, row -> !takenBits.get(row)), book -> true, BookSort.GUID, after, before, size, countAvailable());
+    }
+
+    /***
+     * Finds books, which match a filter of several fields. Selective filters are served from the facet index,
+     * the others by a parallel scan of the catalog's columns.
+     * @param filter filter of the books.
+     * @return list of books in GUID order.
+     */
+    public List<Book> findByFilter(BookFilter filter) {
+        return books(new CatalogFilter(columns, rowsByGUID, facetIndex).find(filter));
+    }
+
+    /***
+     * Gets one page of books, which match a filter of several fields, in GUID order.
+     * @param filter filter of the books.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books.
+     */
+    public BookPage findPageByFilter(BookFilter filter, String after, String before, int size) {
+        List<Integer> found = new CatalogFilter(columns, rowsByGUID, facetIndex).find(filter);
+        PersistentSortedMap<Integer, Integer> rows = PersistentSortedMap.ofSorted(rowsByGUID.comparator(), found, found);
+
+        return BookPage.of(sortedByGUID(rows, row -> true), book -> true, BookSort.GUID, after, before, size, rows.size());
+    }
+
+    /***
+     * Finds books by a facet's value with one lookup in the facet index.
+     * @param facet book's field.
+     * @param value value of the field.
+     * @return list of books in GUID order.
+     */
+    public List<Book> findByFacet(BookFacet facet, String value) {
+        return facetIndex.find(facet, value);
+    }
+
+    /***
+     * Gets all the values of a facet with counts of books, which have the value.
+     * @param facet book's field.
+     * @return map of value and count of books, sorted by value.
+     */
+    public SortedMap<String, Integer> countByFacet(BookFacet facet) {
+        return facetIndex.counts(facet);
+    }
+
+    /***
+     * Finds books by words or prefixes of words in their names and authors.
+     * @param query words to search for, for example "gats" or "great fitzg".
+     * @param limit maximum count of books.
+     * @return books, best match first.
+     */
+    public List<Book> search(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    /***
+     * Completes the last word of the input with words of names and authors in the catalog.
+     * @param input text typed so far.
+     * @param limit maximum count of words.
+     * @return completed words, most common first.
+     */
+    public List<String> suggest(String input, int limit) {
+        return searchIndex.suggest(input, limit);
+    }
+
+    /***
+     * Gets taken books from the index of taken books.
+     * @return list of taken books in GUID order.
+     */
+    public List<Book> findTaken() {
+        return books(takenRows.values());
+    }
+
+    /***
+     * Gets available books, which are all the books, that are not taken.
+     * @return list of available books in the order they were added to the library.
+     */
+    public List<Book> findAvailable() {
+        List<Book> available = new ArrayList<>(countAvailable());
+
+        for(Integer row : rowsBySequence.values()){
+            if(!takenBits.get(row))
+                available.add(columns.book(row));
+        }
+
+        return available;
+    }
+
+    public int countTaken() {
+        return takenRows.size();
+    }
+
+    public int countAvailable() {
+        return count() - countTaken();
+    }
+
+    /***
+     * Gets all the books of this version in the order they were added, as an unmodifiable view,
+     * which makes the books, while it is iterated.
+     * @return books of the catalog.
+     */
+    public Collection<Book> books() {
+        Collection<Integer> rows = rowsBySequence.values();
+
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Book> iterator() {
+                return booksOf(rows.iterator(), row -> true);
+            }
+
+            @Override
+            public int size() {
+                return rows.size();
+            }
+        };
+    }
+
+    /***
+     * Makes the next version with the books added. A book with the GUID of a book in the catalog replaces it
+     * and keeps its place in the order of the books and its taken state.
+     * @param books books to add.
+     * @return next version of the catalog.
+     */
+    CatalogSnapshot withBooks(Collection<Book> books) {
+        CatalogSnapshot catalog = this;
+
+        for(Book book : books){
+            catalog = catalog.with(book, version + 1);
+        }
+
+        return catalog.compacted();
+    }
+
+    /***
+     * Makes the next version without the book.
+     * @param GUID GUID unique code of the book.
+     * @return next version of the catalog, or this version, if there is no such book.
+     */
+    CatalogSnapshot withoutBook(String GUID) {
+        Integer removed = rowOf(GUID);
+
+        if(removed == null)
+            return this;
+
+        return without(removed, version + 1).compacted();
+    }
+
+    /***
+     * Makes the next version, in which the book is taken or available.
+     * @param GUID GUID unique code of the book.
+     * @param taken true, if the book is reserved by a person.
+     * @return next version of the catalog, or this version, if there is no such book or it is already in that state.
+     */
+    CatalogSnapshot withTaken(String GUID, boolean taken) {
+        return withTaken(GUID, taken, version + 1);
+    }
+
+    /***
+     * Makes the next version, in which all the books are taken or available at once.
+     * @param takenByGUID taken state of the books by their GUID unique codes.
+     * @return next version of the catalog, or this version, if no book changed its state.
+     */
+    CatalogSnapshot withTaken(Map<String, Boolean> takenByGUID) {
+        CatalogSnapshot catalog = this;
+
+        for(Map.Entry<String, Boolean> taken : takenByGUID.entrySet()){
+            catalog = catalog.withTaken(taken.getKey(), taken.getValue(), version + 1);
+        }
+
+        return catalog;
+    }
+
+    /***
+     * Makes the next version with the books of a data file, which was changed by another process.
+     * Books, which are not in the file, are removed, and books, which are new or have other fields,
+     * are added or replaced, so only the changed books touch the indexes, the others keep their rows.
+     * Replaced books keep their place and taken state, new books are taken, when they are reserved.
+     * @param books books of the file by their GUID unique codes.
+     * @param reserved tells, whether a book is reserved.
+     * @return next version of the catalog, or this version, if no book was changed.
+     */
+    CatalogSnapshot reloaded(Map<String, Book> books, Predicate<String> reserved) {
+        CatalogSnapshot catalog = this;
+
+        for(Integer row : rowsByGUID.values()){
+            if(!books.containsKey(columns.GUID(row)))
+                catalog = catalog.without(row, version + 1);
+        }
+
+        for(Book book : books.values()){
+            Integer row = rowOf(book.getGUID());
+
+            if(row != null && sameFields(columns.book(row), book))
+                continue;
+
+            catalog = catalog.with(book, version + 1);
+
+            if(row == null && reserved.test(book.getGUID()))
+                catalog = catalog.withTaken(book.getGUID(), true, version + 1);
+        }
+
+        return catalog == this ? this : catalog.compacted();
+    }
+
+    private CatalogSnapshot withTaken(String GUID, boolean taken, long version) {
+        Integer row = rowOf(GUID);
+
+        if(row == null || takenBits.get(row) == taken)
+            return this;
+
+        return new CatalogSnapshot(version, booksVersion, columns, GUIDLookup, rowsByGUID, rowsBySequence, rowsByName,
+                taken ? takenRows.put(row, row) : takenRows.remove(row), takenBits.with(row, taken), facetIndex, searchIndex, nextSequence);
+    }
+
+    private CatalogSnapshot without(Integer row, long version) {
+        return new CatalogSnapshot(version, version, columns, GUIDLookup.remove(row), rowsByGUID.remove(row), rowsBySequence.remove(row),
+                rowsByName.remove(row), takenRows.remove(row), takenBits.with(row, false), facetIndex.remove(row), searchIndex.remove(row), nextSequence);
+    }
+
+    private static boolean sameFields(Book book, Book other) {
+        return Objects.equals(book.getName(), other.getName())
+                && Objects.equals(book.getAuthor(), other.getAuthor())
+                && Objects.equals(book.getCategory(), other.getCategory())
+                && Objects.equals(book.getLanguage(), other.getLanguage())
+                && Objects.equals(book.getPublicationDate(), other.getPublicationDate())
+                && Objects.equals(book.getISBN(), other.getISBN())
+                && Objects.equals(book.getGUID(), other.getGUID());
+    }
+
+    private CatalogSnapshot with(Book book, long version) {
+        Integer previous = rowOf(book.getGUID());
+        PersistentSortedMap<Integer, Integer> bySequence = rowsBySequence;
+        PersistentSortedMap<Integer, Integer> byName = rowsByName;
+        PersistentHashMap<Integer, Integer> lookup = GUIDLookup;
+        PersistentSortedMap<Integer, Integer> byGUID = rowsByGUID;
+        PersistentSortedMap<Integer, Integer> taken = takenRows;
+        PersistentBitSet takenSet = takenBits;
+        FacetIndex facets = facetIndex;
+        SearchIndex search = searchIndex;
+        int next = nextSequence;
+        int sequence;
+
+        if(previous != null){
+            sequence = columns.sequence(previous);
+            lookup = lookup.remove(previous);
+            byGUID = byGUID.remove(previous);
+            bySequence = bySequence.remove(previous);
+            byName = byName.remove(previous);
+            facets = facets.remove(previous);
+            search = search.remove(previous);
+        } else {
+            sequence = next++;
+        }
+
+        Integer row = columns.append(book, sequence);
+
+        if(previous != null && takenSet.get(previous)){
+            taken = taken.remove(previous).put(row, row);
+            takenSet = takenSet.with(previous, false).with(row, true);
+        }
+
+        return new CatalogSnapshot(version, version, columns, lookup.put(row, row), byGUID.put(row, row), bySequence.put(row, row),
+                byName.put(row, row), taken, takenSet, facets.add(row), search.add(row), next);
+    }
+
+    /***
+     * Rebuilds the catalog without the rows of removed and replaced books, when there are more of them
+     * than of the books. The rebuilt catalog has new columns, so the versions, which readers still hold,
+     * keep the old ones, until they are done.
+     */
+    private CatalogSnapshot compacted() {
+        if(columns.rows() - count() <= Math.max(count(), MIN_DEAD_ROWS))
+            return this;
+
+        Set<String> takenGUIDs = new HashSet<>();
+        takenRows.values().forEach(row -> takenGUIDs.add(columns.GUID(row)));
+
+        return of(version, books(), takenGUIDs);
+    }
+
+    private Integer rowOf(String GUID) {
+        ToIntFunction<Integer> probe = columns.GUIDProbe(GUID);
+
+        return GUIDLookup.find(GUID.hashCode(), row -> probe.applyAsInt(row) == 0);
+    }
+
+    private List<Book> books(Collection<Integer> rows) {
+        List<Book> books = new ArrayList<>(rows.size());
+        rows.forEach(row -> books.add(columns.book(row)));
+
+        return books;
+    }
+
+    private Iterator<Book> booksOf(Iterator<Integer> rows, IntPredicate filter) {
+        return new Iterator<>() {
+            private Integer next = advance();
+
+            private Integer advance() {
+                while(rows.hasNext()){
+                    Integer row = rows.next();
+
+                    if(filter.test(row))
+                        return row;
+                }
+
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Book next() {
+                if(next == null)
+                    throw new NoSuchElementException();
+
+                Book book = columns.book(next);
+                next = advance();
+
+                return book;
+            }
+        };
+    }
+
+    private SortedBooks sorted(BookSort sort) {
+        return switch(sort){
+            case GUID -> sortedByGUID(rowsByGUID, row -> true);
+            case NAME -> new SortedBooks() {
+                @Override
+                public Iterator<Book> after(Book probe) {
+                    return booksOf(rowsByName.valuesAfter(probe == null ? null : columns.nameProbe(probe.getName(), probe.getGUID())), row -> true);
+                }
+
+                @Override
+                public Iterator<Book> before(Book probe) {
+                    return booksOf(rowsByName.valuesBefore(columns.nameProbe(probe.getName(), probe.getGUID())), row -> true);
+                }
+            };
+        };
+    }
+
+    /***
+     * Books of the rows in GUID order, which pass the filter. The rows are filtered before the books are made.
+     */
+    private SortedBooks sortedByGUID(PersistentSortedMap<Integer, Integer> rows, IntPredicate filter) {
+        return new SortedBooks() {
+            @Override
+            public Iterator<Book> after(Book probe) {
+                return booksOf(rows.valuesAfter(probe == null ? null : columns.GUIDProbe(probe.getGUID())), filter);
+            }
+
+            @Override
+            public Iterator<Book> before(Book probe) {
+                return booksOf(rows.valuesBefore(columns.GUIDProbe(probe.getGUID())), filter);
+            }
+        };
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.booklibrary.repositories;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookFacet;
+import java.util.*;
+
+/***
+ * Secondary indexes of the books' catalog: for every facet (author, category, language, ISBN, name)
+ * maps a value to the rows of the books, which have it, ordered by GUID, so they can be paginated by GUID cursor.
+ * A value is keyed by the row of a book, which had it, when the value was added, and is found by
+ * a probe of the value, so the index keeps no strings of its own.
+ * Count of books per value is the size of its map, so facet counts are kept up to date
+ * on every add and remove. Immutable: add and remove make a new version of the index, which
+ * shares the maps of all the other values with the previous one.
+ */
+final class FacetIndex {
+
+    private final BookColumns columns;
+
+    private final PersistentSortedMap<Integer, Integer> noRows;
+
+    private final Map<BookFacet, PersistentSortedMap<Integer, PersistentSortedMap<Integer, Integer>>> rowsByFacet;
+
+    private FacetIndex(BookColumns columns, PersistentSortedMap<Integer, Integer> noRows,
+                       Map<BookFacet, PersistentSortedMap<Integer, PersistentSortedMap<Integer, Integer>>> rowsByFacet) {
+        this.columns = columns;
+        this.noRows = noRows;
+        this.rowsByFacet = rowsByFacet;
+    }
+
+    /***
+     * Builds the index of all the rows at once, sorting them instead of adding them one by one.
+     * @param columns columns of the rows.
+     * @param rows rows with distinct GUIDs.
+     * @return index of the rows.
+     */
+    static FacetIndex of(BookColumns columns, List<Integer> rows) {
+        Map<BookFacet, PersistentSortedMap<Integer, PersistentSortedMap<Integer, Integer>>> rowsByFacet = new EnumMap<>(BookFacet.class);
+        Comparator<Integer> GUIDOrder = columns::compareGUIDs;
+        List<Integer> rowsInGUIDOrder = new ArrayList<>(rows);
+        rowsInGUIDOrder.sort(GUIDOrder);
+
+        for(BookFacet facet : BookFacet.values()){
+            Comparator<Integer> valueOrder = columns.facetOrder(facet);
+            List<Integer> sorted = new ArrayList<>(rowsInGUIDOrder);
+            sorted.sort(valueOrder);
+
+            List<Integer> values = new ArrayList<>();
+            List<PersistentSortedMap<Integer, Integer>> rowsOfValues = new ArrayList<>();
+
+            for(int from = 0, to; from < sorted.size(); from = to){
+                to = from + 1;
+
+                while(to < sorted.size() && valueOrder.compare(sorted.get(from), sorted.get(to)) == 0){
+                    to++;
+                }
+
+                List<Integer> rowsOfValue = sorted.subList(from, to);
+                values.add(sorted.get(from));
+                rowsOfValues.add(PersistentSortedMap.ofSorted(GUIDOrder, rowsOfValue, rowsOfValue));
+            }
+
+            rowsByFacet.put(facet, PersistentSortedMap.ofSorted(valueOrder, values, rowsOfValues));
+        }
+
+        return new FacetIndex(columns, PersistentSortedMap.empty(GUIDOrder), rowsByFacet);
+    }
+
+    FacetIndex add(Integer row) {
+        Map<BookFacet, PersistentSortedMap<Integer, PersistentSortedMap<Integer, Integer>>> changed = new EnumMap<>(rowsByFacet);
+
+        for(BookFacet facet : BookFacet.values()){
+            PersistentSortedMap<Integer, PersistentSortedMap<Integer, Integer>> values = changed.get(facet);
+            Integer value = values.findKey(row);
+            PersistentSortedMap<Integer, Integer> rowsOfValue = value == null ? noRows : values.get(value);
+
+            changed.put(facet, values.put(value == null ? row : value, rowsOfValue.put(row, row)));
+        }
+
+        return new FacetIndex(columns, noRows, changed);
+    }
+
+    FacetIndex remove(Integer row) {
+        Map<BookFacet, PersistentSortedMap<Integer, PersistentSortedMap<Integer, Integer>>> changed = new EnumMap<>(rowsByFacet);
+
+        for(BookFacet facet : BookFacet.values()){
+            PersistentSortedMap<Integer, PersistentSortedMap<Integer, Integer>> values = changed.get(facet);
+            Integer value = values.findKey(row);
+
+            if(value != null){
+                PersistentSortedMap<Integer, Integer> rowsOfValue = values.get(value).remove(row);
+                changed.put(facet, rowsOfValue.isEmpty() ? values.remove(value) : values.put(value, rowsOfValue));
+            }
+        }
+
+        return new FacetIndex(columns, noRows, changed);
+    }
+
+    List<Book> find(BookFacet facet, String value) {
+        List<Book> books = new ArrayList<>();
+        rows(facet, value).values().forEach(row -> books.add(columns.book(row)));
+
+        return books;
+    }
+
+    /***
+     * Gets the rows of the books, which have the facet's value, ordered by GUID.
+     */
+    PersistentSortedMap<Integer, Integer> rows(BookFacet facet, String value) {
+        PersistentSortedMap<Integer, Integer> rows = rowsByFacet.get(facet).find(columns.facetProbe(facet, value));
+
+        return rows == null ? noRows : rows;
+    }
+
+    /***
+     * Gets all the values of a facet with counts of books, sorted by value.
+     * @param facet book's field.
+     * @return map of value and count of books.
+     */
+    SortedMap<String, Integer> counts(BookFacet facet) {
+        SortedMap<String, Integer> counts = new TreeMap<>();
+        rowsByFacet.get(facet).forEach((value, rows) -> counts.put(columns.facetValue(facet, value), rows.size()));
+
+        return counts;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.booklibrary.repositories;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/***
+ * Background compactor for the "journal" persistence mode. Periodically folds the
+ * journals of the library and reservations into new data file snapshots.
+ */
+@Component
+@ConditionalOnProperty(name = "booklibrary.persistence-mode", havingValue = "journal")
+public class JournalCompactor {
+
+    private final BookRepository bookRepository;
+
+    private final ReservationRepository reservationRepository;
+
+    public JournalCompactor(BookRepository bookRepository, ReservationRepository reservationRepository) {
+        this.bookRepository = bookRepository;
+        this.reservationRepository = reservationRepository;
+    }
+
+    @Scheduled(fixedDelayString = "${booklibrary.journal.compaction-interval:60000}")
+    public void compact() {
+        bookRepository.compact();
+        reservationRepository.compact();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.booklibrary.repositories;
+import java.util.Arrays;
+import java.util.Collection;
+
+/***
+ * Immutable set of bits, which is changed by making a new version of it. Bits are kept in chunks of 4096,
+ * so a change copies one chunk and the array of the chunks, and the new version shares all the other chunks
+ * with the old one. Reading a bit is one array lookup, so a set of rows can be checked for every row of a scan.
+ */
+final class PersistentBitSet {
+
+    private static final int CHUNK_SHIFT = 12;
+
+    private static final int CHUNK_WORDS = 1 << (CHUNK_SHIFT - 6);
+
+    private final long[][] chunks;
+
+    private PersistentBitSet(long[][] chunks) {
+        this.chunks = chunks;
+    }
+
+    /***
+     * Builds a set with the bits at once.
+     * @param indexes indexes of the set bits.
+     * @return set of the bits.
+     */
+    static PersistentBitSet of(Collection<Integer> indexes) {
+        long[][] chunks = new long[0][];
+
+        for(int index : indexes){
+            chunks = withChunk(chunks, index >>> CHUNK_SHIFT);
+            chunks[index >>> CHUNK_SHIFT][word(index)] |= 1L << index;
+        }
+
+        return new PersistentBitSet(chunks);
+    }
+
+    boolean get(int index) {
+        int chunk = index >>> CHUNK_SHIFT;
+
+        return chunk < chunks.length && chunks[chunk] != null && (chunks[chunk][word(index)] & 1L << index) != 0;
+    }
+
+    /***
+     * Makes the next version with the bit set or cleared.
+     * @param index index of the bit.
+     * @param value true to set the bit.
+     * @return next version, or this version, if the bit already has the value.
+     */
+    PersistentBitSet with(int index, boolean value) {
+        if(get(index) == value)
+            return this;
+
+        int chunk = index >>> CHUNK_SHIFT;
+        long[][] changed = chunk < chunks.length ? chunks.clone() : Arrays.copyOf(chunks, chunk + 1);
+        long[] words = changed[chunk] == null ? new long[CHUNK_WORDS] : changed[chunk].clone();
+
+        if(value){
+            words[word(index)] |= 1L << index;
+        } else {
+            words[word(index)] &= ~(1L << index);
+        }
+
+        changed[chunk] = words;
+
+        return new PersistentBitSet(changed);
+    }
+
+    private static long[][] withChunk(long[][] chunks, int chunk) {
+        if(chunk >= chunks.length)
+            chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+
+        if(chunks[chunk] == null)
+            chunks[chunk] = new long[CHUNK_WORDS];
+
+        return chunks;
+    }
+
+    private static int word(int index) {
+        return (index >>> 6) & (CHUNK_WORDS - 1);
+    }
+}
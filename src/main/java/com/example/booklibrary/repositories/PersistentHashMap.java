@@ -0,0 +1,383 @@
+package com.example.booklibrary.repositories;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/***
+ * Immutable hash map, which is changed by making a new version of it. It is a hash array mapped trie:
+ * every level takes 5 bits of the key's hash and keeps only the present children of its 32 in an array,
+ * which is indexed by a bitmap, and keys with the same hash share a collision node. A lookup reads at most
+ * 7 levels, so it is O(1), and put and remove copy only the path from the root to the changed entry and share
+ * all the other nodes with the old version. Old versions stay valid and unchanged, so they can be read by any
+ * count of threads without locks while a new version is built.
+ * Besides keys, entries can be found by a hash and a predicate, so a map can be searched by something, which is
+ * not a key, like a GUID of a map keyed by rows. The order of the entries is the order of their hashes.
+ * @param <K> type of the keys.
+ * @param <V> type of the values.
+ */
+final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = (1 << BITS) - 1;
+
+    private record Entry<K, V>(int hash, K key, V value) {}
+
+    /***
+     * Node of a level, whose slots are entries or nodes of the next level.
+     */
+    private record Branch(int bitmap, Object[] slots) {}
+
+    /***
+     * Entries, whose keys have the same hash.
+     */
+    private record Collision(int hash, Entry<?, ?>[] entries) {}
+
+    private static final Branch EMPTY = new Branch(0, new Object[0]);
+
+    private final ToIntFunction<? super K> hasher;
+
+    private final Branch root;
+
+    private final int size;
+
+    private PersistentHashMap(ToIntFunction<? super K> hasher, Branch root, int size) {
+        this.hasher = hasher;
+        this.root = root;
+        this.size = size;
+    }
+
+    /***
+     * Makes an empty map, whose keys are hashed by their hashCode().
+     * @return empty map.
+     */
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return new PersistentHashMap<>(Object::hashCode, EMPTY, 0);
+    }
+
+    /***
+     * Makes an empty map, whose keys are hashed by the function, for keys, which stand for something else.
+     * @param hasher hash of a key.
+     * @return empty map.
+     */
+    static <K, V> PersistentHashMap<K, V> empty(ToIntFunction<? super K> hasher) {
+        return new PersistentHashMap<>(hasher, EMPTY, 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    V get(K key) {
+        return find(hasher.applyAsInt(key), other -> Objects.equals(other, key));
+    }
+
+    boolean containsKey(K key) {
+        return entry(spread(hasher.applyAsInt(key)), other -> Objects.equals(other, key)) != null;
+    }
+
+    /***
+     * Finds the value of the key, which has the hash and matches the predicate.
+     * @param hash hash of the searched key, as the map's hasher makes it.
+     * @param matches tells, whether a key with the hash is the searched one.
+     * @return value of the found key or null, if there is no such key.
+     */
+    V find(int hash, Predicate<? super K> matches) {
+        Entry<K, V> entry = entry(spread(hash), matches);
+
+        return entry == null ? null : entry.value();
+    }
+
+    PersistentHashMap<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        Branch changed = (Branch)put(root, 0, new Entry<>(spread(hasher.applyAsInt(key)), key, value), added);
+
+        return new PersistentHashMap<>(hasher, changed, added[0] ? size + 1 : size);
+    }
+
+    PersistentHashMap<K, V> remove(K key) {
+        Object changed = remove(root, 0, spread(hasher.applyAsInt(key)), key);
+
+        if(changed == root)
+            return this;
+
+        return new PersistentHashMap<>(hasher, changed == null ? EMPTY : (Branch)changed, size - 1);
+    }
+
+    /***
+     * Gets all the values as an unmodifiable view, which walks the trie, while it is iterated.
+     * @return values in the order of their keys' hashes.
+     */
+    Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> entry(int hash, Predicate<? super K> matches) {
+        Object node = root;
+
+        for(int shift = 0; ; shift += BITS){
+            if(node instanceof Branch branch){
+                int bit = bit(hash, shift);
+
+                if((branch.bitmap() & bit) == 0)
+                    return null;
+
+                node = branch.slots()[index(branch.bitmap(), bit)];
+            } else if(node instanceof Entry<?, ?> entry){
+                return entry.hash() == hash && matches.test((K)entry.key()) ? (Entry<K, V>)entry : null;
+            } else {
+                Collision collision = (Collision)node;
+
+                if(collision.hash() != hash)
+                    return null;
+
+                for(Entry<?, ?> entry : collision.entries()){
+                    if(matches.test((K)entry.key()))
+                        return (Entry<K, V>)entry;
+                }
+
+                return null;
+            }
+        }
+    }
+
+    private static Object put(Object node, int shift, Entry<?, ?> entry, boolean[] added) {
+        if(node instanceof Collision collision){
+            Entry<?, ?>[] entries = collision.entries();
+
+            if(collision.hash() != entry.hash()){
+                added[0] = true;
+                return merge(collision, collision.hash(), entry, shift);
+            }
+
+            for(int i = 0; i < entries.length; i++){
+                if(Objects.equals(entries[i].key(), entry.key())){
+                    Entry<?, ?>[] replaced = entries.clone();
+                    replaced[i] = entry;
+
+                    return new Collision(collision.hash(), replaced);
+                }
+            }
+
+            Entry<?, ?>[] appended = Arrays.copyOf(entries, entries.length + 1);
+            appended[entries.length] = entry;
+            added[0] = true;
+
+            return new Collision(collision.hash(), appended);
+        }
+
+        Branch branch = (Branch)node;
+        int bit = bit(entry.hash(), shift);
+        int index = index(branch.bitmap(), bit);
+
+        if((branch.bitmap() & bit) == 0){
+            Object[] slots = new Object[branch.slots().length + 1];
+            System.arraycopy(branch.slots(), 0, slots, 0, index);
+            slots[index] = entry;
+            System.arraycopy(branch.slots(), index, slots, index + 1, branch.slots().length - index);
+            added[0] = true;
+
+            return new Branch(branch.bitmap() | bit, slots);
+        }
+
+        Object slot = branch.slots()[index];
+        Object changed;
+
+        if(slot instanceof Entry<?, ?> present){
+            if(present.hash() == entry.hash() && Objects.equals(present.key(), entry.key())){
+                changed = entry;
+            } else {
+                changed = merge(present, present.hash(), entry, shift + BITS);
+                added[0] = true;
+            }
+        } else {
+            changed = put(slot, shift + BITS, entry, added);
+        }
+
+        return new Branch(branch.bitmap(), replaced(branch.slots(), index, changed));
+    }
+
+    /***
+     * Removes the key from the node.
+     * @return the node, if there is no such key, the changed node, an entry or a collision, which is left alone
+     * and moves up to the parent, or null, if the node is left empty.
+     */
+    private static Object remove(Object node, int shift, int hash, Object key) {
+        if(node instanceof Collision collision){
+            Entry<?, ?>[] entries = collision.entries();
+
+            for(int i = 0; i < entries.length; i++){
+                if(Objects.equals(entries[i].key(), key)){
+                    if(entries.length == 2)
+                        return entries[1 - i];
+
+                    Entry<?, ?>[] removed = new Entry<?, ?>[entries.length - 1];
+                    System.arraycopy(entries, 0, removed, 0, i);
+                    System.arraycopy(entries, i + 1, removed, i, removed.length - i);
+
+                    return new Collision(collision.hash(), removed);
+                }
+            }
+
+            return node;
+        }
+
+        Branch branch = (Branch)node;
+        int bit = bit(hash, shift);
+
+        if((branch.bitmap() & bit) == 0)
+            return node;
+
+        int index = index(branch.bitmap(), bit);
+        Object slot = branch.slots()[index];
+        Object changed;
+
+        if(slot instanceof Entry<?, ?> entry){
+            if(entry.hash() != hash || !Objects.equals(entry.key(), key))
+                return node;
+
+            changed = null;
+        } else {
+            changed = remove(slot, shift + BITS, hash, key);
+
+            if(changed == slot)
+                return node;
+        }
+
+        if(changed != null)
+            return lifted(new Branch(branch.bitmap(), replaced(branch.slots(), index, changed)), shift);
+
+        if(branch.slots().length == 1)
+            return null;
+
+        Object[] slots = new Object[branch.slots().length - 1];
+        System.arraycopy(branch.slots(), 0, slots, 0, index);
+        System.arraycopy(branch.slots(), index + 1, slots, index, slots.length - index);
+
+        return lifted(new Branch(branch.bitmap() & ~bit, slots), shift);
+    }
+
+    /***
+     * Below the root, a branch with one entry or collision is replaced by it, so removals do not leave long paths behind.
+     */
+    private static Object lifted(Branch branch, int shift) {
+        if(shift > 0 && branch.slots().length == 1 && !(branch.slots()[0] instanceof Branch))
+            return branch.slots()[0];
+
+        return branch;
+    }
+
+    /***
+     * Makes a node of an entry or a collision and a new entry, whose hashes are the same up to the shift.
+     */
+    private static Object merge(Object present, int presentHash, Entry<?, ?> entry, int shift) {
+        if(presentHash == entry.hash())
+            return new Collision(presentHash, new Entry<?, ?>[] {(Entry<?, ?>)present, entry});
+
+        int presentBit = bit(presentHash, shift);
+        int entryBit = bit(entry.hash(), shift);
+
+        if(presentBit == entryBit)
+            return new Branch(presentBit, new Object[] {merge(present, presentHash, entry, shift + BITS)});
+
+        return new Branch(presentBit | entryBit, Integer.compareUnsigned(presentBit, entryBit) < 0
+                ? new Object[] {present, entry} : new Object[] {entry, present});
+    }
+
+    private static Object[] replaced(Object[] slots, int index, Object slot) {
+        Object[] replaced = slots.clone();
+        replaced[index] = slot;
+
+        return replaced;
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    /***
+     * Spreads the higher bits of the hash to the lower ones, which are used by the first levels.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /***
+     * Walks the trie depth first with a stack of the slots, which are left to visit.
+     */
+    private class ValueIterator implements Iterator<V> {
+
+        private final Deque<Iterator<Object>> path = new ArrayDeque<>();
+
+        private Iterator<Entry<?, ?>> collision = Collections.emptyIterator();
+
+        private Entry<?, ?> next;
+
+        private ValueIterator() {
+            path.push(Arrays.asList(root.slots()).iterator());
+            next = advance();
+        }
+
+        private Entry<?, ?> advance() {
+            if(collision.hasNext())
+                return collision.next();
+
+            while(!path.isEmpty()){
+                if(!path.peek().hasNext()){
+                    path.pop();
+                    continue;
+                }
+
+                Object slot = path.peek().next();
+
+                if(slot instanceof Entry<?, ?> entry)
+                    return entry;
+
+                if(slot instanceof Branch branch){
+                    path.push(Arrays.asList(branch.slots()).iterator());
+                } else {
+                    collision = Arrays.asList(((Collision)slot).entries()).iterator();
+                    return collision.next();
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if(next == null)
+                throw new NoSuchElementException();
+
+            V value = (V)next.value();
+            next = advance();
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.example.booklibrary.repositories;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/***
+ * Immutable sorted map, which is changed by making a new version of it. It is an AVL tree, where
+ * put and remove copy only the path from the root to the changed node, O(log n) nodes, and the new
+ * version shares all the other nodes with the old one. Old versions stay valid and unchanged,
+ * so they can be read by any count of threads without locks while a new version is built.
+ * Every node knows the size of its subtree, so size() is O(1).
+ * Besides keys, positions can be given by probes, which compare the searched position with a key,
+ * so a map can be searched by something, which is not a key, like a GUID of a map keyed by rows.
+ * @param <K> type of the keys.
+ * @param <V> type of the values.
+ */
+final class PersistentSortedMap<K, V> {
+
+    private record Node<K, V>(K key, V value, Node<K, V> left, Node<K, V> right, int height, int size) {}
+
+    private final Comparator<? super K> comparator;
+
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentSortedMap<>(comparator, null);
+    }
+
+    /***
+     * Builds a balanced map from sorted entries in O(n), without n separate puts.
+     * @param comparator order of the keys.
+     * @param keys distinct keys in the order of the comparator.
+     * @param values values of the keys.
+     * @return map of the entries.
+     */
+    static <K, V> PersistentSortedMap<K, V> ofSorted(Comparator<? super K> comparator, List<K> keys, List<V> values) {
+        return new PersistentSortedMap<>(comparator, build(keys, values, 0, keys.size()));
+    }
+
+    /***
+     * Builds a balanced map of values, which are keyed by the function, in O(n log n) for the sort.
+     * @param comparator order of the keys.
+     * @param values values with distinct keys in any order.
+     * @param keyOf key of a value.
+     * @return map of the values.
+     */
+    static <K, V> PersistentSortedMap<K, V> of(Comparator<? super K> comparator, Collection<V> values, Function<? super V, ? extends K> keyOf) {
+        List<V> sorted = new ArrayList<>(values);
+        sorted.sort((first, second) -> comparator.compare(keyOf.apply(first), keyOf.apply(second)));
+
+        List<K> keys = new ArrayList<>(sorted.size());
+
+        for(V value : sorted){
+            keys.add(keyOf.apply(value));
+        }
+
+        return ofSorted(comparator, keys, sorted);
+    }
+
+    Comparator<? super K> comparator() {
+        return this.comparator;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    V get(K key) {
+        Node<K, V> node = node(probe(key));
+
+        return node == null ? null : node.value();
+    }
+
+    boolean containsKey(K key) {
+        return node(probe(key)) != null;
+    }
+
+    /***
+     * Finds the value of the key, which the probe matches.
+     * @param probe comparison of the searched position with a key, like a comparator's.
+     * @return value or null, if no key matches.
+     */
+    V find(ToIntFunction<? super K> probe) {
+        Node<K, V> node = node(probe);
+
+        return node == null ? null : node.value();
+    }
+
+    /***
+     * Gets the key of the map, which is equal to the given key, so equal keys can share one instance.
+     * @return key of the map or null, if there is no such key.
+     */
+    K findKey(K key) {
+        Node<K, V> node = node(probe(key));
+
+        return node == null ? null : node.key();
+    }
+
+    /***
+     * Makes a version of the map with the entry. An existing entry of the key is replaced, together with its key.
+     * @return new version of the map.
+     */
+    PersistentSortedMap<K, V> put(K key, V value) {
+        return new PersistentSortedMap<>(comparator, put(root, key, value));
+    }
+
+    /***
+     * Makes a version of the map without the key. If there is no such key, the same map is returned.
+     * @return new version of the map.
+     */
+    PersistentSortedMap<K, V> remove(K key) {
+        Node<K, V> removed = remove(root, key);
+
+        return removed == root ? this : new PersistentSortedMap<>(comparator, removed);
+    }
+
+    /***
+     * Gets an unmodifiable view of the values in the order of the keys. The view is of this version,
+     * so it never changes and can be kept or iterated by any thread.
+     */
+    Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return valuesAfter(null);
+            }
+
+            @Override
+            public int size() {
+                return PersistentSortedMap.this.size();
+            }
+        };
+    }
+
+    /***
+     * Iterates the values of the keys after the probe's position in ascending order.
+     * @param probe position, after which the iteration starts, or null to iterate all the values.
+     */
+    Iterator<V> valuesAfter(ToIntFunction<? super K> probe) {
+        Iterator<Node<K, V>> nodes = ascending(probe, false);
+
+        return values(nodes);
+    }
+
+    /***
+     * Iterates the values of the keys before the probe's position in descending order.
+     * @param probe position, before which the iteration starts, or null to iterate all the values.
+     */
+    Iterator<V> valuesBefore(ToIntFunction<? super K> probe) {
+        Iterator<Node<K, V>> nodes = descending(probe);
+
+        return values(nodes);
+    }
+
+    /***
+     * Splits the values in the order of the keys by their positions, so a parallel stream of the values
+     * is walked by fork-join tasks, each iterating its own range of positions.
+     */
+    Spliterator<V> valuesSpliterator() {
+        return new ValuesSpliterator(0, size());
+    }
+
+    /***
+     * Iterates the entries, which keys are greater than or equal to the given key, in ascending order.
+     */
+    Iterator<Map.Entry<K, V>> entriesFrom(K key) {
+        Iterator<Node<K, V>> nodes = ascending(probe(key), true);
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                Node<K, V> node = nodes.next();
+                return Map.entry(node.key(), node.value());
+            }
+        };
+    }
+
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        Iterator<Node<K, V>> nodes = ascending(null, false);
+
+        while(nodes.hasNext()){
+            Node<K, V> node = nodes.next();
+            action.accept(node.key(), node.value());
+        }
+    }
+
+    private ToIntFunction<K> probe(K key) {
+        return other -> comparator.compare(key, other);
+    }
+
+    private Node<K, V> node(ToIntFunction<? super K> probe) {
+        Node<K, V> node = root;
+
+        while(node != null){
+            int comparison = probe.applyAsInt(node.key());
+
+            if(comparison == 0)
+                return node;
+
+            node = comparison < 0 ? node.left() : node.right();
+        }
+
+        return null;
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value) {
+        if(node == null)
+            return node(key, value, null, null);
+
+        int comparison = comparator.compare(key, node.key());
+
+        if(comparison < 0)
+            return balance(node.key(), node.value(), put(node.left(), key, value), node.right());
+
+        if(comparison > 0)
+            return balance(node.key(), node.value(), node.left(), put(node.right(), key, value));
+
+        return node(key, value, node.left(), node.right());
+    }
+
+    private Node<K, V> remove(Node<K, V> node, K key) {
+        if(node == null)
+            return null;
+
+        int comparison = comparator.compare(key, node.key());
+
+        if(comparison < 0){
+            Node<K, V> left = remove(node.left(), key);
+            return left == node.left() ? node : balance(node.key(), node.value(), left, node.right());
+        }
+
+        if(comparison > 0){
+            Node<K, V> right = remove(node.right(), key);
+            return right == node.right() ? node : balance(node.key(), node.value(), node.left(), right);
+        }
+
+        if(node.left() == null)
+            return node.right();
+
+        if(node.right() == null)
+            return node.left();
+
+        Node<K, V> first = node.right();
+
+        while(first.left() != null){
+            first = first.left();
+        }
+
+        return balance(first.key(), first.value(), node.left(), removeFirst(node.right()));
+    }
+
+    private Node<K, V> removeFirst(Node<K, V> node) {
+        if(node.left() == null)
+            return node.right();
+
+        return balance(node.key(), node.value(), removeFirst(node.left()), node.right());
+    }
+
+    /***
+     * Makes a node of the subtrees, which heights differ by 2 at most, with a rotation, if they differ by 2.
+     */
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int leftHeight = height(left), rightHeight = height(right);
+
+        if(leftHeight > rightHeight + 1){
+            if(height(left.left()) >= height(left.right()))
+                return node(left.key(), left.value(), left.left(), node(key, value, left.right(), right));
+
+            Node<K, V> middle = left.right();
+            return node(middle.key(), middle.value(), node(left.key(), left.value(), left.left(), middle.left()), node(key, value, middle.right(), right));
+        }
+
+        if(rightHeight > leftHeight + 1){
+            if(height(right.right()) >= height(right.left()))
+                return node(right.key(), right.value(), node(key, value, left, right.left()), right.right());
+
+            Node<K, V> middle = right.left();
+            return node(middle.key(), middle.value(), node(key, value, left, middle.left()), node(right.key(), right.value(), middle.right(), right.right()));
+        }
+
+        return node(key, value, left, right);
+    }
+
+    private static <K, V> Node<K, V> build(List<K> keys, List<V> values, int from, int to) {
+        if(from >= to)
+            return null;
+
+        int middle = (from + to) >>> 1;
+
+        return node(keys.get(middle), values.get(middle), build(keys, values, from, middle), build(keys, values, middle + 1, to));
+    }
+
+    private static <K, V> Node<K, V> node(K key, V value, Node<K, V> left, Node<K, V> right) {
+        return new Node<>(key, value, left, right, Math.max(height(left), height(right)) + 1, size(left) + size(right) + 1);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height();
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size();
+    }
+
+    /***
+     * Iterates the nodes from the probe's position in ascending order. The stack holds the path of the nodes,
+     * which are still to be visited, so the iteration takes O(log n) memory.
+     */
+    private Iterator<Node<K, V>> ascending(ToIntFunction<? super K> from, boolean inclusive) {
+        Deque<Node<K, V>> path = new ArrayDeque<>();
+        Node<K, V> node = root;
+
+        while(node != null){
+            int comparison = from == null ? -1 : from.applyAsInt(node.key());
+
+            if(comparison < 0 || (comparison == 0 && inclusive)){
+                path.push(node);
+                node = node.left();
+            } else {
+                node = node.right();
+            }
+        }
+
+        return ascending(path);
+    }
+
+    /***
+     * Iterates the nodes from the given position in the order of the keys, found by the sizes of the subtrees.
+     */
+    private Iterator<Node<K, V>> ascendingFrom(int index) {
+        Deque<Node<K, V>> path = new ArrayDeque<>();
+        Node<K, V> node = root;
+
+        while(node != null){
+            int leftSize = size(node.left());
+
+            if(index < leftSize){
+                path.push(node);
+                node = node.left();
+            } else if(index == leftSize){
+                path.push(node);
+                break;
+            } else {
+                index -= leftSize + 1;
+                node = node.right();
+            }
+        }
+
+        return ascending(path);
+    }
+
+    private static <K, V> Iterator<Node<K, V>> ascending(Deque<Node<K, V>> path) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Node<K, V> next() {
+                if(path.isEmpty())
+                    throw new NoSuchElementException();
+
+                Node<K, V> next = path.pop();
+
+                for(Node<K, V> child = next.right(); child != null; child = child.left()){
+                    path.push(child);
+                }
+
+                return next;
+            }
+        };
+    }
+
+    private Iterator<Node<K, V>> descending(ToIntFunction<? super K> before) {
+        Deque<Node<K, V>> path = new ArrayDeque<>();
+        Node<K, V> node = root;
+
+        while(node != null){
+            if(before == null || before.applyAsInt(node.key()) > 0){
+                path.push(node);
+                node = node.right();
+            } else {
+                node = node.left();
+            }
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Node<K, V> next() {
+                if(path.isEmpty())
+                    throw new NoSuchElementException();
+
+                Node<K, V> next = path.pop();
+
+                for(Node<K, V> child = next.left(); child != null; child = child.right()){
+                    path.push(child);
+                }
+
+                return next;
+            }
+        };
+    }
+
+    private static <K, V> Iterator<V> values(Iterator<Node<K, V>> nodes) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public V next() {
+                return nodes.next().value();
+            }
+        };
+    }
+
+    private final class ValuesSpliterator implements Spliterator<V> {
+
+        private int from;
+
+        private final int to;
+
+        private Iterator<Node<K, V>> nodes;
+
+        private ValuesSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super V> action) {
+            if(from >= to)
+                return false;
+
+            if(nodes == null)
+                nodes = ascendingFrom(from);
+
+            action.accept(nodes.next().value());
+            from++;
+
+            return true;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            if(nodes != null || to - from < 2)
+                return null;
+
+            int middle = (from + to) >>> 1;
+            Spliterator<V> prefix = new ValuesSpliterator(from, middle);
+            from = middle;
+
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+        }
+    }
+}
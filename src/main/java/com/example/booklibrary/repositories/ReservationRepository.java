@@ -0,0 +1,410 @@
+package com.example.booklibrary.repositories;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.storage.DataStorage;
+import org.springframework.stereotype.Repository;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/***
+ * Books' reservations store. Reservations' storage is read only once, when the
+ * repository is created. Keeps two indexes in memory: reservation by book's GUID
+ * and count of taken books by person, so checks on checkout are O(1) lookups.
+ * Both indexes are one immutable versioned snapshot of persistent hash maps, which is published through
+ * an atomic reference. Writes build the next version, sharing the unchanged nodes with the previous one,
+ * publish it with compare-and-set (retrying on a concurrent write) and persist the change in the storage,
+ * and wait for the storage's commit after they release the lock. A change, which the storage fails to persist,
+ * is taken back before the failure is thrown. Reads take the current version without
+ * locks. Check-then-act sequences (like checkout) have to be guarded by the
+ * caller with locks of the book and the person.
+ * Every reservation is scheduled in a timing wheel by the end of its period, so overdue
+ * reservations are found without scanning all of them. Reservations, which were removed before
+ * the end of their period, stay in the wheel until then and are skipped, when they are due.
+ */
+@Repository
+public class ReservationRepository {
+
+    private static final Duration EXPIRY_TICK = Duration.ofMinutes(1);
+
+    private final DataStorage<BookReservation> storage;
+
+    private final AtomicReference<Reservations> reservations = new AtomicReference<>(Reservations.EMPTY);
+
+    /***
+     * Mutations share the read lock, compaction takes the write lock to see a state,
+     * which is consistent with the journal.
+     */
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+
+    private final TimingWheel<BookReservation> expiryWheel = new TimingWheel<>(EXPIRY_TICK.toMillis(), System.currentTimeMillis());
+
+    private final ReentrantLock expiryLock = new ReentrantLock();
+
+    /***
+     * Immutable version of the indexes.
+     */
+    private record Reservations(long version, PersistentHashMap<String, BookReservation> byGUID,
+                                PersistentHashMap<String, Integer> takenBooksByPerson) {
+
+        private static final Reservations EMPTY = new Reservations(0, PersistentHashMap.empty(), PersistentHashMap.empty());
+
+        private Reservations with(BookReservation reservation) {
+            BookReservation previous = byGUID.get(reservation.getBookGUID());
+            PersistentHashMap<String, Integer> counts = previous == null ? takenBooksByPerson : decrement(takenBooksByPerson, previous.getPerson());
+            Integer count = counts.get(reservation.getPerson());
+
+            return new Reservations(version + 1, byGUID.put(reservation.getBookGUID(), reservation),
+                    counts.put(reservation.getPerson(), count == null ? 1 : count + 1));
+        }
+
+        private Reservations without(String GUID) {
+            BookReservation removed = byGUID.get(GUID);
+
+            if(removed == null)
+                return this;
+
+            return new Reservations(version + 1, byGUID.remove(GUID), decrement(takenBooksByPerson, removed.getPerson()));
+        }
+
+        private static PersistentHashMap<String, Integer> decrement(PersistentHashMap<String, Integer> counts, String person) {
+            Integer count = counts.get(person);
+
+            if(count == null)
+                return counts;
+
+            return count > 1 ? counts.put(person, count - 1) : counts.remove(person);
+        }
+    }
+
+    /***
+     * Loads the reservations. Reservations saved before checkout instants were kept
+     * are counted as taken at the moment of loading.
+     * @param storage storage of the reservations.
+     */
+    public ReservationRepository(DataStorage<BookReservation> storage) {
+        this.storage = storage;
+        Instant loadedAt = Instant.now();
+
+        storage.load(reservation -> index(reservation.getTakenAt() == null ? reservation.takenAt(loadedAt) : reservation));
+    }
+
+    /***
+     * Finds a reservation by book's GUID code.
+     * @param GUID book's unique GUID code.
+     * @return book reservation or null, if the book is not reserved.
+     */
+    public BookReservation findByGUID(String GUID) {
+        return reservations.get().byGUID().get(GUID);
+    }
+
+    public boolean existsByGUID(String GUID) {
+        return reservations.get().byGUID().containsKey(GUID);
+    }
+
+    /***
+     * Gets how many books a person has already taken.
+     * @param person detail about the person.
+     * @return count of taken books.
+     */
+    public int countByPerson(String person) {
+        Integer count = reservations.get().takenBooksByPerson().get(person);
+
+        return count == null ? 0 : count;
+    }
+
+    /***
+     * Gets all the reservations of one version.
+     * @return list of reservations in no particular order.
+     */
+    public List<BookReservation> findAll() {
+        return new ArrayList<>(reservations.get().byGUID().values());
+    }
+
+    /***
+     * Gets all the reservations of one version as an unmodifiable view, which is not copied.
+     * @return reservations in no particular order.
+     */
+    public Collection<BookReservation> snapshot() {
+        return Collections.unmodifiableCollection(reservations.get().byGUID().values());
+    }
+
+    /***
+     * Opens the reservations file for sending it as it is, when it has all the persisted reservations in JSON.
+     * @return channel of the reservations file, which the caller closes, or null, if the reservations have to be written from a snapshot.
+     */
+    public FileChannel openCurrentFile() throws IOException {
+        return storage.openCurrentFile();
+    }
+
+    /***
+     * Gets the reservations file, whose changes by other processes are reloaded by reload().
+     * @return location of the reservations file, or null, if the storage does not reload it.
+     */
+    public Path reloadableFile() {
+        return storage.reloadableFile();
+    }
+
+    /***
+     * Reloads the reservations, when the reservations file was changed by another process. Only the reservations,
+     * which were added, changed or removed in the file, are indexed again and scheduled for expiry, and the reloaded
+     * reservations are published as one version. Mutations wait for the reload, the changed file is not written again.
+     * A reservation without a checkout instant keeps the instant of the same reservation, which was loaded before,
+     * and a new one is counted as taken at the moment of reloading, so files written before checkout instants
+     * were kept do not reset the expiry of their reservations on every reload.
+     * @return GUIDs of the books, whose reservations were added, changed or removed, empty, if there are none.
+     * @throws IOException if the changed file cannot be read whole, the reservations are kept then.
+     */
+    public Set<String> reload() throws IOException {
+        Map<String, BookReservation> loaded = new HashMap<>();
+        Instant loadedAt = Instant.now();
+        Set<String> changedGUIDs = new HashSet<>();
+        List<BookReservation> added = new ArrayList<>();
+
+        compactionLock.writeLock().lock();
+        try {
+            if(!storage.reloadIfChanged(reservation -> loaded.put(reservation.getBookGUID(), reservation)))
+                return Set.of();
+
+            Reservations current = reservations.get();
+            Reservations changed = current;
+
+            for(BookReservation reservation : current.byGUID().values()){
+                if(!loaded.containsKey(reservation.getBookGUID())){
+                    changed = changed.without(reservation.getBookGUID());
+                    changedGUIDs.add(reservation.getBookGUID());
+                }
+            }
+
+            for(BookReservation reservation : loaded.values()){
+                BookReservation previous = current.byGUID().get(reservation.getBookGUID());
+
+                if(reservation.getTakenAt() == null)
+                    reservation = reservation.takenAt(sameHolder(previous, reservation) ? previous.getTakenAt() : loadedAt);
+
+                if(!sameFields(previous, reservation)){
+                    changed = changed.with(reservation);
+                    changedGUIDs.add(reservation.getBookGUID());
+                    added.add(reservation);
+                }
+            }
+
+            reservations.set(changed);
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+
+        added.forEach(this::schedule);
+        return changedGUIDs;
+    }
+
+    /***
+     * Gets the version of the reservations, which is incremented on every change.
+     * @return reservations version.
+     */
+    public long getVersion() {
+        return reservations.get().version();
+    }
+
+    /***
+     * Adds a reservation to the indexes and persists it in the reservations' storage.
+     * Reservation without a checkout instant is taken now.
+     * @param reservation details about book's reservation.
+     */
+    public void save(BookReservation reservation) {
+        BookReservation taken = reservation.getTakenAt() == null ? reservation.takenAt(Instant.now()) : reservation;
+
+        compactionLock.readLock().lock();
+        try {
+            BookReservation previous = findByGUID(taken.getBookGUID());
+            index(taken);
+
+            try {
+                storage.recordAdded(taken, this::state);
+            } catch (RuntimeException e) {
+                unpublish(taken.getBookGUID(), taken, previous);
+                throw e;
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+
+        storage.awaitDurable();
+    }
+
+    /***
+     * Removes a reservation by book's GUID from the indexes and the reservations' storage.
+     * The storage is written only when the reservation was found.
+     * @param GUID book's unique GUID code.
+     * @return true, if the reservation was removed.
+     */
+    public boolean removeByGUID(String GUID) {
+        compactionLock.readLock().lock();
+        try {
+            Reservations current, changed;
+
+            do {
+                current = reservations.get();
+                changed = current.without(GUID);
+
+                if(changed == current)
+                    return false;
+            } while(!reservations.compareAndSet(current, changed));
+
+            try {
+                storage.recordRemoved(GUID, this::state);
+            } catch (RuntimeException e) {
+                unpublish(GUID, null, current.byGUID().get(GUID));
+                throw e;
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+
+        storage.awaitDurable();
+        return true;
+    }
+
+    /***
+     * Finds reservations, which have ended until the given instant, by moving the timing wheel forward.
+     * Every reservation is returned once, so the caller has to remove the found reservations.
+     * @param now current instant.
+     * @return overdue reservations, which are still current.
+     */
+    public List<BookReservation> findDue(Instant now) {
+        List<BookReservation> due = new ArrayList<>();
+
+        expiryLock.lock();
+        try {
+            expiryWheel.advance(now.toEpochMilli(), reservation -> {
+                if(findByGUID(reservation.getBookGUID()) == reservation)
+                    due.add(reservation);
+            });
+        } finally {
+            expiryLock.unlock();
+        }
+
+        return due;
+    }
+
+    /***
+     * Removes a batch of reservations from the indexes and persists the removals with one write.
+     * Reservation is removed only if it is still the current reservation of its book.
+     * @param batch reservations to remove.
+     * @return removed reservations.
+     */
+    public List<BookReservation> removeAll(Collection<BookReservation> batch) {
+        List<BookReservation> removed = new ArrayList<>(batch.size());
+
+        compactionLock.readLock().lock();
+        try {
+            Reservations current, changed;
+
+            do {
+                current = reservations.get();
+                changed = current;
+                removed.clear();
+
+                for(BookReservation reservation : batch){
+                    if(changed.byGUID().get(reservation.getBookGUID()) == reservation){
+                        changed = changed.without(reservation.getBookGUID());
+                        removed.add(reservation);
+                    }
+                }
+            } while(changed != current && !reservations.compareAndSet(current, changed));
+
+            if(!removed.isEmpty()){
+                try {
+                    storage.recordsRemoved(removed.stream().map(BookReservation::getBookGUID).toList(), this::state);
+                } catch (RuntimeException e) {
+                    removed.forEach(reservation -> unpublish(reservation.getBookGUID(), null, reservation));
+                    throw e;
+                }
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+
+        storage.awaitDurable();
+        return removed;
+    }
+
+    /***
+     * Folds journaled mutations of the reservations' storage into a new snapshot. The state is taken
+     * while no mutation is running, but the snapshot is written without blocking them.
+     * The state is immutable, so it is not copied.
+     */
+    public void compact() {
+        Collection<BookReservation> state;
+
+        compactionLock.writeLock().lock();
+        try {
+            if(!storage.startCompaction())
+                return;
+
+            state = state();
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+
+        storage.finishCompaction(state);
+    }
+
+    /***
+     * Gets the reservations of the latest version for the storage, which may write them later.
+     */
+    private Collection<BookReservation> state() {
+        return reservations.get().byGUID().values();
+    }
+
+    /***
+     * Takes back a published change of a book's reservation, which the storage failed to persist, so it is
+     * neither seen by readers nor written by a later write. Reservations of other books may have changed since,
+     * so only this book's reservation is put back, and only if it is still the one, which was published.
+     * @param GUID book's unique GUID code.
+     * @param published reservation, which was published, null for a removal.
+     * @param previous reservation before the change, null, if the book was not reserved.
+     */
+    private void unpublish(String GUID, BookReservation published, BookReservation previous) {
+        reservations.updateAndGet(current -> {
+            if(current.byGUID().get(GUID) != published)
+                return current;
+
+            return previous == null ? current.without(GUID) : current.with(previous);
+        });
+    }
+
+    private void index(BookReservation reservation) {
+        reservations.updateAndGet(current -> current.with(reservation));
+        schedule(reservation);
+    }
+
+    private void schedule(BookReservation reservation) {
+        expiryLock.lock();
+        try {
+            expiryWheel.add(reservation, reservation.getDueAt().toEpochMilli());
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+
+    private static boolean sameFields(BookReservation reservation, BookReservation other) {
+        return sameHolder(reservation, other) && Objects.equals(reservation.getTakenAt(), other.getTakenAt());
+    }
+
+    /***
+     * Checks, if the reservations are of the same book by the same person for the same period.
+     */
+    private static boolean sameHolder(BookReservation reservation, BookReservation other) {
+        return reservation != null
+                && Objects.equals(reservation.getPerson(), other.getPerson())
+                && Objects.equals(reservation.getPeriod(), other.getPeriod())
+                && Objects.equals(reservation.getBookGUID(), other.getBookGUID());
+    }
+}
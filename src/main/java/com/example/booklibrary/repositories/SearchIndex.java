@@ -0,0 +1,339 @@
+package com.example.booklibrary.repositories;
+import com.example.booklibrary.models.Book;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/***
+ * Inverted index of the words in books' names and authors. Words are lowercased and accents are removed,
+ * so "gats" finds "The Great Gatsby" and "zvaigzde" finds "Žvaigždė". Terms are kept in a sorted
+ * dictionary, so all the terms with a prefix are one range of it, which is used both for
+ * prefix search and for autocomplete. Books are kept as their rows in the BookColumns, and only
+ * the books of the results are made of them. Immutable: add and remove make a new version of the index,
+ * which shares the postings of all the other terms with the previous one.
+ */
+final class SearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int MAX_PREFIX_TERMS = 256;
+
+    private static final int MAX_CANDIDATES = 1000;
+
+    private final BookColumns columns;
+
+    private final PersistentSortedMap<Integer, Integer> noRows;
+
+    private final PersistentSortedMap<String, Postings> postingsByTerm;
+
+    private final PersistentSortedMap<Integer, Words> wordsByRow;
+
+    /***
+     * Rows of the books, which have the term in the name or in the author, ordered by GUID.
+     */
+    private record Postings(PersistentSortedMap<Integer, Integer> byName, PersistentSortedMap<Integer, Integer> byAuthor) {
+
+        private PersistentSortedMap<Integer, Integer> of(boolean name) {
+            return name ? byName : byAuthor;
+        }
+
+        private Postings with(boolean name, PersistentSortedMap<Integer, Integer> rows) {
+            return name ? new Postings(rows, byAuthor) : new Postings(byName, rows);
+        }
+
+        private int size() {
+            return byName.size() + byAuthor.size();
+        }
+    }
+
+    /***
+     * Words of the book's name and author, kept so queries do not tokenize the candidates again.
+     * Words are the instances of the terms' dictionary, so a word is kept once, whatever the count of its books.
+     */
+    private record Words(List<String> name, List<String> author) {}
+
+    private record Match(Integer row, int score, int nameLength) {}
+
+    private SearchIndex(BookColumns columns, PersistentSortedMap<Integer, Integer> noRows,
+                        PersistentSortedMap<String, Postings> postingsByTerm, PersistentSortedMap<Integer, Words> wordsByRow) {
+        this.columns = columns;
+        this.noRows = noRows;
+        this.postingsByTerm = postingsByTerm;
+        this.wordsByRow = wordsByRow;
+    }
+
+    /***
+     * Builds the index of all the rows at once, grouping the rows by term and sorting the terms
+     * instead of adding the rows one by one.
+     * @param columns columns of the rows.
+     * @param rows rows with distinct GUIDs.
+     * @return index of the rows.
+     */
+    static SearchIndex of(BookColumns columns, List<Integer> rows) {
+        Comparator<Integer> GUIDOrder = columns::compareGUIDs;
+        List<Integer> rowsInGUIDOrder = new ArrayList<>(rows);
+        rowsInGUIDOrder.sort(GUIDOrder);
+
+        Map<String, String> dictionary = new HashMap<>();
+        Map<String, List<Integer>> byName = new HashMap<>();
+        Map<String, List<Integer>> byAuthor = new HashMap<>();
+        List<Words> words = new ArrayList<>(rowsInGUIDOrder.size());
+
+        for(Integer row : rowsInGUIDOrder){
+            Words rowWords = new Words(terms(tokens(columns.name(row)), dictionary), terms(tokens(columns.author(row)), dictionary));
+            words.add(rowWords);
+
+            new LinkedHashSet<>(rowWords.name()).forEach(term -> byName.computeIfAbsent(term, t -> new ArrayList<>()).add(row));
+            new LinkedHashSet<>(rowWords.author()).forEach(term -> byAuthor.computeIfAbsent(term, t -> new ArrayList<>()).add(row));
+        }
+
+        PersistentSortedMap<Integer, Integer> noRows = PersistentSortedMap.empty(GUIDOrder);
+        List<String> terms = new ArrayList<>(dictionary.keySet());
+        terms.sort(Comparator.naturalOrder());
+        List<Postings> postings = new ArrayList<>(terms.size());
+
+        for(String term : terms){
+            postings.add(new Postings(postingsOf(byName.get(term), noRows), postingsOf(byAuthor.get(term), noRows)));
+        }
+
+        return new SearchIndex(columns, noRows, PersistentSortedMap.ofSorted(Comparator.naturalOrder(), terms, postings),
+                PersistentSortedMap.ofSorted(GUIDOrder, rowsInGUIDOrder, words));
+    }
+
+    SearchIndex add(Integer row) {
+        Words words = new Words(terms(tokens(columns.name(row)), this::term), terms(tokens(columns.author(row)), this::term));
+        PersistentSortedMap<String, Postings> postings = addPostings(postingsByTerm, words.name(), row, true);
+        postings = addPostings(postings, words.author(), row, false);
+
+        return new SearchIndex(columns, noRows, postings, wordsByRow.put(row, words));
+    }
+
+    SearchIndex remove(Integer row) {
+        Words words = wordsByRow.get(row);
+
+        if(words == null)
+            return this;
+
+        PersistentSortedMap<String, Postings> postings = removePostings(postingsByTerm, words.name(), row, true);
+        postings = removePostings(postings, words.author(), row, false);
+
+        return new SearchIndex(columns, noRows, postings, wordsByRow.remove(row));
+    }
+
+    /***
+     * Finds books, which have every word of the query as a word or a prefix of a word in the name or in the author.
+     * Candidates are taken from the postings of the most selective word and checked against the others.
+     * When the word is a prefix of very many books, only the first 1000 candidates are ranked,
+     * whole word matches first, so a short prefix does not make a query rank the whole catalog.
+     * Whole words score more than prefixes and names score more than authors. Books with the same score
+     * are ordered by the count of words in the name, so shorter names go first, then by GUID.
+     * @param query words to search for.
+     * @param limit maximum count of books.
+     * @return books, best match first.
+     */
+    List<Book> search(String query, int limit) {
+        List<String> words = tokens(query).stream().distinct().toList();
+
+        if(words.isEmpty() || limit <= 0)
+            return List.of();
+
+        String mostSelective = words.stream().min(Comparator.comparingLong(this::postingsCount)).get();
+        Set<Integer> candidates = candidates(mostSelective);
+
+        Comparator<Match> ranking = Comparator.comparingInt(Match::score).reversed()
+                .thenComparingInt(Match::nameLength)
+                .thenComparing(Match::row, columns::compareGUIDs);
+        PriorityQueue<Match> best = new PriorityQueue<>(ranking.reversed());
+
+        for(Integer row : candidates){
+            Words rowWords = wordsByRow.get(row);
+            int score = score(rowWords, words);
+
+            if(score == 0)
+                continue;
+
+            best.add(new Match(row, score, rowWords.name().size()));
+
+            if(best.size() > limit)
+                best.poll();
+        }
+
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(ranking);
+
+        return matches.stream().map(match -> columns.book(match.row())).toList();
+    }
+
+    /***
+     * Completes the last word of the input with the indexed terms, which have it as a prefix.
+     * Terms with more books go first.
+     * @param input text typed so far.
+     * @param limit maximum count of terms.
+     * @return completed terms.
+     */
+    List<String> suggest(String input, int limit) {
+        List<String> words = tokens(input);
+
+        if(words.isEmpty() || limit <= 0)
+            return List.of();
+
+        return prefixTerms(words.get(words.size() - 1)).stream()
+                .sorted(Comparator.comparingInt((Map.Entry<String, Postings> entry) -> entry.getValue().size()).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /***
+     * Splits a text into lowercase words without accents.
+     * @param text name, author or query.
+     * @return words of the text.
+     */
+    static List<String> tokens(String text) {
+        if(text == null)
+            return List.of();
+
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+
+        return Arrays.stream(SEPARATORS.split(normalized)).filter(word -> !word.isEmpty()).toList();
+    }
+
+    /***
+     * Gets the books, which have the word or a term starting with it. Books with the whole word go first.
+     * Only the first 256 terms of the prefix and the first 1000 books are taken,
+     * so a very short prefix cannot make a query walk the whole dictionary.
+     */
+    private Set<Integer> candidates(String word) {
+        Set<Integer> rows = new LinkedHashSet<>();
+        Postings exact = postingsByTerm.get(word);
+
+        if(exact != null){
+            addCandidates(rows, exact.byName());
+            addCandidates(rows, exact.byAuthor());
+        }
+
+        for(Map.Entry<String, Postings> term : prefixTerms(word)){
+            if(rows.size() >= MAX_CANDIDATES)
+                break;
+
+            addCandidates(rows, term.getValue().byName());
+            addCandidates(rows, term.getValue().byAuthor());
+        }
+
+        return rows;
+    }
+
+    private static void addCandidates(Set<Integer> candidates, PersistentSortedMap<Integer, Integer> rows) {
+        for(Integer row : rows.values()){
+            if(candidates.size() >= MAX_CANDIDATES)
+                return;
+
+            candidates.add(row);
+        }
+    }
+
+    private long postingsCount(String word) {
+        return prefixTerms(word).stream().mapToLong(term -> term.getValue().size()).sum();
+    }
+
+    /***
+     * Gets the first 256 terms starting with the prefix. The dictionary is walked from the prefix
+     * until the first term, which does not start with it.
+     */
+    private List<Map.Entry<String, Postings>> prefixTerms(String prefix) {
+        List<Map.Entry<String, Postings>> terms = new ArrayList<>();
+        Iterator<Map.Entry<String, Postings>> range = postingsByTerm.entriesFrom(prefix);
+
+        while(range.hasNext() && terms.size() < MAX_PREFIX_TERMS){
+            Map.Entry<String, Postings> term = range.next();
+
+            if(!term.getKey().startsWith(prefix))
+                break;
+
+            terms.add(term);
+        }
+
+        return terms;
+    }
+
+    private static int score(Words rowWords, List<String> words) {
+        int score = 0;
+
+        for(String word : words){
+            int wordScore = Math.max(2 * wordScore(rowWords.name(), word), wordScore(rowWords.author(), word));
+
+            if(wordScore == 0)
+                return 0;
+
+            score += wordScore;
+        }
+
+        return score;
+    }
+
+    private static int wordScore(List<String> tokens, String word) {
+        int score = 0;
+
+        for(String token : tokens){
+            if(token.equals(word))
+                return 2;
+
+            if(token.startsWith(word))
+                score = 1;
+        }
+
+        return score;
+    }
+
+    /***
+     * Gets the instance of the term in the terms' dictionary, or the term itself, if it is new.
+     */
+    private String term(String term) {
+        String key = postingsByTerm.findKey(term);
+
+        return key == null ? term : key;
+    }
+
+    private static List<String> terms(List<String> tokens, Map<String, String> dictionary) {
+        return terms(tokens, token -> dictionary.computeIfAbsent(token, t -> t));
+    }
+
+    private static List<String> terms(List<String> tokens, UnaryOperator<String> dictionary) {
+        return tokens.stream().map(dictionary).toList();
+    }
+
+    private static PersistentSortedMap<Integer, Integer> postingsOf(List<Integer> rowsInGUIDOrder, PersistentSortedMap<Integer, Integer> noRows) {
+        return rowsInGUIDOrder == null ? noRows : PersistentSortedMap.ofSorted(noRows.comparator(), rowsInGUIDOrder, rowsInGUIDOrder);
+    }
+
+    private PersistentSortedMap<String, Postings> addPostings(PersistentSortedMap<String, Postings> postingsByTerm, List<String> terms, Integer row, boolean name) {
+        for(String term : terms){
+            Postings postings = postingsByTerm.get(term);
+
+            if(postings == null)
+                postings = new Postings(noRows, noRows);
+
+            postingsByTerm = postingsByTerm.put(term, postings.with(name, postings.of(name).put(row, row)));
+        }
+
+        return postingsByTerm;
+    }
+
+    private static PersistentSortedMap<String, Postings> removePostings(PersistentSortedMap<String, Postings> postingsByTerm, List<String> terms, Integer row, boolean name) {
+        for(String term : terms){
+            Postings postings = postingsByTerm.get(term);
+
+            if(postings == null)
+                continue;
+
+            postings = postings.with(name, postings.of(name).remove(row));
+            postingsByTerm = postings.size() == 0 ? postingsByTerm.remove(term) : postingsByTerm.put(term, postings);
+        }
+
+        return postingsByTerm;
+    }
+}
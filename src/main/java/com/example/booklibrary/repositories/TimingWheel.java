@@ -0,0 +1,157 @@
+package com.example.booklibrary.repositories;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/***
+ * Hierarchical timing wheel of deadlines. Time is counted in ticks, the first wheel has a slot for
+ * every one of the next 64 ticks, the second for every 64 ticks of the next 64 * 64 ticks and so on.
+ * Adding a deadline puts it into one slot, so it is O(1) whatever the count of the waiting deadlines.
+ * When the time reaches a slot of a higher wheel, its deadlines are moved down to the lower wheels,
+ * and deadlines in the first wheel are due, when the time reaches their slot.
+ * Deadlines beyond the last wheel wait in an overflow list, which is moved into the wheels,
+ * when the last wheel turns. Deadlines are rounded up to ticks, so nothing is due early.
+ * Not thread-safe, guarded by the ReservationRepository.
+ * @param <T> type of the scheduled items.
+ */
+class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+
+    private final List<List<Entry<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+
+    private List<Entry<T>> overflow = new ArrayList<>();
+
+    private List<Entry<T>> due = new ArrayList<>();
+
+    private long currentTick;
+
+    private int size;
+
+    /***
+     * True, while deadlines are moved down, when deadlines of the current tick still go to the first wheel.
+     */
+    private boolean cascading;
+
+    private record Entry<T>(T item, long tick) {}
+
+    /***
+     * @param tickMillis length of a tick in milliseconds.
+     * @param startMillis time of the start of the wheel in milliseconds since the epoch.
+     */
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+
+        for(int i = 0; i < LEVELS * SLOTS; i++){
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /***
+     * Schedules the item. Items with a deadline, which has already passed, are due on the next advance.
+     * @param item scheduled item.
+     * @param deadlineMillis deadline in milliseconds since the epoch.
+     */
+    void add(T item, long deadlineMillis) {
+        long tick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        size++;
+        place(new Entry<>(item, tick));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /***
+     * Moves the time of the wheel forward and passes every item, which is due until then, to the consumer.
+     * @param nowMillis current time in milliseconds since the epoch.
+     * @param consumer consumer of the due items.
+     */
+    void advance(long nowMillis, Consumer<T> consumer) {
+        long targetTick = nowMillis / tickMillis;
+        drainDue(consumer);
+
+        while(currentTick < targetTick){
+            if(size == 0){
+                currentTick = targetTick;
+                break;
+            }
+
+            currentTick++;
+            cascade();
+
+            List<Entry<T>> slot = slots.get(slotIndex(0, currentTick));
+
+            if(!slot.isEmpty()){
+                due.addAll(slot);
+                slot.clear();
+                drainDue(consumer);
+            }
+        }
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.tick() - currentTick;
+
+        if(delta < 0 || (delta == 0 && !cascading)){
+            due.add(entry);
+            return;
+        }
+
+        for(int level = 0; level < LEVELS; level++){
+            if(delta < 1L << (SLOT_BITS * (level + 1))){
+                slots.get(slotIndex(level, entry.tick())).add(entry);
+                return;
+            }
+        }
+
+        overflow.add(entry);
+    }
+
+    /***
+     * Moves the deadlines of the slots of higher wheels, which the time has reached, to the lower wheels.
+     * Higher wheels go first, so their deadlines can still be moved on by the lower ones.
+     */
+    private void cascade() {
+        cascading = true;
+
+        if(currentTick % (1L << (SLOT_BITS * LEVELS)) == 0){
+            List<Entry<T>> waiting = overflow;
+            overflow = new ArrayList<>();
+            waiting.forEach(this::place);
+        }
+
+        for(int level = LEVELS - 1; level > 0; level--){
+            if(currentTick % (1L << (SLOT_BITS * level)) != 0)
+                continue;
+
+            List<Entry<T>> slot = slots.get(slotIndex(level, currentTick));
+            List<Entry<T>> moved = new ArrayList<>(slot);
+            slot.clear();
+            moved.forEach(this::place);
+        }
+
+        cascading = false;
+    }
+
+    private void drainDue(Consumer<T> consumer) {
+        if(due.isEmpty())
+            return;
+
+        List<Entry<T>> items = due;
+        due = new ArrayList<>();
+        size -= items.size();
+        items.forEach(entry -> consumer.accept(entry.item()));
+    }
+
+    private static int slotIndex(int level, long tick) {
+        return level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.booklibrary.services;
+import com.example.booklibrary.models.BatchItemResult;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookDetails;
+import com.example.booklibrary.models.ImportReport;
+import com.example.booklibrary.storage.ImportFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/***
+ * Streaming bulk import of catalog dumps. The dump is read row by row and split into chunks,
+ * which are parsed and validated by a pool of workers in parallel. The reading thread is the only writer:
+ * it takes the validated chunks in the dump order and adds them to the catalog in large batches,
+ * one batch (one lock of the catalog and one write of the library storage) per applyChunks chunks,
+ * so workers never wait for each other's locks and a snapshot storage is not rewritten for every chunk.
+ * Reading waits, when the workers are twice as many chunks ahead as there are workers, so only a bounded
+ * number of chunks is in memory at once, whatever the size of the file.
+ */
+@Service
+public class BookImporter {
+
+    private static final int RECENT_IMPORTS = 10;
+
+    private final BookService bookService;
+
+    private final int chunkSize;
+
+    private final int parallelism;
+
+    private final int applyChunks;
+
+    private final AtomicLong importIds = new AtomicLong();
+
+    private final Deque<ImportReport> recentImports = new ConcurrentLinkedDeque<>();
+
+    public BookImporter(BookService bookService,
+                        @Value("${booklibrary.import.chunk-size:1000}") int chunkSize,
+                        @Value("${booklibrary.import.parallelism:0}") int parallelism,
+                        @Value("${booklibrary.import.apply-chunks:100}") int applyChunks) {
+        this.bookService = bookService;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.applyChunks = Math.max(applyChunks, 1);
+    }
+
+    /***
+     * Imports books from a dump. Blank lines are skipped. Rows, which cannot be parsed, are incomplete,
+     * or have a GUID, which is already in the catalog, are rejected and reported with the numbers of their first lines.
+     * Chunks are added in the dump order, so of two rows with the same GUID, the first one is kept.
+     * The report is available in getRecentImports() while the import runs.
+     * @param input dump's stream, it is read to the end, but not closed.
+     * @param format format of the dump.
+     * @return report of the finished import.
+     * @throws IllegalArgumentException if the header of the dump is wrong.
+     */
+    public ImportReport importBooks(InputStream input, ImportFormat format) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Function<String, BookDetails> rowParser;
+        long lineNumber = 0;
+
+        try {
+            String header = null;
+
+            if(format.hasHeader()){
+                header = reader.readLine();
+                lineNumber++;
+
+                if(header == null)
+                    throw new IllegalArgumentException("Dump is empty, header is missing.");
+
+                header = header.replace("\uFEFF", "");
+            }
+
+            rowParser = format.rowParser(header);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ImportReport report = new ImportReport(importIds.incrementAndGet(), format.getParameterName());
+        remember(report);
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        Deque<Future<ValidChunk>> parsing = new ArrayDeque<>();
+        Batch batch = new Batch();
+
+        try {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            long[] lines = new long[chunkSize];
+            String row;
+
+            while((row = format.readRow(reader)) != null){
+                lines[chunk.size()] = ++lineNumber;
+                lineNumber += lineBreaks(row);
+                chunk.add(row);
+
+                if(chunk.size() == chunkSize){
+                    parsing.add(submit(workers, chunk, lines, rowParser, report));
+                    chunk = new ArrayList<>(chunkSize);
+                    lines = new long[chunkSize];
+
+                    if(parsing.size() >= 2 * parallelism)
+                        take(parsing.poll(), batch, report);
+                }
+            }
+
+            if(!chunk.isEmpty())
+                parsing.add(submit(workers, chunk, lines, rowParser, report));
+
+            while(!parsing.isEmpty()){
+                take(parsing.poll(), batch, report);
+            }
+
+            apply(batch, report);
+        } catch (IOException e) {
+            report.fail("Dump could not be read: " + e.getMessage());
+        } catch (RuntimeException e) {
+            report.fail("Rows could not be imported: " + e.getMessage());
+        } finally {
+            workers.shutdownNow();
+            report.finish();
+        }
+
+        return report;
+    }
+
+    /***
+     * Gets the reports of the running and the last finished imports.
+     * @return reports, the newest first.
+     */
+    public List<ImportReport> getRecentImports() {
+        return new ArrayList<>(recentImports);
+    }
+
+    /***
+     * Hands the chunk to the workers, which parse and validate it without touching the catalog.
+     */
+    private Future<ValidChunk> submit(ExecutorService workers, List<String> chunk, long[] lines,
+                                      Function<String, BookDetails> rowParser, ImportReport report) {
+        return workers.submit(() -> validate(chunk, lines, rowParser, report));
+    }
+
+    private static ValidChunk validate(List<String> chunk, long[] lines, Function<String, BookDetails> rowParser, ImportReport report) {
+        List<Book> books = new ArrayList<>(chunk.size());
+        long[] rows = new long[chunk.size()];
+
+        for(int i = 0; i < chunk.size(); i++){
+            String line = chunk.get(i);
+
+            if(line.isBlank())
+                continue;
+
+            BookDetails details = null;
+
+            try {
+                details = rowParser.apply(line);
+                rows[books.size()] = lines[i];
+                books.add(BookService.toValidBook(details));
+            } catch (IllegalArgumentException e) {
+                report.rejected(lines[i], details == null ? null : details.getGUID(), e.getMessage());
+            }
+        }
+
+        report.rowsRead(chunk.size());
+
+        return new ValidChunk(books, rows);
+    }
+
+    /***
+     * Waits for the next chunk in the dump order and adds it to the batch, which is applied,
+     * when it has applyChunks chunks.
+     */
+    private void take(Future<ValidChunk> parsed, Batch batch, ImportReport report) {
+        ValidChunk chunk;
+
+        try {
+            chunk = parsed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        }
+
+        for(int i = 0; i < chunk.books().size(); i++){
+            batch.books.add(chunk.books().get(i));
+            batch.rows.add(chunk.rows()[i]);
+        }
+
+        if(++batch.chunks == applyChunks)
+            apply(batch, report);
+    }
+
+    /***
+     * Adds the books of the batch to the catalog with one write of the library storage and empties the batch.
+     */
+    private void apply(Batch batch, ImportReport report) {
+        if(!batch.books.isEmpty()){
+            for(BatchItemResult result : bookService.addValidBooks(batch.books)){
+                if(result.isAccepted()){
+                    report.accepted();
+                } else {
+                    report.rejected(batch.rows.get(result.getIndex()), result.getGUID(), result.getMessage());
+                }
+            }
+        }
+
+        batch.books.clear();
+        batch.rows.clear();
+        batch.chunks = 0;
+    }
+
+    /***
+     * Counts the line breaks inside a row, whose quoted fields span several lines.
+     */
+    private static int lineBreaks(String row) {
+        int count = 0;
+
+        for(int i = row.indexOf('\n'); i >= 0; i = row.indexOf('\n', i + 1)){
+            count++;
+        }
+
+        return count;
+    }
+
+    private void remember(ImportReport report) {
+        recentImports.addFirst(report);
+
+        while(recentImports.size() > RECENT_IMPORTS){
+            recentImports.pollLast();
+        }
+    }
+
+    /***
+     * Valid books of a chunk with their line numbers.
+     */
+    private record ValidChunk(List<Book> books, long[] rows) {}
+
+    /***
+     * Valid books of the chunks, which were taken, but are not applied yet.
+     */
+    private static class Batch {
+
+        private final List<Book> books = new ArrayList<>();
+
+        private final List<Long> rows = new ArrayList<>();
+
+        private int chunks;
+    }
+}
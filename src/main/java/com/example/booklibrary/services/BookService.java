@@ -1,318 +1,518 @@
 package com.example.booklibrary.services;
+import com.example.booklibrary.metrics.LibraryMetrics;
+import com.example.booklibrary.models.BatchItemResult;
 import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookDetails;
+import com.example.booklibrary.models.BookFacet;
+import com.example.booklibrary.models.BookFilter;
+import com.example.booklibrary.models.BookPage;
 import com.example.booklibrary.models.BookReservation;
-import org.json.simple.*;
-import org.json.simple.parser.*;
-import java.io.*;
+import com.example.booklibrary.models.BookSort;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.CatalogSnapshot;
+import com.example.booklibrary.repositories.ReservationRepository;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.stream.Stream;
 
+@Service
 public class BookService {
 
-    private static final JSONParser parser = new JSONParser();
+    private static final int EXPIRY_BATCH_SIZE = 500;
 
-    private static final String reservationsFileLocation = "src\\main\\resources\\reservations.json";
+    private final BookRepository bookRepository;
 
-    private static final String libraryFileLocation = "src\\main\\resources\\library.json";
+    private final ReservationRepository reservationRepository;
 
     /***
-     * Finds a book by its GUID code from books' library file.
-     * Parses data file from the storage and reads the list of books in the library.
-     * @param GUID GUID code that is unique.
-     * @return book with its unique GUID code.
+     * Locks of books' GUIDs and persons, which make checkout and removal atomic per book and per person.
      */
-    public static Book findBookByGUID (String GUID) {
-        Book book = null;
-        JSONArray libraryArr = readFromFile(libraryFileLocation);
-
-        for (Object obj : libraryArr) {
-            JSONObject bookObj = (JSONObject) obj;
-            if (Objects.equals(bookObj.get("GUID"), GUID)) {
-                book = new Book(bookObj);
-                break;
-            }
+    private final StripedLock locks = new StripedLock(64);
+
+    public BookService(BookRepository bookRepository, ReservationRepository reservationRepository) {
+        this.bookRepository = bookRepository;
+        this.reservationRepository = reservationRepository;
+
+        for(BookReservation reservation : reservationRepository.findAll()){
+            bookRepository.markTaken(reservation.getBookGUID(), true);
         }
+    }
 
-        return book;
+    /***
+     * Finds a book by its GUID code in the books' catalog.
+     * @param GUID GUID code that is unique.
+     * @return book with its unique GUID code.
+     */
+    public Book findBookByGUID (String GUID) {
+        return LibraryMetrics.time("findBookByGUID", () -> bookRepository.findByGUID(GUID));
     }
 
     /***
-     * Gets a list of books from the library.json file.
-     * Parses data file from the storage to build books list.
+     * Gets a list of books from the books' catalog.
      * @return list of books
      */
-    public static List<Book> getListOfBooks() {
-        List<Book> list = new ArrayList<>();
-        JSONArray libraryArr = readFromFile(libraryFileLocation);
+    public List<Book> getListOfBooks() {
+        return LibraryMetrics.time("getListOfBooks", () -> {
+            List<Book> books = bookRepository.findAll();
+            LibraryMetrics.recordsScanned("getListOfBooks", books.size());
 
-        for(Object obj : libraryArr){
-            JSONObject bookObj = (JSONObject) obj;
-            list.add(new Book(bookObj));
-        }
+            return books;
+        });
+    }
+
+    /***
+     * Gets the current version of the books' catalog. It never changes, so a request, which reads
+     * a page, its counts and its version from one catalog, gets a consistent answer without locks.
+     * @return catalog snapshot.
+     */
+    public CatalogSnapshot getCatalog() {
+        return bookRepository.snapshot();
+    }
+
+    /***
+     * Gets one page of the books' catalog. Only the books of the page are collected.
+     * @param sort order of the books (GUID or name).
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books with cursors of previous and next pages.
+     */
+    public BookPage getPageOfBooks(BookSort sort, String after, String before, int size) {
+        return getPageOfBooks(getCatalog(), sort, after, before, size);
+    }
+
+    /***
+     * Gets one page of the given version of the books' catalog.
+     * @param catalog catalog snapshot.
+     * @param sort order of the books (GUID or name).
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books with cursors of previous and next pages.
+     */
+    public BookPage getPageOfBooks(CatalogSnapshot catalog, BookSort sort, String after, String before, int size) {
+        return LibraryMetrics.time("getPageOfBooks", () -> catalog.findPage(sort, after, before, size));
+    }
+
+    /***
+     * Gets one page of books by filterBy parameter value, in GUID order. For book's fields the page is
+     * taken from the catalog's facet index, Taken or Available books are checked in the index of taken books.
+     * @param filterBy value for filter parameters.
+     * @param parameter filter's parameter value.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books, that meet the filter values.
+     */
+    public BookPage getPageOfBooksByParameter(String filterBy, String parameter, String after, String before, int size) {
+        return getPageOfBooksByParameter(getCatalog(), filterBy, parameter, after, before, size);
+    }
+
+    /***
+     * Gets one page of books of the given version of the catalog by filterBy parameter value, in GUID order.
+     * @param catalog catalog snapshot.
+     * @param filterBy value for filter parameters.
+     * @param parameter filter's parameter value.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books, that meet the filter values.
+     */
+    public BookPage getPageOfBooksByParameter(CatalogSnapshot catalog, String filterBy, String parameter, String after, String before, int size) {
+        return LibraryMetrics.time("getPageOfBooksByParameter", () -> {
+            if(Objects.equals(parameter, "Taken") || Objects.equals(parameter, "Available"))
+                return catalog.findPageByTaken(parameter.equals("Taken"), after, before, size);
 
-        return list;
+            BookFacet facet = BookFacet.fromFilterName(filterBy);
+
+            return facet == null ? new BookPage(new ArrayList<>(), 0, null, null) : catalog.findPageByFacet(facet, parameter, after, before, size);
+        });
     }
 
     /***
-     * Gets a list of filterBy option parameters. For example, if filterBy
-     * option value is an author, then returns all unique authors who are written in the books list.
-     * @param books list of all books.
+     * Gets filterBy option parameters with counts of books, which have them. Values and counts come
+     * from the catalog's facet indexes, so the books' list is not scanned.
+     * For "taken or available books" option returns counts of Taken and Available books.
      * @param filterBy value for filter parameters.
-     * @return list of filter's parameters values.
+     * @return map of filter's parameter value and count of books, sorted by value.
      */
-    public static HashSet<String> getListOfParameters(List<Book> books, String filterBy) {
-        HashSet<String> parameters = new HashSet<>();
-
-        if(Objects.equals(filterBy, "taken or available books")){
-            parameters.add("Taken");
-            parameters.add("Available");
-        } else {
-            for (Book book : books) {
-                parameters.add(switch (filterBy){
-                    case "author" -> book.getAuthor();
-                    case "category" -> book.getCategory();
-                    case "language" -> book.getLanguage();
-                    case "ISBN" -> book.getISBN().toString();
-                    case "name" -> book.getName();
-                    default -> "";
-                });
+    public SortedMap<String, Integer> getParametersWithCounts(String filterBy) {
+        return getParametersWithCounts(getCatalog(), filterBy);
+    }
+
+    /***
+     * Gets filterBy option parameters with counts of books in the given version of the catalog.
+     * @param catalog catalog snapshot.
+     * @param filterBy value for filter parameters.
+     * @return map of filter's parameter value and count of books, sorted by value.
+     */
+    public SortedMap<String, Integer> getParametersWithCounts(CatalogSnapshot catalog, String filterBy) {
+        return LibraryMetrics.time("getParametersWithCounts", () -> {
+            SortedMap<String, Integer> parameters = new TreeMap<>();
+
+            if(Objects.equals(filterBy, "taken or available books")){
+                parameters.put("Available", catalog.countAvailable());
+                parameters.put("Taken", catalog.countTaken());
+            } else {
+                BookFacet facet = BookFacet.fromFilterName(filterBy);
+
+                if(facet != null)
+                    parameters = catalog.countByFacet(facet);
             }
-        }
 
-        return parameters;
+            return parameters;
+        });
     }
 
     /***
-     * Gets books by filterBy parameter value. For example, if filterBy is an author, then gets
-     * all the books, whose authors names are like parameter value.
-     * @param books list of books, in which searches for the values.
+     * Gets books from the catalog by filterBy parameter value. For book's fields it is one lookup
+     * in the catalog's facet index, Taken or Available books are found in the catalog's index of taken books.
      * @param filterBy value for filter parameters.
-     * @param parameter list of filter's parameters values.
+     * @param parameter filter's parameter value.
      * @return list of books, that meet the filter values.
      */
-    public static List<Book> getBooksByParameters(List<Book> books, String filterBy, String parameter) {
-        List<Book> listOfBooks = new ArrayList<>();
-
-        if(Objects.equals(parameter, "Taken")){
-            listOfBooks = findTakenOrAvailableBooks(books, "Taken");
-        } else if(Objects.equals(parameter, "Available")){
-            listOfBooks = findTakenOrAvailableBooks(books, "Available");
-        } else{
-            for (Book book : books) {
-                switch (filterBy) {
-                    case "author" -> {
-                        if(Objects.equals(book.getAuthor(), parameter))
-                            listOfBooks.add(book);
-                    }
-                    case "category" -> {
-                        if (Objects.equals(book.getCategory(), parameter))
-                            listOfBooks.add(book);
-                    }
-                    case "language" -> {
-                        if (Objects.equals(book.getLanguage(), parameter))
-                            listOfBooks.add(book);
-                    }
-                    case "ISBN" -> {
-                        if (Objects.equals(book.getISBN().toString(), parameter))
-                            listOfBooks.add(book);
-                    }
-                    case "name" -> {
-                        if (Objects.equals(book.getName(), parameter))
-                            listOfBooks.add(book);
-                    }
+    public List<Book> getBooksByParameter(String filterBy, String parameter) {
+        return LibraryMetrics.time("getBooksByParameter", () -> {
+            if(Objects.equals(parameter, "Taken"))
+                return bookRepository.findTaken();
+
+            if(Objects.equals(parameter, "Available"))
+                return bookRepository.findAvailable();
+
+            BookFacet facet = BookFacet.fromFilterName(filterBy);
+
+            return facet == null ? new ArrayList<>() : bookRepository.findByFacet(facet, parameter);
+        });
+    }
+
+    /***
+     * Gets books from the catalog, which match a filter of several fields, for example
+     * author = "J. K. Rowling" AND publicationDate &gt; 1990-12-31. Selective filters are served from
+     * the catalog's facet index, the others by a parallel scan of the catalog.
+     * @param filter filter of the books.
+     * @return list of books in GUID order.
+     */
+    public List<Book> getBooksByFilter(BookFilter filter) {
+        return LibraryMetrics.time("getBooksByFilter", () -> bookRepository.findByFilter(filter));
+    }
+
+    /***
+     * Gets one page of books of the given version of the catalog, which match a filter of several fields, in GUID order.
+     * @param catalog catalog snapshot.
+     * @param filter filter of the books.
+     * @param after cursor, after which the page starts, or null.
+     * @param before cursor, before which the page ends, or null.
+     * @param size page size.
+     * @return page of books, that match the filter.
+     */
+    public BookPage getPageOfBooksByFilter(CatalogSnapshot catalog, BookFilter filter, String after, String before, int size) {
+        return LibraryMetrics.time("getPageOfBooksByFilter", () -> catalog.findPageByFilter(filter, after, before, size));
+    }
+
+    /***
+     * Searches books by words or prefixes of words in their names and authors, for example "gats"
+     * finds "The Great Gatsby". Search is served from the catalog's inverted index.
+     * @param query words to search for.
+     * @param limit maximum count of books.
+     * @return books, best match first.
+     */
+    public List<Book> searchBooks(String query, int limit){
+        return LibraryMetrics.time("searchBooks", () -> bookRepository.search(query, limit));
+    }
+
+    /***
+     * Suggests completions of the last typed word from the words of books' names and authors.
+     * @param input text typed so far.
+     * @param limit maximum count of words.
+     * @return completed words, most common first.
+     */
+    public List<String> suggestSearchWords(String input, int limit){
+        return LibraryMetrics.time("suggestSearchWords", () -> bookRepository.suggest(input, limit));
+    }
+
+    /***
+     * Gets the version of the books' catalog, which changes whenever a book is added, removed,
+     * taken or returned. Used as an ETag of the books' list.
+     * @return catalog version.
+     */
+    public long getCatalogVersion(){
+        return bookRepository.getVersion();
+    }
+
+    public int countTakenBooks(){
+        return bookRepository.countTaken();
+    }
+
+    public int countAvailableBooks(){
+        return bookRepository.countAvailable();
+    }
+
+    /***
+     * Adds a batch of books to the library. Every book is validated, then the valid ones are added
+     * with addValidBooks(), so all the accepted books are saved with one write of the library storage.
+     * @param batch details of the books to add.
+     * @return result of every book of the batch, in the batch order.
+     */
+    public List<BatchItemResult> addBooks(List<BookDetails> batch){
+        return LibraryMetrics.time("addBooks", () -> {
+            BatchItemResult[] results = new BatchItemResult[batch.size()];
+            List<Book> books = new ArrayList<>(batch.size());
+            int[] indexes = new int[batch.size()];
+
+            for(int i = 0; i < batch.size(); i++){
+                BookDetails details = batch.get(i);
+
+                try {
+                    indexes[books.size()] = i;
+                    books.add(toValidBook(details));
+                } catch (IllegalArgumentException e) {
+                    results[i] = BatchItemResult.rejected(i, details == null ? null : details.getGUID(), e.getMessage());
                 }
             }
-        }
 
-        return listOfBooks;
+            for(BatchItemResult result : addValidBooks(books)){
+                int index = indexes[result.getIndex()];
+                results[index] = result.isAccepted() ? BatchItemResult.accepted(index, result.getGUID())
+                        : BatchItemResult.rejected(index, result.getGUID(), result.getMessage());
+            }
+
+            return Arrays.asList(results);
+        });
     }
 
     /***
-     * Finds taken or available books from the books' library list.
-     * Parses data file of reservations from the storage, so after books
-     * could be checked if they are reserved by a person or available to be taken.
-     * @param books list of library books.
-     * @param parameter Taken or Available value.
-     * @return list of Taken or Available books.
+     * Validates the details of a book and converts them to a book. Does not touch the library,
+     * so bulk imports validate their rows in parallel, before they are added.
+     * @param details details of the book.
+     * @return book, which can be added, if its GUID is not in the library.
+     * @throws IllegalArgumentException if a field is missing or the publication date or ISBN is wrong.
      */
-    private static List<Book> findTakenOrAvailableBooks(List<Book> books, String parameter){
-        List<Book> list = new ArrayList<>();
-        JSONArray reservationsArr = readFromFile(reservationsFileLocation);
-
-        for (Book book : books) {
-            boolean exist = false;
-
-            for (Object obj : reservationsArr) {
-                JSONObject bookObj = (JSONObject) obj;
-                if(Objects.equals(bookObj.get("GUID"), book.getGUID())) {
-                    exist = true;
-                    break;
+    public static Book toValidBook(BookDetails details){
+        if(details == null || !details.isComplete())
+            throw new IllegalArgumentException("Please fill in all the fields.");
+
+        try {
+            return details.toBook();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Wrong publication date or ISBN.");
+        }
+    }
+
+    /***
+     * Adds validated books to the library. Every GUID is checked against the catalog and the books before it
+     * in the batch in one pass, then all the accepted books are saved with one write of the library storage.
+     * Runs under the locks of all the GUIDs in the batch, so concurrent single adds cannot slip in between
+     * the check and the save.
+     * @param books books, which passed toValidBook().
+     * @return result of every book, in the order of the books.
+     */
+    public List<BatchItemResult> addValidBooks(List<Book> books){
+        List<BatchItemResult> results = new ArrayList<>(books.size());
+        Map<String, Book> accepted = new LinkedHashMap<>();
+
+        StripedLock.Held held = locks.lock(books.stream().map(Book::getGUID).toArray(String[]::new));
+        try {
+            for(int i = 0; i < books.size(); i++){
+                Book book = books.get(i);
+
+                if(accepted.containsKey(book.getGUID())){
+                    results.add(BatchItemResult.rejected(i, book.getGUID(), "Book with the same GUID is earlier in the batch."));
+                } else if(bookRepository.findByGUID(book.getGUID()) != null){
+                    results.add(BatchItemResult.rejected(i, book.getGUID(), "Book with specified unique GUID is in the library."));
+                } else {
+                    accepted.put(book.getGUID(), book);
+                    results.add(BatchItemResult.accepted(i, book.getGUID()));
                 }
             }
 
-            if(!exist && Objects.equals(parameter, "Available")){
-                list.add(book);
-            } else if(exist && Objects.equals(parameter, "Taken")){
-                list.add(book);
+            bookRepository.saveAll(accepted.values());
+
+            for(String GUID : accepted.keySet()){
+                if(reservationRepository.existsByGUID(GUID))
+                    bookRepository.markTaken(GUID, true);
             }
+        } finally {
+            held.unlock();
         }
 
-        return list;
+        return results;
     }
 
     /***
-     * Removes books by GUID from the data file. Parses data file from the storage
-     * and returns its values. Data, that can be removed:
+     * Removes books by GUID from the data file. Data, that can be removed:
      * books from the library and person's books' reservations.
+     * Books are removed through the catalog, reservations through the reservations' store.
+     * Removal holds the lock of the book, so it cannot interleave with a checkout of the same book.
      * @param GUID GUID unique code of the book.
      * @param fileName name of the file (library or reservations).
      */
-    public static void removeBooksByGUID(String GUID, String fileName){
-        if(!Objects.equals(fileName, "library") && !Objects.equals(fileName, "reservations")){
-            throw new IllegalArgumentException("Wrong file name in removeBooksByGUID(String GUID, String fileName)");
-        }
-
-        String location = "src\\main\\resources\\" + fileName + ".json";
-        JSONArray dataArray = readFromFile(location);
-
-        for(int i = 0; i < dataArray.size(); i++){
-            JSONObject bookObj = (JSONObject) dataArray.get(i);
-            if(Objects.equals(bookObj.get("GUID"), GUID)) {
-                dataArray.remove(i);
-                i--;
+    public void removeBooksByGUID(String GUID, String fileName){
+        LibraryMetrics.time("removeBooksByGUID", () -> {
+            if(!Objects.equals(fileName, "library") && !Objects.equals(fileName, "reservations")){
+                throw new IllegalArgumentException("Wrong file name in removeBooksByGUID(String GUID, String fileName)");
             }
-        }
 
-        writeToFile(location, dataArray);
+            StripedLock.Held held = locks.lock(GUID);
+            try {
+                if(fileName.equals("library")){
+                    bookRepository.removeByGUID(GUID);
+                } else if(reservationRepository.removeByGUID(GUID)){
+                    bookRepository.markTaken(GUID, false);
+                }
+            } finally {
+                held.unlock();
+            }
+        });
     }
 
     /***
      * Reserves a book from the library. Checks if book exists in the library,
      * if a person has already taken 3 books or if the book is already taken,
-     * and returns the message. Saves reservation data to a reservations.json file.
+     * and returns the message. All the checks are lookups in the catalog and reservations' indexes.
+     * Saves reservation data to a reservations.json file.
+     * Checks and the save run under the locks of the book and the person, so concurrent checkouts
+     * cannot reserve the same book twice or give a person more than 3 books,
+     * while checkouts of unrelated books and persons run in parallel.
      * @param bookReservation details about book's reservation.
      * @return message about operations' success.
      */
-    public static String takeBook(BookReservation bookReservation){
-        Book book = findBookByGUID(bookReservation.getBookGUID());
-
-        if(Objects.equals(book, null))
-            return "Book does not exist. Try typing book's GUID again.";
-
-        BookReservation reservation = findReservationByGUID(bookReservation.getBookGUID());
+    public String takeBook(BookReservation bookReservation){
+        return LibraryMetrics.time("takeBook", () -> {
+            StripedLock.Held held = locks.lock(bookReservation.getBookGUID(), bookReservation.getPerson());
+            try {
+                Book book = findBookByGUID(bookReservation.getBookGUID());
+
+                if(Objects.equals(book, null)){
+                    LibraryMetrics.reservation("not_found");
+                    return "Book does not exist. Try typing book's GUID again.";
+                }
 
-        if(!Objects.equals(reservation, null))
-            return "Book is already reserved.";
+                if(reservationRepository.existsByGUID(bookReservation.getBookGUID())){
+                    LibraryMetrics.reservation("already_reserved");
+                    return "Book is already reserved.";
+                }
 
-        Integer count = findCountOfTakenBooks(bookReservation.getPerson());
+                int count = reservationRepository.countByPerson(bookReservation.getPerson());
 
-        if(count >= 3)
-            return "You have already taken 3 books.";
+                if(count >= 3){
+                    LibraryMetrics.reservation("limit_reached");
+                    return "You have already taken 3 books.";
+                }
 
-        saveDataToFile(bookReservation, "reservations");
-        return "Book has been successfully taken.";
+                saveDataToFile(bookReservation, "reservations");
+                LibraryMetrics.reservation("accepted");
+                return "Book has been successfully taken.";
+            } finally {
+                held.unlock();
+            }
+        });
     }
 
     /***
-     * Private method, which is needed to find reservation by GUID. Parses data
-     * file of reservations from the storage and searches for books' unique GUID.
-     * @param GUID book's unique GUID code.
-     * @return book reservation.
+     * Expires all the reservations, which have ended until the given instant.
+     * Overdue reservations are taken from the reservations' timing wheel and removed in batches,
+     * every batch with one write of the reservations' storage, under the locks of its books and persons.
+     * Books are marked as available and the persons' counts of taken books go down.
+     * @param now current instant.
+     * @return count of expired reservations.
      */
-    private static BookReservation findReservationByGUID(String GUID){
-        BookReservation reservation = null;
-        JSONArray reservationsArr = readFromFile(reservationsFileLocation);
-
-        for(Object obj : reservationsArr){
-            JSONObject reservationObj = (JSONObject) obj;
-            if(Objects.equals(reservationObj.get("GUID"), GUID)) {
-                reservation = new BookReservation(reservationObj);
-                break;
+    public int expireReservations(Instant now){
+        return LibraryMetrics.time("expireReservations", () -> {
+            List<BookReservation> due = reservationRepository.findDue(now);
+            int expired = 0;
+
+            for(int from = 0; from < due.size(); from += EXPIRY_BATCH_SIZE){
+                List<BookReservation> batch = due.subList(from, Math.min(due.size(), from + EXPIRY_BATCH_SIZE));
+                String[] keys = batch.stream()
+                        .flatMap(reservation -> Stream.of(reservation.getBookGUID(), reservation.getPerson()))
+                        .toArray(String[]::new);
+
+                StripedLock.Held held = locks.lock(keys);
+                try {
+                    for(BookReservation reservation : reservationRepository.removeAll(batch)){
+                        bookRepository.markTaken(reservation.getBookGUID(), false);
+                        expired++;
+                    }
+                } finally {
+                    held.unlock();
+                }
             }
-        }
 
-        return reservation;
+            LibraryMetrics.reservations("expired", expired);
+            return expired;
+        });
     }
 
     /***
-     * Private method, which is needed to find out how many books a person
-     * has already taken. Parses data file of reservations from the storage.
-     * @param person detail about the person.
-     * @return count of taken books.
+     * Reloads the catalog, when the library file was changed by another process, for example restored from a backup.
+     * Books, which are new in the catalog and reserved, are marked as taken in the same version.
+     * @return true, if the catalog was reloaded.
+     * @throws IOException if the changed file cannot be read whole, the catalog is kept then.
      */
-    private static Integer findCountOfTakenBooks(String person){
-        Integer count = 0;
-
-        JSONArray reservationsArr = readFromFile(reservationsFileLocation);
-
-        for(Object obj : reservationsArr){
-            JSONObject reservationsObj = (JSONObject) obj;
-            if(Objects.equals(reservationsObj.get("Person"), person))
-                count++;
-        }
-
-        return count;
+    public boolean reloadLibrary() throws IOException {
+        return bookRepository.reload(reservationRepository::existsByGUID);
     }
 
     /***
-     * Writes data about books or books reservations to a specific .json file.
-     * Book or BookReservation class object can be given as a function parameter.
-     * @param object Book or BookReservation object.
-     * @param fileName name of the file (library or reservations)
+     * Reloads the reservations, when the reservations file was changed by another process, and marks the books
+     * of the added and removed reservations as taken or available in one version of the catalog.
+     * The marks are read and published under the locks of the books, so a concurrent take or return
+     * of one of them cannot be overwritten by a stale mark.
+     * @return true, if any reservation was added, changed or removed.
+     * @throws IOException if the changed file cannot be read whole, the reservations are kept then.
      */
-    public static void saveDataToFile(Object object, String fileName) {
-        if(!Objects.equals(fileName, "library") && !Objects.equals(fileName, "reservations")){
-            throw new IllegalArgumentException("Wrong file name in saveDataToFile(Object object, String fileName)");
-        }
+    public boolean reloadReservations() throws IOException {
+        Set<String> GUIDs = reservationRepository.reload();
+
+        if(GUIDs.isEmpty())
+            return false;
 
-        String location = "src\\main\\resources\\" + fileName + ".json";
-        JSONArray jsonArray = processDataForStorage(object, fileName, location);
+        Map<String, Boolean> takenByGUID = new HashMap<>();
+        StripedLock.Held held = locks.lock(GUIDs.toArray(String[]::new));
+        try {
+            for(String GUID : GUIDs){
+                takenByGUID.put(GUID, reservationRepository.existsByGUID(GUID));
+            }
 
-        writeToFile(location, jsonArray);
+            bookRepository.markTaken(takenByGUID);
+        } finally {
+            held.unlock();
+        }
+
+        return true;
     }
 
     /***
-     * Private method, which tries to process the data of book or reservation and put it into the json array.
+     * Writes data about books or books reservations to a specific .json file.
      * Book or BookReservation class object can be given as a function parameter.
+     * Data is saved through the catalog or the reservations' store, which update their indexes and the data file.
+     * Catalog's index of taken books is updated together with them, under the lock of the book.
      * @param object Book or BookReservation object.
      * @param fileName name of the file (library or reservations)
-     * @param location location of the data file
-     * @return JSON array of data file, in which given object was added.
      */
-    @SuppressWarnings("unchecked")
-    private static JSONArray processDataForStorage(Object object, String fileName, String location) {
-        JSONArray jsonArray = readFromFile(location);
-
-        if (fileName.equals("library")) {
-            JSONObject book = ((Book) object).returnBookAsJSONObject();
-            jsonArray.add(book);
-        } else if (fileName.equals("reservations")) {
-            JSONObject reservation = ((BookReservation) object).returnReservationAsJSONObject();
-            jsonArray.add(reservation);
-        }
-
-        return jsonArray;
-    }
-
-    private static void writeToFile(String location, JSONArray data){
-        try {
-            FileWriter file = new FileWriter(location);
-            file.write(data.toJSONString());
-            file.flush();
-            file.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private static JSONArray readFromFile(String location) {
-        JSONArray jsonArray = null;
+    public void saveDataToFile(Object object, String fileName) {
+        LibraryMetrics.time("saveDataToFile", () -> {
+            if(!Objects.equals(fileName, "library") && !Objects.equals(fileName, "reservations")){
+                throw new IllegalArgumentException("Wrong file name in saveDataToFile(Object object, String fileName)");
+            }
 
-        try {
-            jsonArray = (JSONArray) parser.parse(new FileReader(location));
-        } catch (ParseException | IOException e) {
-            e.printStackTrace();
-        }
+            String GUID = ((Book) object).getGUID();
 
-        return jsonArray;
+            StripedLock.Held held = locks.lock(GUID);
+            try {
+                if (fileName.equals("library")) {
+                    bookRepository.save((Book) object);
+                    bookRepository.markTaken(GUID, reservationRepository.existsByGUID(GUID));
+                } else {
+                    reservationRepository.save((BookReservation) object);
+                    bookRepository.markTaken(GUID, true);
+                }
+            } finally {
+                held.unlock();
+            }
+        });
     }
 }
@@ -0,0 +1,92 @@
+package com.example.booklibrary.services;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.ExportFormat;
+import com.example.booklibrary.storage.ReservationCodec;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/***
+ * Streaming export of the catalog and the reservations. Records are written one by one from one immutable
+ * snapshot, so an export is consistent and never copies the catalog into a list, whatever its size.
+ * A JSON export is the data file itself, when the storage has written all the mutations to it:
+ * the file is transferred from its channel in chunks and is not parsed nor encoded again. It is not a zero-copy
+ * transfer: the target is the response's stream, so the bytes are still copied through buffers in user space.
+ * The channel is opened before the transfer, so a write, which replaces the file meanwhile,
+ * does not change the export.
+ */
+@Service
+public class CatalogExporter {
+
+    /***
+     * Bytes of the data file transferred at once.
+     */
+    private static final int TRANSFER_CHUNK = 64 * 1024;
+
+    private final BookRepository bookRepository;
+
+    private final ReservationRepository reservationRepository;
+
+    private final BookCodec bookCodec = new BookCodec();
+
+    private final ReservationCodec reservationCodec = new ReservationCodec();
+
+    public CatalogExporter(BookRepository bookRepository, ReservationRepository reservationRepository) {
+        this.bookRepository = bookRepository;
+        this.reservationRepository = reservationRepository;
+    }
+
+    /***
+     * Writes all the books of the catalog to the stream in the order they were added.
+     * @param format format of the export.
+     * @param output stream of the export, it is flushed, but not closed.
+     */
+    public void exportBooks(ExportFormat format, OutputStream output) throws IOException {
+        if(format == ExportFormat.JSON && transferCurrentFile(bookRepository.openCurrentFile(), output))
+            return;
+
+        format.write(bookRepository.snapshot().books(), bookCodec, output);
+    }
+
+    /***
+     * Writes all the reservations to the stream in GUID order of their books.
+     * @param format format of the export.
+     * @param output stream of the export, it is flushed, but not closed.
+     */
+    public void exportReservations(ExportFormat format, OutputStream output) throws IOException {
+        if(format == ExportFormat.JSON && transferCurrentFile(reservationRepository.openCurrentFile(), output))
+            return;
+
+        format.write(reservationRepository.snapshot(), reservationCodec, output);
+    }
+
+    /***
+     * Transfers the whole data file to the stream and closes the file's channel. The stream's channel is neither
+     * a file nor a socket channel, so transferTo cannot hand the copy to the kernel: it reads the file into
+     * a temporary direct buffer and the stream's channel copies that into a heap array for the stream.
+     * @param file channel of the data file or null, if the data file is not current.
+     * @return true, if the file was transferred.
+     */
+    private static boolean transferCurrentFile(FileChannel file, OutputStream output) throws IOException {
+        if(file == null)
+            return false;
+
+        try (file) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long size = file.size();
+
+            for(long position = 0; position < size; ){
+                position += file.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), target);
+            }
+
+            output.flush();
+        }
+
+        return true;
+    }
+}
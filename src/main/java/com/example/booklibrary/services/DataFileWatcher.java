@@ -0,0 +1,124 @@
+package com.example.booklibrary.services;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Watches the library and reservations files for changes by other processes (a backup copied over a file,
+ * an edit by hand) and reloads them in the background. The directories of the files are watched by a WatchService,
+ * and events of a file are gathered for the quiet period, so a file is read after its copy is done.
+ * A file, which cannot be read whole, is read again on its next change, the data in memory is kept until then.
+ * Writes of the application change the files too, they are told apart by the storages and are not read again.
+ * Only storages, which rewrite their data file ("snapshot" persistence mode), reload it.
+ */
+@Component
+public class DataFileWatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DataFileWatcher.class);
+
+    private interface Reload {
+        boolean reload() throws IOException;
+    }
+
+    private final Map<Path, Reload> reloads = new HashMap<>();
+
+    private final long quietPeriod;
+
+    private final WatchService watchService;
+
+    public DataFileWatcher(BookService bookService, BookRepository bookRepository, ReservationRepository reservationRepository,
+                           @Value("${booklibrary.reload.enabled:true}") boolean enabled,
+                           @Value("${booklibrary.reload.quiet-period:500}") long quietPeriod) throws IOException {
+        this.quietPeriod = quietPeriod;
+
+        if(enabled){
+            add(bookRepository.reloadableFile(), bookService::reloadLibrary);
+            add(reservationRepository.reloadableFile(), bookService::reloadReservations);
+        }
+
+        if(reloads.isEmpty()){
+            this.watchService = null;
+            return;
+        }
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        for(Path directory : reloads.keySet().stream().map(Path::getParent).distinct().toList()){
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+
+        Thread watcher = new Thread(this::watch, "data-file-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(watchService != null)
+            watchService.close();
+    }
+
+    private void add(Path file, Reload reload) {
+        if(file != null && Files.isDirectory(file.toAbsolutePath().getParent()))
+            reloads.put(file.toAbsolutePath().normalize(), reload);
+    }
+
+    /***
+     * Waits for the events of the watched directories until the watch service is closed.
+     */
+    private void watch() {
+        try {
+            while(true){
+                Set<Path> changed = new HashSet<>();
+                collect(watchService.take(), changed);
+                TimeUnit.MILLISECONDS.sleep(quietPeriod);
+
+                for(WatchKey key = watchService.poll(); key != null; key = watchService.poll()){
+                    collect(key, changed);
+                }
+
+                for(Path file : changed){
+                    reload(file);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the application is shutting down
+        }
+    }
+
+    /***
+     * Collects the watched files, which have events. When events were lost, all the files are checked.
+     */
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path directory = (Path) key.watchable();
+
+        for(WatchEvent<?> event : key.pollEvents()){
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                changed.addAll(reloads.keySet());
+            } else {
+                Path file = directory.resolve((Path) event.context()).normalize();
+
+                if(reloads.containsKey(file))
+                    changed.add(file);
+            }
+        }
+
+        key.reset();
+    }
+
+    private void reload(Path file) {
+        try {
+            if(reloads.get(file).reload())
+                log.info("Reloaded {}, which was changed by another process.", file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Changed {} cannot be read, the data in memory is kept.", file, e);
+        }
+    }
+}
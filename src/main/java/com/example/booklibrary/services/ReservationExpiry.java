@@ -0,0 +1,23 @@
+package com.example.booklibrary.services;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.time.Instant;
+
+/***
+ * Background expiry of reservations. Periodically returns the books of the reservations,
+ * which have ended, to the library.
+ */
+@Component
+public class ReservationExpiry {
+
+    private final BookService bookService;
+
+    public ReservationExpiry(BookService bookService) {
+        this.bookService = bookService;
+    }
+
+    @Scheduled(fixedDelayString = "${booklibrary.reservations.expiry-interval:60000}")
+    public void expire() {
+        bookService.expireReservations(Instant.now());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.booklibrary.services;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/***
+ * Fixed set of locks, where every key (book's GUID or person) is mapped to one of them by its hash.
+ * Operations on unrelated keys take different locks most of the time, so they run in parallel,
+ * while operations on the same key are serialized. Several keys are always locked
+ * in the order of lock indexes, so two threads cannot deadlock each other.
+ */
+public class StripedLock {
+
+    private final ReentrantLock[] stripes;
+
+    public StripedLock(int count) {
+        this.stripes = new ReentrantLock[count];
+
+        for(int i = 0; i < count; i++){
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /***
+     * Locks stripes of all the given keys. Held locks have to be released with unlock() in a finally block.
+     * @param keys keys to lock.
+     * @return held locks.
+     */
+    public Held lock(String... keys) {
+        int[] indexes = Arrays.stream(keys).mapToInt(this::indexOf).sorted().distinct().toArray();
+
+        for(int index : indexes){
+            stripes[index].lock();
+        }
+
+        return new Held(indexes);
+    }
+
+    private int indexOf(String key) {
+        return Math.floorMod(Objects.hashCode(key), stripes.length);
+    }
+
+    public class Held {
+
+        private final int[] indexes;
+
+        private Held(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        /***
+         * Releases the locks in the reverse order.
+         */
+        public void unlock() {
+            for(int i = indexes.length - 1; i >= 0; i--){
+                stripes[indexes[i]].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.models.Book;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/***
+ * Converts books' library between the JSON data file and the binary catalog format.
+ * Usage:
+ * BinaryCatalogConverter to-binary src/main/resources/library.json src/main/resources/library.bin
+ * BinaryCatalogConverter to-json src/main/resources/library.bin src/main/resources/library.json
+ * The same works for the src/main/resources/backup-data copy.
+ */
+public class BinaryCatalogConverter {
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 3){
+            System.err.println("Usage: BinaryCatalogConverter to-binary|to-json <source> <target>");
+            System.exit(1);
+        }
+
+        switch (args[0]) {
+            case "to-binary" -> jsonToBinary(args[1], args[2]);
+            case "to-json" -> binaryToJson(args[1], args[2]);
+            default -> {
+                System.err.println("Unknown conversion: " + args[0]);
+                System.exit(1);
+            }
+        }
+    }
+
+    /***
+     * Converts JSON library to the binary catalog. Books are streamed from the JSON file,
+     * so only GUIDs with offsets are kept in memory for the index.
+     * @param jsonLocation location of the JSON library.
+     * @param binaryLocation location of the binary catalog.
+     */
+    public static void jsonToBinary(String jsonLocation, String binaryLocation) throws IOException {
+        JsonRecordFile<Book> json = new JsonRecordFile<>(jsonLocation, new BookCodec());
+
+        try (JsonRecordFile.RecordIterator<Book> books = json.iterator()) {
+            new BinaryCatalogFile(binaryLocation).write(() -> books);
+        }
+    }
+
+    /***
+     * Converts binary catalog to the JSON library. Books are decoded from the mapped file one by one.
+     * @param binaryLocation location of the binary catalog.
+     * @param jsonLocation location of the JSON library.
+     */
+    public static void binaryToJson(String binaryLocation, String jsonLocation) throws IOException {
+        try (MappedBookCatalog catalog = MappedBookCatalog.open(Path.of(binaryLocation))) {
+            new JsonRecordFile<>(jsonLocation, new BookCodec()).write(catalog);
+        }
+    }
+}
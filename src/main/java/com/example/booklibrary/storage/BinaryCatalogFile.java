@@ -0,0 +1,131 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.models.Book;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+/***
+ * Books' catalog in a compact binary format, which is read through a memory-mapped buffer
+ * (see MappedBookCatalog). Layout of the file:
+ * header - magic int "BKCA", version short;
+ * records - in the catalog order, each one: GUID, name, author, category, language
+ * (unsigned short length and UTF-8 bytes, length 0xFFFF for a missing value), flags byte
+ * (1 - no ISBN, 2 - no publication date), ISBN int, publication date as epoch day int;
+ * index - record offsets (int) sorted by GUID's UTF-8 bytes;
+ * trailer - count of records int, offset of the index long.
+ * GUID is the first field of a record, so binary search over the index compares GUIDs
+ * without decoding the rest of the record. Offsets are ints, so a file is limited to 2 GB,
+ * which is also the limit of one mapped buffer. Version 1 files have no flags byte and no missing values,
+ * they are still read.
+ */
+public class BinaryCatalogFile implements SnapshotFile<Book> {
+
+    static final int MAGIC = 0x424B4341;
+
+    static final short VERSION = 2;
+
+    static final int NULL_LENGTH = 0xFFFF;
+
+    static final byte NO_ISBN = 1;
+
+    static final byte NO_PUBLICATION_DATE = 2;
+
+    static final int HEADER_SIZE = 6;
+
+    static final int TRAILER_SIZE = 12;
+
+    private final Path location;
+
+    public BinaryCatalogFile(String location) {
+        this.location = Path.of(location);
+    }
+
+    @Override
+    public void read(Consumer<Book> consumer) throws IOException {
+        try (MappedBookCatalog catalog = MappedBookCatalog.open(location)) {
+            catalog.forEach(consumer);
+        }
+    }
+
+    /***
+     * Maps the file, so a book is found by the binary search over the offset index.
+     */
+    @Override
+    public RecordLookup<Book> openLookup() throws IOException {
+        return MappedBookCatalog.open(location);
+    }
+
+    /***
+     * Writes books one by one and keeps only GUIDs with offsets in memory to build the index.
+     * @param records books in the catalog order.
+     * @param location location of the written file.
+     */
+    @Override
+    public void write(Iterable<Book> records, Path location) {
+        List<IndexEntry> index = new ArrayList<>();
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(location), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+
+            for(Book book : records){
+                if(book.getGUID() == null)
+                    throw new IOException("Book without GUID cannot be written to the binary catalog");
+
+                byte[] GUID = book.getGUID().getBytes(StandardCharsets.UTF_8);
+                index.add(new IndexEntry(GUID, output.size()));
+
+                writeString(output, GUID);
+                writeString(output, book.getName());
+                writeString(output, book.getAuthor());
+                writeString(output, book.getCategory());
+                writeString(output, book.getLanguage());
+                output.writeByte((book.getISBN() == null ? NO_ISBN : 0) | (book.getPublicationDate() == null ? NO_PUBLICATION_DATE : 0));
+                output.writeInt(book.getISBN() == null ? 0 : book.getISBN());
+                output.writeInt(book.getPublicationDate() == null ? 0 : (int) book.getPublicationDate().toEpochDay());
+
+                if(output.size() < 0)
+                    throw new IOException("Binary catalog is larger than 2 GB");
+            }
+
+            index.sort((first, second) -> Arrays.compareUnsigned(first.GUID, second.GUID));
+            long indexOffset = output.size();
+
+            for(IndexEntry entry : index){
+                output.writeInt(entry.offset);
+            }
+
+            output.writeInt(index.size());
+            output.writeLong(indexOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Path getLocation() {
+        return this.location;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if(value == null){
+            output.writeShort(NULL_LENGTH);
+            return;
+        }
+
+        writeString(output, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeString(DataOutputStream output, byte[] value) throws IOException {
+        if(value.length >= NULL_LENGTH)
+            throw new IOException("Value is too long for the binary catalog: " + value.length + " bytes");
+
+        output.writeShort(value.length);
+        output.write(value);
+    }
+
+    private record IndexEntry(byte[] GUID, int offset) {}
+}
@@ -0,0 +1,75 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.models.Book;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/***
+ * Codec of books' library records:
+ * {"Name":..,"Author":..,"Category":..,"Language":..,"Publication date":"yyyy-MM-dd","ISBN":..,"GUID":..}
+ * Missing publication date and ISBN are left out, a null value is read as a missing one.
+ */
+public class BookCodec implements RecordCodec<Book> {
+
+    private static final List<String> FIELD_NAMES = List.of("Name", "Author", "Category", "Language", "Publication date", "ISBN", "GUID");
+
+    @Override
+    public Book read(JsonParser parser) throws IOException {
+        String name = null, author = null, category = null, language = null, GUID = null;
+        LocalDate publicationDate = null;
+        Integer ISBN = null;
+
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if(parser.currentToken() == JsonToken.VALUE_NULL)
+                continue;
+
+            switch (field) {
+                case "Name" -> name = parser.getText();
+                case "Author" -> author = parser.getText();
+                case "Category" -> category = parser.getText();
+                case "Language" -> language = parser.getText();
+                case "Publication date" -> publicationDate = LocalDate.parse(parser.getText());
+                case "ISBN" -> ISBN = parser.currentToken() == JsonToken.VALUE_NUMBER_INT
+                        ? parser.getIntValue() : Integer.valueOf(parser.getText());
+                case "GUID" -> GUID = parser.getText();
+                default -> parser.skipChildren();
+            }
+        }
+
+        return new Book(name, author, category, language, publicationDate, ISBN, GUID);
+    }
+
+    @Override
+    public void write(JsonGenerator generator, Book book) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("Name", book.getName());
+        generator.writeStringField("Author", book.getAuthor());
+        generator.writeStringField("Category", book.getCategory());
+        generator.writeStringField("Language", book.getLanguage());
+
+        if(book.getPublicationDate() != null)
+            generator.writeStringField("Publication date", book.getPublicationDate().toString());
+
+        if(book.getISBN() != null)
+            generator.writeNumberField("ISBN", book.getISBN());
+
+        generator.writeStringField("GUID", book.getGUID());
+        generator.writeEndObject();
+    }
+
+    @Override
+    public List<String> fieldNames() {
+        return FIELD_NAMES;
+    }
+
+    @Override
+    public String keyOf(Book book) {
+        return book.getGUID();
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.booklibrary.storage;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/***
+ * Commits buffered mutations of a storage by its durability mode. Storage buffers a mutation
+ * and reports it with mutated(), the commit action writes and forces all the buffered mutations.
+ * In the "sync" mode, the commit runs in mutated() itself. In the "group" mode, writers call
+ * awaitDurable() after they release their locks: the first one commits all the buffered mutations,
+ * while the others wait for it, and writers coming during the commit are committed together by the next one.
+ * A window makes the first writer wait before the commit, so more writers can join it.
+ * In the "async" mode, the first mutation after a commit schedules the next one on a background thread.
+ * Mutations are counted, so a writer waits only until a commit, which started after its mutation, ends.
+ * A failed commit does not count the mutations as committed: its leader and the writers, which waited for it,
+ * get the failure, the storage keeps the mutations buffered and the next commit writes them again.
+ */
+class Committer implements AutoCloseable {
+
+    private final Durability durability;
+
+    private final long windowMillis;
+
+    private final Runnable commit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition committedCondition = lock.newCondition();
+
+    private final ScheduledThreadPoolExecutor background;
+
+    private long mutated;
+
+    private long committed;
+
+    private boolean committing;
+
+    private boolean scheduled;
+
+    private RuntimeException failure;
+
+    private long failedUpTo;
+
+    /***
+     * @param durability durability mode.
+     * @param windowMillis how long mutations are gathered before a commit in the "group" and "async" modes,
+     * 0 - no wait in the "group" mode, the next background commit at once in the "async" mode.
+     * @param commit action, which writes and forces all the buffered mutations.
+     */
+    Committer(Durability durability, long windowMillis, Runnable commit) {
+        this.durability = durability;
+        this.windowMillis = windowMillis;
+        this.commit = commit;
+        this.background = durability == Durability.ASYNC ? new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "storage-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+
+        if(background != null)
+            background.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /***
+     * Reports a buffered mutation.
+     */
+    void mutated() {
+        if(durability == Durability.SYNC){
+            commit.run();
+            return;
+        }
+
+        lock.lock();
+        try {
+            mutated++;
+
+            if(durability == Durability.ASYNC && !scheduled){
+                scheduled = true;
+                background.schedule(this::commitInBackground, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Waits until all the mutations reported until now are committed. Does not wait in the "sync" mode,
+     * where they are already committed, and in the "async" mode, where they are committed in the background.
+     * @throws RuntimeException failure of the commit of these mutations.
+     */
+    void awaitDurable() {
+        if(durability != Durability.GROUP)
+            return;
+
+        lock.lock();
+        try {
+            long target = mutated;
+
+            while(committed < target){
+                if(committing){
+                    committedCondition.awaitUninterruptibly();
+
+                    if(committed < target && failure != null && failedUpTo >= target)
+                        throw copyOf(failure);
+                } else {
+                    commitAsLeader();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Stops the background thread without waiting for the scheduled commit and commits
+     * all the reported mutations. Called on shutdown.
+     */
+    @Override
+    public void close() {
+        if(background != null){
+            background.shutdown();
+
+            try {
+                background.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        lock.lock();
+        try {
+            while(committing){
+                committedCondition.awaitUninterruptibly();
+            }
+
+            if(committed < mutated)
+                commitAsLeader();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Waits for the window and commits, with the lock released, so other writers can report mutations.
+     * Called and returns with the lock held. The mutations are counted as committed only if the commit succeeds,
+     * otherwise the failure is kept for the writers waiting for them and thrown.
+     */
+    private void commitAsLeader() {
+        committing = true;
+        long upTo = committed;
+        boolean succeeded = false;
+        lock.unlock();
+
+        try {
+            if(durability == Durability.GROUP && windowMillis > 0)
+                sleepWindow();
+
+            lock.lock();
+            upTo = mutated;
+            lock.unlock();
+
+            commit.run();
+            succeeded = true;
+        } catch (RuntimeException e) {
+            lock.lock();
+            failure = e;
+            failedUpTo = upTo;
+            lock.unlock();
+            throw e;
+        } finally {
+            lock.lock();
+
+            if(succeeded){
+                committed = Math.max(committed, upTo);
+                failure = null;
+            }
+
+            committing = false;
+            committedCondition.signalAll();
+        }
+    }
+
+    private void commitInBackground() {
+        lock.lock();
+        try {
+            scheduled = false;
+
+            while(committing){
+                committedCondition.awaitUninterruptibly();
+            }
+
+            commitAsLeader();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Failure of a commit for a waiting writer, so every writer gets its own stack trace.
+     */
+    private static RuntimeException copyOf(RuntimeException failure) {
+        if(failure instanceof UncheckedIOException e)
+            return new UncheckedIOException(e.getMessage(), e.getCause());
+
+        return new IllegalStateException("Commit failed", failure);
+    }
+
+    private void sleepWindow() {
+        try {
+            Thread.sleep(windowMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
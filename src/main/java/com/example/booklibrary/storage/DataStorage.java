@@ -0,0 +1,133 @@
+package com.example.booklibrary.storage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/***
+ * Persistence of one data file (library or reservations). Repositories keep the
+ * records in memory and report every mutation to the storage, which decides how it is written.
+ * Every record is identified by its GUID.
+ * State suppliers return the latest immutable state of the repository, so a storage may keep
+ * a supplier and call it later, from another thread, instead of copying the state.
+ * @param <T> type of the records.
+ */
+public interface DataStorage<T> extends AutoCloseable {
+
+    /***
+     * Reads all the records from the storage one by one. Called once, when a repository is created.
+     * Missing data file has no records, a data file, which cannot be read whole, fails the load,
+     * so the application does not start and does not write over the rest of the file.
+     * @param consumer consumer of the records in the storage order.
+     * @throws UncheckedIOException if the data file cannot be read whole.
+     */
+    void load(Consumer<T> consumer);
+
+    /***
+     * Persists an added record.
+     * @param record added book or reservation.
+     * @param state supplier of all the records after the mutation, for storages that write the whole file.
+     */
+    void recordAdded(T record, Supplier<? extends Collection<T>> state);
+
+    /***
+     * Persists a batch of added records with one write. By default, records are persisted one by one.
+     * @param records added books or reservations.
+     * @param state supplier of all the records after the mutation, for storages that write the whole file.
+     */
+    default void recordsAdded(Collection<T> records, Supplier<? extends Collection<T>> state) {
+        records.forEach(record -> recordAdded(record, state));
+    }
+
+    /***
+     * Persists a removal of the record.
+     * @param GUID GUID unique code of the removed record.
+     * @param state supplier of all the records after the mutation, for storages that write the whole file.
+     */
+    void recordRemoved(String GUID, Supplier<? extends Collection<T>> state);
+
+    /***
+     * Persists removals of a batch of records with one write. By default, removals are persisted one by one.
+     * @param GUIDs GUID unique codes of the removed records.
+     * @param state supplier of all the records after the mutation, for storages that write the whole file.
+     */
+    default void recordsRemoved(Collection<String> GUIDs, Supplier<? extends Collection<T>> state) {
+        GUIDs.forEach(GUID -> recordRemoved(GUID, state));
+    }
+
+    /***
+     * First step of compaction, called while the repository holds its lock, so no mutation
+     * can happen in between. Storages without a journal have nothing to compact.
+     * @return true, if there are journaled mutations, which have to be folded into a snapshot.
+     */
+    default boolean startCompaction() {
+        return false;
+    }
+
+    /***
+     * Second step of compaction, called without the repository's lock. Writes the state, which
+     * was taken together with startCompaction(), as a new snapshot.
+     * @param state all the records at the moment of startCompaction().
+     */
+    default void finishCompaction(Collection<T> state) {}
+
+    /***
+     * Waits until all the mutations persisted until now are durable, by the durability mode of the storage.
+     * Called by repositories after they release their locks, so writers waiting for one group commit
+     * do not block each other. By default, mutations are durable when they return.
+     */
+    default void awaitDurable() {}
+
+    /***
+     * Opens the data file, when it is a JSON array of the records and has all the mutations persisted until now,
+     * so it can be sent as it is. The file is replaced atomically, so the channel reads one whole version,
+     * even if the file is replaced while it is read. By default, the data file is not sent as it is.
+     * @return channel of the data file, which the caller closes, or null, if the records have to be written
+     * from the repository.
+     */
+    default FileChannel openCurrentFile() throws IOException {
+        return null;
+    }
+
+    /***
+     * Finds a record in the data file itself, when the file has all the mutations persisted until now and its format
+     * has an index of GUIDs, so the record is decoded from the file instead of being read from the repository.
+     * Does not wait for a running write, the repository answers then. By default, the data file is not searched.
+     * @param GUID GUID code of the record.
+     * @param consumer consumer of the found record, it is not called, if the file has no such record.
+     * @return true, if the data file was searched, false, if the repository has to answer.
+     */
+    default boolean findInCurrentFile(String GUID, Consumer<T> consumer) {
+        return false;
+    }
+
+    /***
+     * Gets the data file, whose changes by other processes are read again by reloadIfChanged().
+     * By default, a storage does not reload its file.
+     * @return location of the data file, or null, if it is not reloaded.
+     */
+    default Path reloadableFile() {
+        return null;
+    }
+
+    /***
+     * Reads the data file again, when another process changed it since the storage read or wrote it last,
+     * for example when a backup was copied over it or it was edited by hand. The changed file wins over
+     * the mutations, which were not written yet. Called by the repository, while its mutations wait.
+     * @param consumer consumer of all the records of the changed file.
+     * @return true, if the file was changed and all its records were read.
+     * @throws IOException if the changed file cannot be read whole, the repository keeps its records then.
+     */
+    default boolean reloadIfChanged(Consumer<T> consumer) throws IOException {
+        return false;
+    }
+
+    /***
+     * Writes the mutations, which are not written yet, and releases the files. Called on shutdown.
+     */
+    @Override
+    default void close() {}
+}
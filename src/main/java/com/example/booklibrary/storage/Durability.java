@@ -0,0 +1,38 @@
+package com.example.booklibrary.storage;
+
+/***
+ * When mutations of a data file reach the disk:
+ * "sync" - every mutation is written and forced to the disk before it returns,
+ * "group" - mutations of concurrent writers are written and forced to the disk together,
+ * and every writer waits for the commit of its mutation,
+ * "async" - mutations return at once and are written and forced by a background thread
+ * after a delay, so the mutations of the last delay can be lost on a crash.
+ * Whole data files are always replaced through a temporary file, so a crash never leaves a truncated file.
+ */
+public enum Durability {
+
+    SYNC("sync"),
+    GROUP("group"),
+    ASYNC("async");
+
+    private final String propertyName;
+
+    Durability(String propertyName) {
+        this.propertyName = propertyName;
+    }
+
+    /***
+     * Finds a mode by the value of booklibrary.durability property.
+     * @param propertyName value of the property.
+     * @return durability mode.
+     * @throws IllegalArgumentException if there is no such mode.
+     */
+    public static Durability fromPropertyName(String propertyName) {
+        for(Durability durability : values()){
+            if(durability.propertyName.equalsIgnoreCase(propertyName))
+                return durability;
+        }
+
+        throw new IllegalArgumentException("Unknown durability mode: " + propertyName);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.booklibrary.storage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/***
+ * Formats of exports of books or reservations, which are written record by record to a stream,
+ * so an export never holds more than one record in memory. JSON is an array of records, like the data files,
+ * so a data file, which has the latest records, can be sent as it is. NDJSON has one record object per line.
+ * CSV has a header line with the codec's field names, a field with a comma, a quote or a line break is quoted.
+ * Books exported in NDJSON or CSV can be imported back, the CSV import reads quoted line breaks as \n.
+ */
+public enum ExportFormat {
+
+    JSON("json", "application/json") {
+        @Override
+        public <T> void write(Iterable<T> records, RecordCodec<T> codec, OutputStream output) throws IOException {
+            try (JsonGenerator generator = generator(output)) {
+                generator.writeStartArray();
+
+                for(T record : records){
+                    codec.write(generator, record);
+                }
+
+                generator.writeEndArray();
+            }
+        }
+    },
+    NDJSON("ndjson", "application/x-ndjson") {
+        @Override
+        public <T> void write(Iterable<T> records, RecordCodec<T> codec, OutputStream output) throws IOException {
+            try (JsonGenerator generator = generator(output)) {
+                generator.setRootValueSeparator(null);
+
+                for(T record : records){
+                    codec.write(generator, record);
+                    generator.writeRaw('\n');
+                }
+            }
+        }
+    },
+    CSV("csv", "text/csv;charset=UTF-8") {
+        @Override
+        public <T> void write(Iterable<T> records, RecordCodec<T> codec, OutputStream output) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            List<String> fields = codec.fieldNames();
+            Map<String, String> values = new HashMap<>();
+            writeCsvLine(writer, fields);
+
+            for(T record : records){
+                TokenBuffer buffer = new TokenBuffer(null, false);
+                codec.write(buffer, record);
+
+                try (JsonParser parser = buffer.asParser()) {
+                    parser.nextToken();
+
+                    while(parser.nextToken() == JsonToken.FIELD_NAME){
+                        String field = parser.getCurrentName();
+                        values.put(field, parser.nextToken() == JsonToken.VALUE_NULL ? "" : parser.getText());
+                    }
+                }
+
+                writeCsvLine(writer, fields.stream().map(field -> values.getOrDefault(field, "")).toList());
+                values.clear();
+            }
+
+            writer.flush();
+        }
+    };
+
+    private final String parameterName;
+
+    private final String contentType;
+
+    ExportFormat(String parameterName, String contentType) {
+        this.parameterName = parameterName;
+        this.contentType = contentType;
+    }
+
+    /***
+     * Finds a format by "format" request parameter value.
+     * @param parameterName value of "format" parameter.
+     * @return export format.
+     * @throws IllegalArgumentException if there is no such format.
+     */
+    public static ExportFormat fromParameterName(String parameterName) {
+        for(ExportFormat format : values()){
+            if(format.parameterName.equalsIgnoreCase(parameterName))
+                return format;
+        }
+
+        throw new IllegalArgumentException("Unknown export format: " + parameterName);
+    }
+
+    /***
+     * Writes the records to the stream one by one. The stream is flushed, but not closed.
+     * @param records books or reservations.
+     * @param codec codec of the records.
+     * @param output stream of the export.
+     */
+    public abstract <T> void write(Iterable<T> records, RecordCodec<T> codec, OutputStream output) throws IOException;
+
+    public String getParameterName() {
+        return this.parameterName;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    private static JsonGenerator generator(OutputStream output) throws IOException {
+        return JsonRecordFile.factory.createGenerator(output, JsonEncoding.UTF8).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static void writeCsvLine(Writer writer, List<String> values) throws IOException {
+        for(int i = 0; i < values.size(); i++){
+            String value = values.get(i);
+
+            if(i > 0)
+                writer.write(',');
+
+            if(value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0){
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.models.BookDetails;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+/***
+ * Formats of catalog dumps, which can be imported row by row. Rows are read one by one, so
+ * a dump can be split into chunks of rows and the rows parsed in parallel.
+ * CSV has a header line with the library file's field names (Name, Author, Category, Language,
+ * Publication date, ISBN, GUID) in any order. A CSV row is one line, unless a quoted field has line breaks,
+ * like CSV exports write them. NDJSON has one book object per line, with the same fields.
+ */
+public enum ImportFormat {
+
+    CSV("csv", true) {
+        @Override
+        public String readRow(BufferedReader reader) throws IOException {
+            String line = reader.readLine();
+
+            if(line == null || !hasOpenQuote(line))
+                return line;
+
+            StringBuilder row = new StringBuilder(line);
+            boolean quoted = true;
+
+            while(quoted && (line = reader.readLine()) != null){
+                row.append('\n').append(line);
+                quoted = hasOpenQuote(line) != quoted;
+            }
+
+            return row.toString();
+        }
+
+        @Override
+        public Function<String, BookDetails> rowParser(String header) {
+            List<String> columns = splitCsv(header).stream().map(column -> column.trim().toLowerCase()).toList();
+            int[] indexes = new int[FIELDS.size()];
+
+            for(int i = 0; i < FIELDS.size(); i++){
+                indexes[i] = columns.indexOf(FIELDS.get(i).toLowerCase());
+
+                if(indexes[i] < 0)
+                    throw new IllegalArgumentException("CSV header has no column " + FIELDS.get(i) + ".");
+            }
+
+            return line -> {
+                List<String> values = splitCsv(line);
+
+                if(values.size() != columns.size())
+                    throw new IllegalArgumentException("Row has " + values.size() + " columns, header has " + columns.size() + ".");
+
+                return new BookDetails(values.get(indexes[0]), values.get(indexes[1]), values.get(indexes[2]),
+                        values.get(indexes[3]), values.get(indexes[4]), values.get(indexes[5]), values.get(indexes[6]));
+            };
+        }
+    },
+    NDJSON("ndjson", false) {
+        @Override
+        public Function<String, BookDetails> rowParser(String header) {
+            return line -> {
+                try {
+                    return bookReader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Row is not a JSON object of a book.");
+                }
+            };
+        }
+    };
+
+    private static final List<String> FIELDS = List.of("Name", "Author", "Category", "Language", "Publication date", "ISBN", "GUID");
+
+    private static final ObjectReader bookReader = new ObjectMapper().readerFor(BookDetails.class);
+
+    private final String parameterName;
+
+    private final boolean header;
+
+    ImportFormat(String parameterName, boolean header) {
+        this.parameterName = parameterName;
+        this.header = header;
+    }
+
+    /***
+     * Finds a format by "format" request parameter value.
+     * @param parameterName value of "format" parameter.
+     * @return import format.
+     * @throws IllegalArgumentException if there is no such format.
+     */
+    public static ImportFormat fromParameterName(String parameterName) {
+        for(ImportFormat format : values()){
+            if(format.parameterName.equalsIgnoreCase(parameterName))
+                return format;
+        }
+
+        throw new IllegalArgumentException("Unknown import format: " + parameterName);
+    }
+
+    /***
+     * Checks if the first line of the dump is a header.
+     * @return true, if the first line is a header and not a row.
+     */
+    public boolean hasHeader() {
+        return this.header;
+    }
+
+    /***
+     * Reads the next row of the dump. Line breaks inside a row's quoted fields are read as \n.
+     * @param reader reader of the dump.
+     * @return row without its line break, or null at the end of the dump.
+     */
+    public String readRow(BufferedReader reader) throws IOException {
+        return reader.readLine();
+    }
+
+    /***
+     * Creates a parser of the dump's rows. Parser is stateless, so it can be shared by parallel workers.
+     * Parser throws IllegalArgumentException with the reason, when the row cannot be parsed.
+     * @param header header line, or null, if the format has no header.
+     * @return parser of one row.
+     * @throws IllegalArgumentException if the header is wrong.
+     */
+    public abstract Function<String, BookDetails> rowParser(String header);
+
+    public String getParameterName() {
+        return this.parameterName;
+    }
+
+    /***
+     * Checks if a CSV line has an odd count of quotes, so it opens a quoted field, which goes on in the next line,
+     * or closes one. A doubled quote inside a quoted field closes and opens it again, so counting is enough.
+     */
+    private static boolean hasOpenQuote(String line) {
+        boolean quoted = false;
+
+        for(int i = 0; i < line.length(); i++){
+            if(line.charAt(i) == '"')
+                quoted = !quoted;
+        }
+
+        return quoted;
+    }
+
+    /***
+     * Splits a CSV row into fields. Fields can be quoted, a quote inside a quoted field is doubled.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for(int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+
+            if(quoted){
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                    field.append('"');
+                    i++;
+                } else if(c == '"'){
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"'){
+                quoted = true;
+            } else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if(quoted)
+            throw new IllegalArgumentException("Row has an unclosed quote.");
+
+        fields.add(field.toString());
+        return fields;
+    }
+}
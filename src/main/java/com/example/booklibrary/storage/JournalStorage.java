@@ -0,0 +1,441 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.metrics.LibraryMetrics;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/***
+ * Storage, which appends every mutation as one line to a journal file next to the data file
+ * (for example library.json.journal), instead of rewriting the whole data file.
+ * Data file can be in any snapshot format, journal lines are always JSON.
+ * Journal lines look like {"Op":"add","Record":{...}} or {"Op":"remove","GUID":"..."}.
+ * Compaction moves the journal aside, writes a new snapshot of the data file and deletes
+ * the moved journal. On load, the snapshot is replayed with the moved journal (if compaction
+ * was interrupted) and the journal tail. Replaying is safe to repeat, because adding puts
+ * a record by its GUID and removing deletes it by GUID.
+ * Appends are committed by the durability mode: in the "sync" mode every append is flushed and forced
+ * to the disk, in the "group" mode concurrent appends are forced together and in the "async" mode
+ * a background thread forces them. The force runs without the journal's lock, so appends
+ * of the next group are not blocked by it. Snapshots replace the data file through a temporary file.
+ * Loads, appends, syncs and compactions are timed and their bytes are counted in LibraryMetrics.
+ * Failures of appends, syncs and compactions are thrown to the writers as UncheckedIOException. If buffered
+ * appends are lost with a failed stream, the journal is reopened and the next sync fails as well,
+ * so writers, whose appends were buffered with them, are not told that these are durable.
+ * Access to the journal is serialized with a ReentrantLock instead of a monitor, so a virtual
+ * thread waiting for the disk does not pin its carrier thread.
+ * @param <T> type of the records.
+ */
+public class JournalStorage<T> implements DataStorage<T> {
+
+    private final SnapshotFile<T> dataFile;
+
+    private final RecordCodec<T> codec;
+
+    private final Path journal;
+
+    private final Path compactingJournal;
+
+    private final String fileName;
+
+    private final ReentrantLock journalLock = new ReentrantLock();
+
+    private final Committer committer;
+
+    private FileChannel journalChannel;
+
+    private CountingOutputStream journalStream;
+
+    private IOException lostAppends;
+
+    public JournalStorage(SnapshotFile<T> dataFile, RecordCodec<T> codec, Durability durability, long windowMillis) {
+        this.dataFile = dataFile;
+        this.codec = codec;
+        this.journal = Path.of(dataFile.getLocation() + ".journal");
+        this.compactingJournal = Path.of(dataFile.getLocation() + ".journal.compacting");
+        this.fileName = dataFile.getLocation().getFileName().toString();
+        this.committer = new Committer(durability, windowMillis, this::sync);
+    }
+
+    public JournalStorage(SnapshotFile<T> dataFile, RecordCodec<T> codec) {
+        this(dataFile, codec, Durability.SYNC, 0);
+    }
+
+    public JournalStorage(String location, RecordCodec<T> codec) {
+        this(new JsonRecordFile<>(location, codec), codec);
+    }
+
+    @Override
+    public void load(Consumer<T> consumer) {
+        Map<String, T> records = new LinkedHashMap<>();
+        journalLock.lock();
+
+        try {
+            LibraryMetrics.timeStorage(fileName, "load", () -> {
+                dataFile.forEach(record -> records.put(codec.keyOf(record), record));
+                replay(compactingJournal, records);
+                replay(journal, records);
+            });
+            LibraryMetrics.bytesRead(fileName, dataFile.size() + SnapshotFile.sizeOf(compactingJournal) + SnapshotFile.sizeOf(journal));
+        } finally {
+            journalLock.unlock();
+        }
+
+        records.values().forEach(consumer);
+    }
+
+    @Override
+    public void recordAdded(T record, Supplier<? extends Collection<T>> state) {
+        append(List.of(addEntry(record)));
+    }
+
+    /***
+     * Appends all the records to the journal and flushes it once for the whole batch.
+     */
+    @Override
+    public void recordsAdded(Collection<T> records, Supplier<? extends Collection<T>> state) {
+        append(records.stream().map(this::addEntry).toList());
+    }
+
+    @Override
+    public void recordRemoved(String GUID, Supplier<? extends Collection<T>> state) {
+        append(List.of(removeEntry(GUID)));
+    }
+
+    /***
+     * Appends all the removals to the journal and flushes it once for the whole batch.
+     */
+    @Override
+    public void recordsRemoved(Collection<String> GUIDs, Supplier<? extends Collection<T>> state) {
+        append(GUIDs.stream().map(this::removeEntry).toList());
+    }
+
+    /***
+     * Moves the journal aside, so new mutations go to a fresh journal while the snapshot is written.
+     * If the previous compaction did not finish, the journal is appended to the already moved one.
+     * @return true, if there is anything to compact.
+     * @throws UncheckedIOException if the journal cannot be forced or moved.
+     */
+    @Override
+    public boolean startCompaction() {
+        journalLock.lock();
+
+        try {
+            closeJournalStream();
+
+            if(!Files.exists(journal) || Files.size(journal) == 0)
+                return Files.exists(compactingJournal);
+
+            if(Files.exists(compactingJournal)){
+                Files.write(compactingJournal, Files.readAllBytes(journal), StandardOpenOption.APPEND);
+                SnapshotFile.force(compactingJournal);
+                Files.delete(journal);
+            } else {
+                Files.move(journal, compactingJournal, StandardCopyOption.ATOMIC_MOVE);
+                SnapshotFile.forceDirectory(compactingJournal);
+            }
+
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal " + journal + " cannot be compacted", e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /***
+     * Writes the snapshot to a temporary file and atomically replaces the data file with it.
+     * The moved journal is deleted only after the snapshot is in place.
+     * @param state all the records at the moment of startCompaction().
+     * @throws UncheckedIOException if the snapshot cannot be written, the moved journal is kept then.
+     */
+    @Override
+    public void finishCompaction(Collection<T> state) {
+        LibraryMetrics.timeStorage(fileName, "compaction", () -> {
+            dataFile.replace(state);
+
+            try {
+                Files.deleteIfExists(compactingJournal);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Journal " + compactingJournal + " cannot be deleted", e);
+            }
+        });
+        LibraryMetrics.bytesWritten(fileName, dataFile.size());
+    }
+
+    private interface EntryWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private EntryWriter addEntry(T record) {
+        return generator -> {
+            generator.writeStringField("Op", "add");
+            generator.writeFieldName("Record");
+            codec.write(generator, record);
+        };
+    }
+
+    private EntryWriter removeEntry(String GUID) {
+        return generator -> {
+            generator.writeStringField("Op", "remove");
+            generator.writeStringField("GUID", GUID);
+        };
+    }
+
+    @Override
+    public void awaitDurable() {
+        committer.awaitDurable();
+    }
+
+    /***
+     * Forces all the appends to the disk and closes the journal.
+     * @throws UncheckedIOException if the appends cannot be forced.
+     */
+    @Override
+    public void close() {
+        committer.close();
+        journalLock.lock();
+
+        try {
+            closeJournalStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal " + journal + " cannot be closed", e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /***
+     * Writes the entries to the journal's buffer and reports them to the committer.
+     */
+    private void append(List<EntryWriter> entries) {
+        journalLock.lock();
+
+        try {
+            LibraryMetrics.timeStorage(fileName, "append", () -> appendEntries(entries));
+        } finally {
+            journalLock.unlock();
+        }
+
+        committer.mutated();
+    }
+
+    /***
+     * Flushes the journal's buffer and forces the journal to the disk. Only the flush holds the lock.
+     * If compaction closes the journal in between, it has already forced it, unless that failed.
+     * @throws UncheckedIOException if the appends cannot be flushed or forced, or were lost since the last sync.
+     */
+    private void sync() {
+        FileChannel channel;
+        journalLock.lock();
+
+        try {
+            throwLostAppends();
+
+            if(journalStream == null)
+                return;
+
+            journalStream.flush();
+            channel = journalChannel;
+        } catch (IOException e) {
+            dropJournalStream();
+            throw new UncheckedIOException("Journal " + journal + " cannot be flushed", e);
+        } finally {
+            journalLock.unlock();
+        }
+
+        LibraryMetrics.timeStorage(fileName, "sync", () -> {
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                journalLock.lock();
+                try {
+                    throwLostAppends();
+                } finally {
+                    journalLock.unlock();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Journal " + journal + " cannot be forced", e);
+            }
+        });
+    }
+
+    /***
+     * Throws the failure, with which buffered appends were lost, once. Called with the lock held.
+     */
+    private void throwLostAppends() {
+        if(lostAppends != null){
+            IOException lost = lostAppends;
+            lostAppends = null;
+            throw new UncheckedIOException("Appends to journal " + journal + " were lost", lost);
+        }
+    }
+
+    private void appendEntries(List<EntryWriter> entries) {
+        try {
+            if(journalStream == null){
+                boolean tornLine = endsWithTornLine(journal);
+                journalChannel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                journalStream = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(journalChannel)));
+
+                if(tornLine)
+                    journalStream.write('\n');
+            }
+
+            long written = journalStream.count;
+
+            for(EntryWriter entry : entries){
+                JsonGenerator generator = JsonRecordFile.factory.createGenerator(journalStream, JsonEncoding.UTF8);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartObject();
+                entry.write(generator);
+                generator.writeEndObject();
+                generator.close();
+
+                journalStream.write('\n');
+            }
+
+            LibraryMetrics.bytesWritten(fileName, journalStream.count - written);
+        } catch (IOException e) {
+            dropJournalStream();
+            throw new UncheckedIOException("Journal " + journal + " cannot be appended", e);
+        }
+    }
+
+    private void closeJournalStream() throws IOException {
+        if(journalStream != null){
+            try {
+                journalStream.flush();
+                journalChannel.force(false);
+            } catch (IOException e) {
+                dropJournalStream();
+                throw e;
+            }
+
+            journalStream.close();
+            journalStream = null;
+            journalChannel = null;
+        }
+    }
+
+    /***
+     * Closes a failed journal without flushing its buffer, the buffered appends are lost and the next sync fails.
+     * The next append opens the journal again.
+     */
+    private void dropJournalStream() {
+        if(journalChannel != null){
+            lostAppends = new IOException("Buffered appends of journal " + journal + " were dropped after a failure");
+
+            try {
+                journalChannel.close();
+            } catch (IOException e) {
+                lostAppends.addSuppressed(e);
+            }
+        }
+
+        journalStream = null;
+        journalChannel = null;
+    }
+
+    /***
+     * Checks, if the journal ends in the middle of a line, after a crash or a failed append. The next append
+     * starts on a new line then, otherwise it would be glued to the torn line and skipped with it on replay.
+     */
+    private static boolean endsWithTornLine(Path journalFile) throws IOException {
+        if(!Files.exists(journalFile))
+            return false;
+
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+
+            return channel.size() > 0 && channel.read(last, channel.size() - 1) == 1 && last.get(0) != '\n';
+        }
+    }
+
+    /***
+     * Applies journal lines to the records. A torn line (crash in the middle of append) is skipped,
+     * appends after it start on a new line.
+     */
+    private void replay(Path journalFile, Map<String, T> records) {
+        if(!Files.exists(journalFile))
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+
+            while((line = reader.readLine()) != null){
+                if(line.isBlank())
+                    continue;
+
+                try (JsonParser parser = JsonRecordFile.factory.createParser(line)) {
+                    applyEntry(parser, records);
+                } catch (IOException e) {
+                    // torn line, nothing was applied from it
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void applyEntry(JsonParser parser, Map<String, T> records) throws IOException {
+        String op = null, GUID = null;
+        T record = null;
+
+        if(parser.nextToken() != JsonToken.START_OBJECT)
+            return;
+
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "Op" -> op = parser.getText();
+                case "GUID" -> GUID = parser.getText();
+                case "Record" -> record = codec.read(parser);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if(Objects.equals(op, "add") && record != null){
+            records.put(codec.keyOf(record), record);
+        } else if(Objects.equals(op, "remove")){
+            records.remove(GUID);
+        }
+    }
+
+    /***
+     * Stream, which counts the bytes written to the journal.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
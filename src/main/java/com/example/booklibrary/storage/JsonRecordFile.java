@@ -0,0 +1,154 @@
+package com.example.booklibrary.storage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+/***
+ * Data file in the storage, which holds a JSON array of books or reservations.
+ * Records are read one by one with the streaming parser, so the file never has
+ * to be in memory as a whole, and written one by one with the streaming generator.
+ * @param <T> type of the records.
+ */
+public class JsonRecordFile<T> implements SnapshotFile<T> {
+
+    /***
+     * JsonFactory is thread-safe, parsers and generators are created for every call.
+     */
+    static final JsonFactory factory = new JsonFactory();
+
+    private final Path location;
+
+    private final RecordCodec<T> codec;
+
+    public JsonRecordFile(String location, RecordCodec<T> codec) {
+        this.location = Path.of(location);
+        this.codec = codec;
+    }
+
+    /***
+     * Opens the data file for reading records one by one. Missing file is treated as an empty array.
+     * Iterator has to be closed, best with try-with-resources.
+     * @return iterator of the records.
+     */
+    public RecordIterator<T> iterator() throws IOException {
+        if(!Files.exists(location))
+            return new RecordIterator<>(null, codec);
+
+        JsonParser parser = factory.createParser(location.toFile());
+
+        if(parser.nextToken() != JsonToken.START_ARRAY){
+            parser.close();
+            throw new IOException("Data file " + location + " does not contain a JSON array");
+        }
+
+        return new RecordIterator<>(parser, codec);
+    }
+
+    @Override
+    public void read(Consumer<T> consumer) throws IOException {
+        if(!Files.exists(location))
+            throw new NoSuchFileException(location.toString());
+
+        try (RecordIterator<T> records = iterator()) {
+            records.forEachRemaining(consumer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /***
+     * Writes all the records as a JSON array.
+     * @param records books or reservations.
+     * @param location location of the written file.
+     */
+    @Override
+    public void write(Iterable<T> records, Path location) {
+        try (JsonGenerator generator = factory.createGenerator(location.toFile(), JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+
+            for(T record : records){
+                codec.write(generator, record);
+            }
+
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Path getLocation() {
+        return this.location;
+    }
+
+    public RecordCodec<T> getCodec() {
+        return this.codec;
+    }
+
+    /***
+     * Iterator, which reads the next record from the parser only when it is asked for.
+     * @param <T> type of the records.
+     */
+    public static class RecordIterator<T> implements Iterator<T>, Closeable {
+
+        private final JsonParser parser;
+
+        private final RecordCodec<T> codec;
+
+        private boolean advanced;
+
+        private boolean hasNext;
+
+        private RecordIterator(JsonParser parser, RecordCodec<T> codec) {
+            this.parser = parser;
+            this.codec = codec;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(parser == null)
+                return false;
+
+            if(!advanced){
+                try {
+                    hasNext = parser.nextToken() == JsonToken.START_OBJECT;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                advanced = true;
+            }
+
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            if(!hasNext())
+                throw new NoSuchElementException();
+
+            advanced = false;
+
+            try {
+                return codec.read(parser);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                throw new UncheckedIOException(new IOException("Wrong record at " + parser.getTokenLocation(), e));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(parser != null)
+                parser.close();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.models.Book;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/***
+ * Read-only view of a binary catalog file (see BinaryCatalogFile) through FileChannel.map.
+ * Finding a book by GUID is a binary search over the sorted offset index, which compares
+ * GUID bytes in the mapped buffer and decodes only the one record, that was found.
+ * Only absolute reads are used, so the catalog can be read by many threads at once.
+ */
+public class MappedBookCatalog implements RecordLookup<Book>, Iterable<Book> {
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int count;
+
+    private final int indexOffset;
+
+    /***
+     * Version 1 records have no flags byte.
+     */
+    private final boolean hasFlags;
+
+    private MappedBookCatalog(FileChannel channel, MappedByteBuffer buffer, int count, int indexOffset, boolean hasFlags) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        this.hasFlags = hasFlags;
+    }
+
+    /***
+     * Maps the binary catalog file and checks its header.
+     * @param location location of the binary catalog.
+     * @return opened catalog, which has to be closed.
+     */
+    public static MappedBookCatalog open(Path location) throws IOException {
+        FileChannel channel = FileChannel.open(location, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+
+            if(size < BinaryCatalogFile.HEADER_SIZE + BinaryCatalogFile.TRAILER_SIZE || size > Integer.MAX_VALUE)
+                throw new IOException("Wrong size of the binary catalog: " + size);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            short version = buffer.getShort(4);
+
+            if(buffer.getInt(0) != BinaryCatalogFile.MAGIC || version < 1 || version > BinaryCatalogFile.VERSION)
+                throw new IOException("File is not a binary catalog of version 1 to " + BinaryCatalogFile.VERSION + ": " + location);
+
+            int count = buffer.getInt((int) size - BinaryCatalogFile.TRAILER_SIZE);
+            int indexOffset = (int) buffer.getLong((int) size - BinaryCatalogFile.TRAILER_SIZE + 4);
+
+            return new MappedBookCatalog(channel, buffer, count, indexOffset, version > 1);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /***
+     * Finds a book by its GUID code.
+     * @param GUID GUID code that is unique.
+     * @return book with its unique GUID code or null, if there is no such book.
+     */
+    @Override
+    public Book findByGUID(String GUID) {
+        byte[] key = GUID.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            int offset = buffer.getInt(indexOffset + middle * 4);
+            int comparison = compareGUID(offset, key);
+
+            if(comparison < 0){
+                low = middle + 1;
+            } else if(comparison > 0){
+                high = middle - 1;
+            } else {
+                return decode(offset);
+            }
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    /***
+     * Iterates books in the catalog order, decoding them one by one.
+     * @return iterator of the books.
+     */
+    @Override
+    public Iterator<Book> iterator() {
+        return new Iterator<>() {
+
+            private int offset = BinaryCatalogFile.HEADER_SIZE;
+
+            private int read = 0;
+
+            @Override
+            public boolean hasNext() {
+                return read < count;
+            }
+
+            @Override
+            public Book next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+
+                Book book = decode(offset);
+                offset = skipRecord(offset);
+                read++;
+
+                return book;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int compareGUID(int offset, byte[] key) {
+        int length = Short.toUnsignedInt(buffer.getShort(offset));
+        int common = Math.min(length, key.length);
+
+        for(int i = 0; i < common; i++){
+            int comparison = Byte.compareUnsigned(buffer.get(offset + 2 + i), key[i]);
+
+            if(comparison != 0)
+                return comparison;
+        }
+
+        return Integer.compare(length, key.length);
+    }
+
+    private Book decode(int offset) {
+        int[] position = {offset};
+        String GUID = readString(position);
+        String name = readString(position);
+        String author = readString(position);
+        String category = readString(position);
+        String language = readString(position);
+        byte flags = hasFlags ? buffer.get(position[0]++) : 0;
+        int ISBN = buffer.getInt(position[0]);
+        int epochDay = buffer.getInt(position[0] + 4);
+
+        return new Book(name, author, category, language,
+                (flags & BinaryCatalogFile.NO_PUBLICATION_DATE) != 0 ? null : LocalDate.ofEpochDay(epochDay),
+                (flags & BinaryCatalogFile.NO_ISBN) != 0 ? null : ISBN, GUID);
+    }
+
+    private String readString(int[] position) {
+        int length = Short.toUnsignedInt(buffer.getShort(position[0]));
+
+        if(length == BinaryCatalogFile.NULL_LENGTH){
+            position[0] += 2;
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(position[0] + 2, bytes);
+        position[0] += 2 + length;
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int skipRecord(int offset) {
+        for(int field = 0; field < 5; field++){
+            int length = Short.toUnsignedInt(buffer.getShort(offset));
+            offset += 2 + (length == BinaryCatalogFile.NULL_LENGTH ? 0 : length);
+        }
+
+        return offset + (hasFlags ? 9 : 8);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.booklibrary.storage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.List;
+
+/***
+ * Reads and writes one record (book or reservation) as a JSON object straight from
+ * the streaming parser and to the streaming generator, without intermediate maps.
+ * @param <T> type of the record.
+ */
+public interface RecordCodec<T> {
+
+    /***
+     * Reads a record. Parser has to be positioned on the START_OBJECT token and
+     * is left on the matching END_OBJECT token. Unknown fields are skipped.
+     * @param parser streaming JSON parser.
+     * @return read record.
+     */
+    T read(JsonParser parser) throws IOException;
+
+    void write(JsonGenerator generator, T record) throws IOException;
+
+    /***
+     * Gets the names of the record's fields in the order they are written, used as the columns of CSV exports.
+     * @return field names.
+     */
+    List<String> fieldNames();
+
+    /***
+     * Gets the GUID, by which records are identified in the storage.
+     * @param record book or reservation.
+     * @return GUID of the record.
+     */
+    String keyOf(T record);
+}
@@ -0,0 +1,16 @@
+package com.example.booklibrary.storage;
+import java.io.Closeable;
+
+/***
+ * Finds records of a data file by their GUIDs through an index in the file, decoding only the found record.
+ * @param <T> type of the records.
+ */
+public interface RecordLookup<T> extends Closeable {
+
+    /***
+     * Finds a record by its GUID code.
+     * @param GUID GUID code that is unique.
+     * @return record with the GUID or null, if the file has no such record.
+     */
+    T findByGUID(String GUID);
+}
@@ -0,0 +1,63 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.models.BookReservation;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+/***
+ * Codec of books' reservations records: {"Person":..,"Period":..,"GUID":..,"TakenAt":"2022-01-31T10:15:30Z"}
+ * Records written before checkout instants were kept have no "TakenAt".
+ */
+public class ReservationCodec implements RecordCodec<BookReservation> {
+
+    private static final List<String> FIELD_NAMES = List.of("Person", "Period", "GUID", "TakenAt");
+
+    @Override
+    public BookReservation read(JsonParser parser) throws IOException {
+        String person = null, GUID = null;
+        Integer period = null;
+        Instant takenAt = null;
+
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "Person" -> person = parser.getText();
+                case "Period" -> period = parser.currentToken() == JsonToken.VALUE_NUMBER_INT
+                        ? parser.getIntValue() : Integer.valueOf(parser.getText());
+                case "GUID" -> GUID = parser.getText();
+                case "TakenAt" -> takenAt = Instant.parse(parser.getText());
+                default -> parser.skipChildren();
+            }
+        }
+
+        return new BookReservation(person, period, GUID, takenAt);
+    }
+
+    @Override
+    public void write(JsonGenerator generator, BookReservation reservation) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("Person", reservation.getPerson());
+        generator.writeNumberField("Period", reservation.getPeriod());
+        generator.writeStringField("GUID", reservation.getBookGUID());
+
+        if(reservation.getTakenAt() != null)
+            generator.writeStringField("TakenAt", reservation.getTakenAt().toString());
+
+        generator.writeEndObject();
+    }
+
+    @Override
+    public List<String> fieldNames() {
+        return FIELD_NAMES;
+    }
+
+    @Override
+    public String keyOf(BookReservation reservation) {
+        return reservation.getBookGUID();
+    }
+}
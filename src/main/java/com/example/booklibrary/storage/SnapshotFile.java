@@ -0,0 +1,128 @@
+package com.example.booklibrary.storage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/***
+ * File, which holds a full snapshot of books or reservations in some format (JSON array or binary catalog).
+ * @param <T> type of the records.
+ */
+public interface SnapshotFile<T> {
+
+    /***
+     * Reads all the records in the file order. Missing file has no records, as on the first start,
+     * but a file, which cannot be read whole, fails the read instead of giving the records before the damage,
+     * so a partly read catalog is never served and then written over the rest of the file.
+     * @param consumer consumer of the records.
+     * @throws UncheckedIOException if the file exists, but cannot be read whole.
+     */
+    default void forEach(Consumer<T> consumer) {
+        if(!Files.exists(getLocation()))
+            return;
+
+        try {
+            read(consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Data file " + getLocation() + " cannot be read", e);
+        }
+    }
+
+    /***
+     * Reads all the records in the file order, like forEach(), but fails on a missing file as well,
+     * for reads of a file, which was changed by another process.
+     * @param consumer consumer of the records.
+     * @throws IOException if the file is missing or cannot be read whole.
+     */
+    void read(Consumer<T> consumer) throws IOException;
+
+    /***
+     * Writes all the records to the given location in the format of this file.
+     * @param records books or reservations.
+     * @param location location of the written file.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    void write(Iterable<T> records, Path location);
+
+    default void write(Iterable<T> records) {
+        write(records, getLocation());
+    }
+
+    /***
+     * Replaces the file with all the records atomically. Records are written to a temporary file next to it,
+     * which is forced to the disk and renamed over the file, so a crash leaves the old or the new file,
+     * never a truncated one. If the temporary file cannot be written, the file is left as it was.
+     * @param records books or reservations.
+     * @throws UncheckedIOException if the file cannot be written, moved or forced.
+     */
+    default void replace(Iterable<T> records) {
+        Path location = getLocation();
+        Path temporary = location.resolveSibling(location.getFileName() + ".tmp");
+
+        try {
+            write(records, temporary);
+            force(temporary);
+            Files.move(temporary, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(location);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Data file " + location + " cannot be replaced", e);
+        }
+    }
+
+    Path getLocation();
+
+    /***
+     * Opens a lookup of the records by GUID in the file as it is now, for formats with an index of GUIDs.
+     * By default, the format has no index.
+     * @return lookup, which has to be closed, or null, if the format has no index of GUIDs.
+     * @throws IOException if the file is missing or cannot be opened.
+     */
+    default RecordLookup<T> openLookup() throws IOException {
+        return null;
+    }
+
+    /***
+     * Gets the size of the file, used for the metrics of bytes read and written.
+     * @return size in bytes, 0 if the file is missing.
+     */
+    default long size() {
+        return sizeOf(getLocation());
+    }
+
+    /***
+     * Forces the content of the file to the disk.
+     * @param location location of the file.
+     */
+    static void force(Path location) throws IOException {
+        try (FileChannel channel = FileChannel.open(location, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /***
+     * Forces the directory of the file to the disk, so a rename of the file survives a crash.
+     * Not every platform can open a directory, then the rename is left to the file system.
+     * @param location location of the file.
+     */
+    static void forceDirectory(Path location) {
+        Path directory = location.toAbsolutePath().getParent();
+
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be opened on this platform
+        }
+    }
+
+    static long sizeOf(Path location) {
+        try {
+            return Files.exists(location) ? Files.size(location) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.booklibrary.storage;
+import com.example.booklibrary.metrics.LibraryMetrics;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/***
+ * Storage, which rewrites the whole data file on every mutation. The file is replaced through
+ * a temporary file, so a crash never leaves a truncated data file.
+ * Mutations are committed by the durability mode: in the "sync" mode every mutation writes the file,
+ * in the "group" and "async" modes mutations only keep the supplier of the state and one write of the latest
+ * state commits all the mutations before it. Writes are serialized and take the latest state inside
+ * the write, so the last write always has all the mutations, which were made before it.
+ * Suppliers return immutable snapshots of the repositories, so the state is neither copied on a mutation
+ * nor changed while it is written.
+ * Locks are ReentrantLocks instead of monitors, so a virtual thread blocked on the disk does not pin its carrier.
+ * Loads and writes are timed and their bytes are counted in LibraryMetrics.
+ * The attributes of the file are kept after every load and write, so a file with other attributes
+ * was changed by another process and is read again by reloadIfChanged().
+ * When the format of the file has an index of GUIDs (binary catalog), records are found in the file itself
+ * through a lookup, which is opened for the current file and closed, when the file is replaced.
+ * @param <T> type of the records.
+ */
+public class SnapshotStorage<T> implements DataStorage<T> {
+
+    private final SnapshotFile<T> dataFile;
+
+    private final String fileName;
+
+    private final Committer committer;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final ReentrantLock stateLock = new ReentrantLock();
+
+    /***
+     * Supplier of the latest state, which is not written yet.
+     */
+    private Supplier<? extends Collection<T>> pending;
+
+    /***
+     * Attributes of the data file, when this storage read or wrote it last, guarded by the write lock.
+     */
+    private FileStamp stamp;
+
+    /***
+     * Lookup of the current data file, opened by the first search after a load or write, guarded by the write lock.
+     */
+    private RecordLookup<T> lookup;
+
+    /***
+     * Set, when the format of the data file has no index of GUIDs, so the file is not searched anymore.
+     */
+    private volatile boolean noLookup;
+
+    private record FileStamp(FileTime modified, long size, Object key) {
+
+        /***
+         * Reads the attributes of the file.
+         * @return attributes of the file or null, if it is missing.
+         */
+        private static FileStamp of(Path location) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(location, BasicFileAttributes.class);
+                return new FileStamp(attributes.lastModifiedTime(), attributes.size(), attributes.fileKey());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    public SnapshotStorage(SnapshotFile<T> dataFile, Durability durability, long windowMillis) {
+        this.dataFile = dataFile;
+        this.fileName = dataFile.getLocation().getFileName().toString();
+        this.committer = new Committer(durability, windowMillis, this::write);
+    }
+
+    public SnapshotStorage(SnapshotFile<T> dataFile) {
+        this(dataFile, Durability.SYNC, 0);
+    }
+
+    public SnapshotStorage(String location, RecordCodec<T> codec) {
+        this(new JsonRecordFile<>(location, codec));
+    }
+
+    @Override
+    public void load(Consumer<T> consumer) {
+        writeLock.lock();
+        try {
+            stamp = FileStamp.of(dataFile.getLocation());
+            LibraryMetrics.timeStorage(fileName, "load", () -> dataFile.forEach(consumer));
+            LibraryMetrics.bytesRead(fileName, dataFile.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void recordAdded(T record, Supplier<? extends Collection<T>> state) {
+        mutated(state);
+    }
+
+    @Override
+    public void recordsAdded(Collection<T> records, Supplier<? extends Collection<T>> state) {
+        mutated(state);
+    }
+
+    @Override
+    public void recordRemoved(String GUID, Supplier<? extends Collection<T>> state) {
+        mutated(state);
+    }
+
+    @Override
+    public void recordsRemoved(Collection<String> GUIDs, Supplier<? extends Collection<T>> state) {
+        mutated(state);
+    }
+
+    @Override
+    public void awaitDurable() {
+        committer.awaitDurable();
+    }
+
+    /***
+     * Opens the data file, when it is a JSON array, no write is running and no mutation is waiting for one.
+     * The check does not wait for a running write, the records are written from the repository instead.
+     */
+    @Override
+    public FileChannel openCurrentFile() throws IOException {
+        if(!(dataFile instanceof JsonRecordFile) || !writeLock.tryLock())
+            return null;
+
+        try {
+            stateLock.lock();
+            try {
+                if(pending != null)
+                    return null;
+            } finally {
+                stateLock.unlock();
+            }
+
+            return Files.exists(dataFile.getLocation()) ? FileChannel.open(dataFile.getLocation(), StandardOpenOption.READ) : null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /***
+     * Searches the data file, when no write is running and no mutation is waiting for one, like openCurrentFile().
+     */
+    @Override
+    public boolean findInCurrentFile(String GUID, Consumer<T> consumer) {
+        if(noLookup || !writeLock.tryLock())
+            return false;
+
+        try {
+            stateLock.lock();
+            try {
+                if(pending != null)
+                    return false;
+            } finally {
+                stateLock.unlock();
+            }
+
+            if(lookup == null){
+                lookup = dataFile.openLookup();
+
+                if(lookup == null){
+                    noLookup = true;
+                    return false;
+                }
+            }
+
+            T record = lookup.findByGUID(GUID);
+
+            if(record != null)
+                consumer.accept(record);
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Path reloadableFile() {
+        return dataFile.getLocation();
+    }
+
+    /***
+     * Reads the data file again, when its attributes differ from the ones after the last load or write.
+     * Writes of this storage wait for the read, so they are never taken for changes of another process.
+     * A missing file is not read, the repository keeps its records until the file is back.
+     */
+    @Override
+    public boolean reloadIfChanged(Consumer<T> consumer) throws IOException {
+        writeLock.lock();
+        try {
+            FileStamp current = FileStamp.of(dataFile.getLocation());
+
+            if(current == null || current.equals(stamp))
+                return false;
+
+            dataFile.read(consumer);
+            LibraryMetrics.bytesRead(fileName, current.size());
+            stamp = current;
+            closeLookup();
+
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        committer.close();
+
+        writeLock.lock();
+        try {
+            closeLookup();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /***
+     * Keeps the supplier of the state for the next write, which takes the state, when it is made.
+     */
+    private void mutated(Supplier<? extends Collection<T>> state) {
+        stateLock.lock();
+        try {
+            pending = state;
+        } finally {
+            stateLock.unlock();
+        }
+
+        committer.mutated();
+    }
+
+    private void write() {
+        writeLock.lock();
+        try {
+            Supplier<? extends Collection<T>> state;
+
+            stateLock.lock();
+            try {
+                state = pending;
+                pending = null;
+            } finally {
+                stateLock.unlock();
+            }
+
+            if(state == null)
+                return;
+
+            Collection<T> records = state.get();
+
+            try {
+                LibraryMetrics.timeStorage(fileName, "write", () -> dataFile.replace(records));
+            } catch (RuntimeException e) {
+                restorePending(state);
+                throw e;
+            }
+
+            LibraryMetrics.bytesWritten(fileName, dataFile.size());
+            stamp = FileStamp.of(dataFile.getLocation());
+            closeLookup();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /***
+     * Keeps the state of a failed write for the next one, unless a newer mutation has already replaced it.
+     */
+    private void restorePending(Supplier<? extends Collection<T>> state) {
+        stateLock.lock();
+        try {
+            if(pending == null)
+                pending = state;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /***
+     * Closes the lookup of the replaced file, the next search opens the current one. Called with the write lock held.
+     */
+    private void closeLookup() {
+        if(lookup == null)
+            return;
+
+        try {
+            lookup.close();
+        } catch (IOException e) {
+            // the mapping is released with the lookup anyway
+        }
+
+        lookup = null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.booklibrary;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.storage.BinaryCatalogConverter;
+import com.example.booklibrary.storage.BinaryCatalogFile;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.JsonRecordFile;
+import com.example.booklibrary.storage.MappedBookCatalog;
+import com.example.booklibrary.storage.SnapshotStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Tests class for testing binary catalog format and MappedBookCatalog.
+ */
+class BinaryCatalogTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    /***
+     * Testing method findByGUID(),
+     * when catalog has 1000 books - every book is found by GUID and missing GUID returns null.
+     */
+    @Test
+    void findByGUID_catalogHasBooks_findsEveryBook() throws IOException {
+        // Arrange
+            Path location = dataDirectory.resolve("library.bin");
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                books.add(new Book("Book" + i, "Author" + i % 7, "Category", "Lietuvių", LocalDate.parse("1990-01-01").plusDays(i), i, "G" + (i * 7919 % 1000)));
+            }
+            new BinaryCatalogFile(location.toString()).write(books);
+        // Act
+            try (MappedBookCatalog catalog = MappedBookCatalog.open(location)) {
+        // Assert
+                assertEquals(1000, catalog.size());
+                for (Book book : books) {
+                    Book found = catalog.findByGUID(book.getGUID());
+                    assertEquals(book.getName(), found.getName());
+                    assertEquals(book.getLanguage(), found.getLanguage());
+                    assertEquals(book.getISBN(), found.getISBN());
+                    assertEquals(book.getPublicationDate(), found.getPublicationDate());
+                }
+                assertNull(catalog.findByGUID("G1000"));
+                assertNull(catalog.findByGUID(""));
+            }
+    }
+
+    /***
+     * Testing BinaryCatalogConverter,
+     * when JSON library is converted to binary and back - books and their order remain the same.
+     */
+    @Test
+    void convert_jsonToBinaryAndBack_booksRemainTheSame() throws IOException {
+        // Arrange
+            String json = dataDirectory.resolve("library.json").toString();
+            String binary = dataDirectory.resolve("library.bin").toString();
+            String convertedJson = dataDirectory.resolve("converted.json").toString();
+            List<Book> books = List.of(
+                    new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "B"),
+                    new Book("Book2", "Author2", "Category", "Language", LocalDate.parse("1800-10-11"), 200, "A"));
+            new JsonRecordFile<>(json, new BookCodec()).write(books);
+            List<Book> converted = new ArrayList<>();
+        // Act
+            BinaryCatalogConverter.jsonToBinary(json, binary);
+            BinaryCatalogConverter.binaryToJson(binary, convertedJson);
+            new JsonRecordFile<>(convertedJson, new BookCodec()).forEach(converted::add);
+        // Assert
+            assertEquals(2, converted.size());
+            assertEquals("B", converted.get(0).getGUID());
+            assertEquals(LocalDate.parse("1800-10-11"), converted.get(1).getPublicationDate());
+            assertEquals("Author2", converted.get(1).getAuthor());
+    }
+
+    /***
+     * Testing method write(),
+     * when a book has no ISBN, no publication date and no category - the book is written and read back with missing values,
+     * and the next book is read after it.
+     */
+    @Test
+    void write_bookWithMissingValues_readsMissingValues() throws IOException {
+        // Arrange
+            BinaryCatalogFile file = new BinaryCatalogFile(dataDirectory.resolve("library.bin").toString());
+            List<Book> books = new ArrayList<>();
+        // Act
+            file.write(List.of(
+                    new Book("Book1", "Author1", null, "Language", null, null, "1"),
+                    new Book("Book2", "Author2", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2")));
+            file.forEach(books::add);
+        // Assert
+            assertEquals(2, books.size());
+            assertNull(books.get(0).getCategory());
+            assertNull(books.get(0).getISBN());
+            assertNull(books.get(0).getPublicationDate());
+            assertEquals("Language", books.get(0).getLanguage());
+            assertEquals(200, books.get(1).getISBN());
+            assertEquals(LocalDate.parse("2020-12-12"), books.get(1).getPublicationDate());
+    }
+
+    /***
+     * Testing method findByGUID() of BookRepository,
+     * when the library is a binary catalog in the snapshot storage - books are decoded from the mapped file,
+     * which follows added and removed books.
+     */
+    @Test
+    void findByGUID_binaryCatalogStorage_findsBooksInMappedFile() {
+        // Arrange
+            BookRepository repository = new BookRepository(new SnapshotStorage<>(new BinaryCatalogFile(dataDirectory.resolve("library.bin").toString())));
+            repository.save(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
+            repository.save(new Book("Book2", "Author2", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+        // Act
+            Book found = repository.findByGUID("2");
+            repository.removeByGUID("2");
+            Book removed = repository.findByGUID("2");
+        // Assert
+            assertEquals("Book2", found.getName());
+            assertEquals(200, found.getISBN());
+            assertNotSame(repository.snapshot().findByGUID("1"), repository.findByGUID("1"));
+            assertEquals("Book1", repository.findByGUID("1").getName());
+            assertNull(removed);
+    }
+}
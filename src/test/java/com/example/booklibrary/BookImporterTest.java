@@ -0,0 +1,173 @@
+package com.example.booklibrary;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.ImportReport;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookImporter;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.DataStorage;
+import com.example.booklibrary.storage.ImportFormat;
+import com.example.booklibrary.storage.ReservationCodec;
+import com.example.booklibrary.storage.SnapshotStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Tests class for testing BookImporter class methods.
+ */
+class BookImporterTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    private BookService bookService;
+
+    private BookImporter bookImporter;
+
+    /***
+     * Every test starts with empty data files and an importer with chunks of 3 rows, 2 workers
+     * and one catalog batch per 2 chunks, so even small dumps are split into several parallel chunks and batches.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        Path library = Files.writeString(dataDirectory.resolve("library.json"), "[]");
+        Path reservations = Files.writeString(dataDirectory.resolve("reservations.json"), "[]");
+
+        bookService = new BookService(
+                new BookRepository(new SnapshotStorage<>(library.toString(), new BookCodec())),
+                new ReservationRepository(new SnapshotStorage<>(reservations.toString(), new ReservationCodec())));
+        bookImporter = new BookImporter(bookService, 3, 2, 2);
+    }
+
+    /***
+     * Testing method importBooks(),
+     * when CSV dump has 8 valid rows, a repeated GUID, a wrong date and a wrong column count -
+     * valid rows are imported and the wrong ones are reported with their line numbers.
+     */
+    @Test
+    void importBooks_csvWithWrongRows_importsValidRowsAndReportsErrors() {
+        // Arrange
+            StringBuilder dump = new StringBuilder("GUID,Name,Author,Category,Language,Publication date,ISBN\n");
+            for (int i = 1; i <= 8; i++) {
+                dump.append(i).append(",\"Book, part ").append(i).append("\",Author,Category,Language,2020-12-12,").append(i).append('\n');
+            }
+            dump.append("1,Repeated,Author,Category,Language,2020-12-12,1\n");
+            dump.append("10,Wrong date,Author,Category,Language,2020-13-12,10\n");
+            dump.append("11,Too short\n");
+        // Act
+            ImportReport report = bookImporter.importBooks(stream(dump.toString()), ImportFormat.CSV);
+        // Assert
+            assertEquals("finished", report.getStatus());
+            assertEquals(11, report.getRowsRead());
+            assertEquals(8, report.getAccepted());
+            assertEquals(3, report.getRejected());
+            assertEquals(8, bookService.getListOfBooks().size());
+            assertEquals("Book, part 2", bookService.findBookByGUID("2").getName());
+            assertTrue(report.getErrors().stream().anyMatch(error -> error.getIndex() == 12));
+    }
+
+    /***
+     * Testing method importBooks(),
+     * when a CSV row has a quoted name with a line break - the row is read across both lines,
+     * and the rows after it are reported with the numbers of their own lines.
+     */
+    @Test
+    void importBooks_csvQuotedLineBreak_readsRowAcrossLines() {
+        // Arrange
+            String dump = "GUID,Name,Author,Category,Language,Publication date,ISBN\n"
+                    + "1,\"First\nline, and \"\"second\"\"\",Author,Category,Language,2020-12-12,1\n"
+                    + "2,Wrong date,Author,Category,Language,2020-13-12,2\n"
+                    + "3,Book,Author,Category,Language,2020-12-12,3\n";
+        // Act
+            ImportReport report = bookImporter.importBooks(stream(dump), ImportFormat.CSV);
+        // Assert
+            assertEquals(3, report.getRowsRead());
+            assertEquals(2, report.getAccepted());
+            assertEquals("First\nline, and \"second\"", bookService.findBookByGUID("1").getName());
+            assertEquals(4, report.getErrors().get(0).getIndex());
+    }
+
+    /***
+     * Testing method importBooks(),
+     * when NDJSON dump has 2 books, a blank line and a line which is not JSON - both books are imported.
+     */
+    @Test
+    void importBooks_ndjson_importsBooks() {
+        // Arrange
+            String dump = """
+                    {"Name":"A","Author":"Author","Category":"Category","Language":"Language","Publication date":"2020-12-12","ISBN":1,"GUID":"1"}
+
+                    {"Name":"B","Author":"Author","Category":"Category","Language":"Language","Publication date":"2020-12-12","ISBN":2,"GUID":"2"}
+                    not a book
+                    """;
+        // Act
+            ImportReport report = bookImporter.importBooks(stream(dump), ImportFormat.NDJSON);
+        // Assert
+            assertEquals(2, report.getAccepted());
+            assertEquals(1, report.getRejected());
+            assertEquals(4, report.getErrors().get(0).getIndex());
+            assertEquals("B", bookService.findBookByGUID("2").getName());
+    }
+
+    /***
+     * Testing method importBooks(),
+     * when a dump of 10 rows is split into 4 chunks - the chunks are added in 2 batches with one write
+     * of the library storage each, and of two rows with the same GUID the first one in the dump is kept.
+     */
+    @Test
+    void importBooks_severalChunks_addsBatchesWithOneWriteEach() {
+        // Arrange
+            AtomicInteger writes = new AtomicInteger();
+            DataStorage<Book> storage = new DataStorage<>() {
+                @Override
+                public void load(Consumer<Book> consumer) {}
+
+                @Override
+                public void recordAdded(Book record, Supplier<? extends Collection<Book>> state) {
+                    writes.incrementAndGet();
+                }
+
+                @Override
+                public void recordsAdded(Collection<Book> records, Supplier<? extends Collection<Book>> state) {
+                    writes.incrementAndGet();
+                }
+
+                @Override
+                public void recordRemoved(String GUID, Supplier<? extends Collection<Book>> state) {
+                    writes.incrementAndGet();
+                }
+            };
+            bookService = new BookService(new BookRepository(storage),
+                    new ReservationRepository(new SnapshotStorage<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec())));
+            StringBuilder dump = new StringBuilder("GUID,Name,Author,Category,Language,Publication date,ISBN\n");
+            for (int i = 1; i <= 9; i++) {
+                dump.append(i).append(",Book").append(i).append(",Author,Category,Language,2020-12-12,").append(i).append('\n');
+            }
+            dump.append("2,Repeated,Author,Category,Language,2020-12-12,2\n");
+        // Act
+            ImportReport report = new BookImporter(bookService, 3, 2, 2).importBooks(stream(dump.toString()), ImportFormat.CSV);
+        // Assert
+            assertEquals(9, report.getAccepted());
+            assertEquals(1, report.getRejected());
+            assertEquals(11, report.getErrors().get(0).getIndex());
+            assertEquals("Book2", bookService.findBookByGUID("2").getName());
+            assertEquals(2, writes.get());
+    }
+
+    private static ByteArrayInputStream stream(String dump) {
+        return new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.booklibrary;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.JournalStorage;
+import com.example.booklibrary.storage.ReservationCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Stress tests of concurrent checkouts through BookService.takeBook().
+ */
+class BookServiceConcurrencyTest {
+
+    private static final int BOOKS = 50;
+
+    private static final int PERSONS = 20;
+
+    private static final int THREADS = 16;
+
+    @TempDir
+    Path dataDirectory;
+
+    private ReservationRepository reservationRepository;
+
+    private BookService bookService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path library = Files.writeString(dataDirectory.resolve("library.json"), "[]");
+        Path reservations = Files.writeString(dataDirectory.resolve("reservations.json"), "[]");
+
+        reservationRepository = new ReservationRepository(new JournalStorage<>(reservations.toString(), new ReservationCodec()));
+        bookService = new BookService(new BookRepository(new JournalStorage<>(library.toString(), new BookCodec())), reservationRepository);
+
+        for (int i = 0; i < BOOKS; i++) {
+            bookService.saveDataToFile(new Book("Book" + i, "Author", "Category", "Language", LocalDate.parse("2020-12-12"), i, "G" + i), "library");
+        }
+    }
+
+    /***
+     * Testing method takeBook(),
+     * when many threads take random books for random persons at once - every book is
+     * taken at most once and no person gets more than 3 books.
+     */
+    @Test
+    void takeBook_concurrentCheckouts_keepsInvariants() throws Exception {
+        // Arrange
+            Map<String, Set<String>> takenByPerson = new ConcurrentHashMap<>();
+            Map<String, Integer> successesByBook = new ConcurrentHashMap<>();
+        // Act
+            runConcurrently(random -> {
+                String person = "Person" + random.nextInt(PERSONS);
+                String GUID = "G" + random.nextInt(BOOKS);
+                String message = bookService.takeBook(new BookReservation(person, 10, GUID));
+
+                if (message.equals("Book has been successfully taken.")) {
+                    successesByBook.merge(GUID, 1, Integer::sum);
+                    takenByPerson.computeIfAbsent(person, key -> ConcurrentHashMap.newKeySet()).add(GUID);
+                }
+            });
+        // Assert
+            successesByBook.values().forEach(count -> assertEquals(1, count));
+            takenByPerson.forEach((person, books) -> {
+                assertTrue(books.size() <= 3);
+                assertEquals(books.size(), reservationRepository.countByPerson(person));
+            });
+            assertEquals(successesByBook.size(), reservationRepository.findAll().size());
+    }
+
+    /***
+     * Testing methods takeBook() and removeBooksByGUID(),
+     * when checkouts and returns are mixed - persons' counts of taken books stay equal
+     * to their reservations and are never more than 3.
+     */
+    @Test
+    void takeBook_concurrentCheckoutsAndReturns_countsMatchReservations() throws Exception {
+        // Act
+            runConcurrently(random -> {
+                String GUID = "G" + random.nextInt(BOOKS);
+
+                if (random.nextInt(4) == 0) {
+                    bookService.removeBooksByGUID(GUID, "reservations");
+                } else {
+                    bookService.takeBook(new BookReservation("Person" + random.nextInt(PERSONS), 10, GUID));
+                }
+            });
+        // Assert
+            Map<String, Integer> expected = new HashMap<>();
+            for (BookReservation reservation : reservationRepository.findAll()) {
+                expected.merge(reservation.getPerson(), 1, Integer::sum);
+            }
+            for (int i = 0; i < PERSONS; i++) {
+                String person = "Person" + i;
+                assertEquals(expected.getOrDefault(person, 0), reservationRepository.countByPerson(person));
+                assertTrue(reservationRepository.countByPerson(person) <= 3);
+            }
+    }
+
+    private void runConcurrently(java.util.function.Consumer<Random> operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < 2000; i++) {
+                    operation.accept(random);
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
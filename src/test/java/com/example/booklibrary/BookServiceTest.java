@@ -1,12 +1,34 @@
 package com.example.booklibrary;
+import com.example.booklibrary.models.BatchItemResult;
 import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookDetails;
+import com.example.booklibrary.models.BookFacet;
+import com.example.booklibrary.models.BookFilter;
+import com.example.booklibrary.models.BookPage;
 import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.models.BookSort;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.CatalogSnapshot;
+import com.example.booklibrary.repositories.ReservationRepository;
 import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.ReservationCodec;
+import com.example.booklibrary.storage.SnapshotStorage;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -15,9 +37,50 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class BookServiceTest {
 
-    /* ------------------------------------------------------------------------------------------ */
-    /* Before starting tests, please make sure data files are empty (only containing symbol "[]") */
-    /* ------------------------------------------------------------------------------------------ */
+    @TempDir
+    Path dataDirectory;
+
+    private BookService bookService;
+
+    /***
+     * Every test starts with empty data files (only containing symbol "[]") in a temporary directory.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        Path library = Files.writeString(dataDirectory.resolve("library.json"), "[]");
+        Path reservations = Files.writeString(dataDirectory.resolve("reservations.json"), "[]");
+
+        bookService = new BookService(
+                new BookRepository(new SnapshotStorage<>(library.toString(), new BookCodec())),
+                new ReservationRepository(new SnapshotStorage<>(reservations.toString(), new ReservationCodec())));
+    }
+
+    /***
+     * Testing method findBookByGUID(),
+     * when a book is saved and then replaced by a book with its GUID - all the fields of the replacing book are returned,
+     * including non-ASCII texts, and the replaced book's values are no longer found.
+     */
+    @Test
+    void findBookByGUID_bookReplaced_returnsAllFieldsOfReplacingBook() {
+        // Arrange
+            bookService.saveDataToFile(new Book("Name", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Other", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"), "library");
+            bookService.saveDataToFile(new Book("Žalgiris 𝄞", "Ąžuolas", "Istorija", "Lietuvių", LocalDate.parse("1410-07-15"), 300, "1"), "library");
+        // Act
+            Book book = bookService.findBookByGUID("1");
+            List<Book> byOldAuthor = bookService.getBooksByParameter("author", "Author");
+            List<Book> byNewAuthor = bookService.getBooksByParameter("author", "Ąžuolas");
+        // Assert
+            assertEquals("Žalgiris 𝄞", book.getName());
+            assertEquals("Ąžuolas", book.getAuthor());
+            assertEquals("Istorija", book.getCategory());
+            assertEquals("Lietuvių", book.getLanguage());
+            assertEquals(LocalDate.parse("1410-07-15"), book.getPublicationDate());
+            assertEquals(300, book.getISBN());
+            assertEquals(List.of("2"), byOldAuthor.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("1"), byNewAuthor.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("1", "2"), bookService.getListOfBooks().stream().map(Book::getGUID).toList());
+    }
 
     /***
      * Testing method saveDataToFile(),
@@ -29,7 +92,7 @@ class BookServiceTest {
             String fileName = "bookLibrary";
             Book book = new Book("Name", "Author", "Category", "Language", LocalDate.parse("2000-10-10"), 100, "1064A");
         // Act
-            IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> BookService.saveDataToFile(book, fileName));
+            IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> bookService.saveDataToFile(book, fileName));
         // Assert
             assertEquals("Wrong file name in saveDataToFile(Object object, String fileName)", thrown.getMessage());
     }
@@ -43,7 +106,7 @@ class BookServiceTest {
         // Arrange
             String GUID = "1005T";
         // Act
-            Book book = BookService.findBookByGUID(GUID);
+            Book book = bookService.findBookByGUID(GUID);
         // Assert
             assertNull(book);
     }
@@ -58,11 +121,11 @@ class BookServiceTest {
             String expectedGUID = "1005T";
             Book book = new Book("Name", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, expectedGUID);
             // Now object is added, later it will be removed.
-            BookService.saveDataToFile(book, "library");
+            bookService.saveDataToFile(book, "library");
         // Act
-            Book bookByGUID = BookService.findBookByGUID(expectedGUID);
+            Book bookByGUID = bookService.findBookByGUID(expectedGUID);
             // After action, library can be cleared.
-            BookService.removeBooksByGUID(expectedGUID, "library");
+            bookService.removeBooksByGUID(expectedGUID, "library");
         // Assert
             assertEquals(expectedGUID, bookByGUID.getGUID());
     }
@@ -76,7 +139,7 @@ class BookServiceTest {
         // Arrange
             List<Book> list;
         // Act
-            list = BookService.getListOfBooks();
+            list = bookService.getListOfBooks();
         // Assert
             assertEquals(0, list.size());
     }
@@ -91,19 +154,19 @@ class BookServiceTest {
             List<Book> list;
             // Book1, GUID - 1
             Book book1 = new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1");
-            BookService.saveDataToFile(book1, "library");
+            bookService.saveDataToFile(book1, "library");
             // Book2, GUID - 2
             Book book2 = new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2");
-            BookService.saveDataToFile(book2, "library");
+            bookService.saveDataToFile(book2, "library");
             // Book3, GUID - 3
             Book book3 = new Book("Book3", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 300, "3");
-            BookService.saveDataToFile(book3, "library");
+            bookService.saveDataToFile(book3, "library");
         // Act
-            list = BookService.getListOfBooks();
+            list = bookService.getListOfBooks();
             // clearing library
-            BookService.removeBooksByGUID("1", "library");
-            BookService.removeBooksByGUID("2", "library");
-            BookService.removeBooksByGUID("3", "library");
+            bookService.removeBooksByGUID("1", "library");
+            bookService.removeBooksByGUID("2", "library");
+            bookService.removeBooksByGUID("3", "library");
         // Assert
             assertEquals(3, list.size());
             assertEquals(list.get(0).getGUID(), "1");
@@ -112,125 +175,113 @@ class BookServiceTest {
     }
 
     /***
-     * Testing method getListOfParameters(),
-     * when the list is empty, there will be no parameters to filterBy, so
-     * method returns empty parameter list.
+     * Testing method getParametersWithCounts(),
+     * when the library is empty, there will be no parameters to filterBy, so
+     * method returns empty parameters map.
      */
     @Test
-    void getListOfParameters_noParametersFound_returnsEmptyParametersList() {
+    void getParametersWithCounts_noParametersFound_returnsEmptyParameters() {
         // Arrange
-            List<Book> list = new ArrayList<>();
-            HashSet<String> parameters;
-            String filterBy = "Author";
+            Map<String, Integer> parameters;
+            String filterBy = "author";
         // Act
-            parameters = BookService.getListOfParameters(list, filterBy);
+            parameters = bookService.getParametersWithCounts(filterBy);
         // Assert
             assertEquals(0, parameters.size());
     }
 
     /***
-     * Testing method getListOfParameters(),
-     * when the list is not empty, there will be parameters to filterBy, so
-     * method returns parameter list.
+     * Testing method getParametersWithCounts(),
+     * when the library is not empty, there will be parameters to filterBy, so
+     * method returns parameters sorted by value with counts of their books.
      */
     @Test
-    void getListOfParameters_parametersFound_returnsParametersList() {
+    void getParametersWithCounts_parametersFound_returnsParametersWithCounts() {
         // Arrange
-            List<Book> list = new ArrayList<>();
-            list.add(new Book("Book1", "Author1", "Category1", "Language1", LocalDate.parse("2020-12-12"), 100, "1"));
-            list.add(new Book("Book2", "Author2", "Category2", "Language2", LocalDate.parse("2020-12-12"), 200, "2"));
-            list.add(new Book("Book3", "Author3", "Category3", "Language3", LocalDate.parse("2020-12-12"), 300, "3"));
-            HashSet<String> parameters;
+            bookService.saveDataToFile(new Book("Book1", "Author3", "Category1", "Language1", LocalDate.parse("2020-12-12"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author2", "Category2", "Language2", LocalDate.parse("2020-12-12"), 200, "2"), "library");
+            bookService.saveDataToFile(new Book("Book3", "Author1", "Category3", "Language3", LocalDate.parse("2020-12-12"), 300, "3"), "library");
+            Map<String, Integer> parameters;
             String filterBy = "author";
         // Act
-            parameters = BookService.getListOfParameters(list, filterBy);
-            Object[] parametersArr = parameters.toArray();
+            parameters = bookService.getParametersWithCounts(filterBy);
+            Object[] parametersArr = parameters.keySet().toArray();
         // Assert
             assertEquals(3, parameters.size());
-            assertEquals("Author3", parametersArr[0]);
+            assertEquals("Author1", parametersArr[0]);
             assertEquals("Author2", parametersArr[1]);
-            assertEquals("Author1", parametersArr[2]);
+            assertEquals("Author3", parametersArr[2]);
+            assertEquals(1, parameters.get("Author1"));
     }
 
     /***
-     * Testing method getListOfParameters(),
-     * when the list is not empty, there will be parameters to filterBy,
+     * Testing method getParametersWithCounts(),
+     * when the library is not empty, there will be parameters to filterBy,
      * and when there are 2 books with the same category (same parameters),
-     * so method returns only one parameter in the list.
+     * so method returns only one parameter with count of 2 books.
      */
     @Test
-    void getListOfParameters_sameParametersFound_returnsSameParametersList() {
+    void getParametersWithCounts_sameParametersFound_returnsOneParameterWithCount() {
         // Arrange
-            List<Book> list = new ArrayList<>();
-            list.add(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
-            list.add(new Book("Book2", "Author2", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
-            HashSet<String> parameters;
+            bookService.saveDataToFile(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author2", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"), "library");
+            Map<String, Integer> parameters;
             String filterByCategory = "category";
         // Act
-            parameters = BookService.getListOfParameters(list, filterByCategory);
-            Object[] parametersArr = parameters.toArray();
+            parameters = bookService.getParametersWithCounts(filterByCategory);
         // Assert
-            assertEquals(1, parameters.size());
-            assertEquals("Category", parametersArr[0]);
+            assertEquals(Map.of("Category", 2), parameters);
     }
 
     /***
-     * Testing method getBooksByParameters(),
-     * when books list is empty and only at conditions, when
-     * filterBy is "taken or available books", because its parameters are not
-     * related to book's details - method returns empty parameter list.
+     * Testing method getBooksByFilter(),
+     * when the library is empty - method returns empty book list.
      */
     @Test
-    void getBooksByParameters_booksListEmpty_returnsEmptyBookList() {
+    void getBooksByFilter_libraryEmpty_returnsEmptyBookList() {
         // Arrange
-            List<Book> list = new ArrayList<>();
             List<Book> listAfterFiltering;
-            String filterBy = "taken or available books";
-            String parameter = "Taken";
+            BookFilter filter = BookFilter.parse("author = Author1");
         // Act
-            listAfterFiltering = BookService.getBooksByParameters(list, filterBy, parameter);
+            listAfterFiltering = bookService.getBooksByFilter(filter);
         // Assert
             assertEquals(0, listAfterFiltering.size());
     }
 
     /***
-     * Testing method getBooksByParameters(),
-     * when books list is not empty and filters by author "Author1", when
-     * list has only 1 book of "Author1" - method returns list of books with only 1 book.
+     * Testing method getBooksByFilter(),
+     * when the library is not empty and filters by author "Author1", when
+     * library has only 1 book of "Author1" - method returns list of books with only 1 book.
      */
     @Test
-    void getBooksByParameters_listHas3Books_returnsBookList() {
+    void getBooksByFilter_libraryHas3Books_returnsBookList() {
         // Arrange
-            List<Book> list = new ArrayList<>();
-            list.add(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
-            list.add(new Book("Book2", "Author2", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
-            list.add(new Book("Book3", "Author3", "Category", "Language", LocalDate.parse("2020-12-12"), 300, "3"));
+            bookService.saveDataToFile(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author2", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"), "library");
+            bookService.saveDataToFile(new Book("Book3", "Author3", "Category", "Language", LocalDate.parse("2020-12-12"), 300, "3"), "library");
             List<Book> listAfterFiltering;
-            String filterBy = "author";
-            String parameter = "Author1";
+            BookFilter filter = BookFilter.parse("author = Author1");
         // Act
-            listAfterFiltering = BookService.getBooksByParameters(list, filterBy, parameter);
+            listAfterFiltering = bookService.getBooksByFilter(filter);
         // Assert
             assertEquals(1, listAfterFiltering.size());
     }
 
     /***
-     * Testing method getBooksByParameters(),
-     * when books list is not empty and filters by author "Author1", when
-     * list has 3 books of "Author1" - method returns list of books with all author's books.
+     * Testing method getBooksByFilter(),
+     * when the library is not empty and filters by author "Author1", when
+     * library has 3 books of "Author1" - method returns list of books with all author's books.
      */
     @Test
-    void getBooksByParameters_listHas3BooksOfSameAuthor_returnsThreeBooks() {
+    void getBooksByFilter_libraryHas3BooksOfSameAuthor_returnsThreeBooks() {
         // Arrange
-            List<Book> list = new ArrayList<>();
-            list.add(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
-            list.add(new Book("Book2", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
-            list.add(new Book("Book3", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 300, "3"));
+            bookService.saveDataToFile(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"), "library");
+            bookService.saveDataToFile(new Book("Book3", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 300, "3"), "library");
             List<Book> listAfterFiltering;
-            String filterBy = "author";
-            String parameter = "Author1";
+            BookFilter filter = BookFilter.parse("author = Author1");
         // Act
-            listAfterFiltering = BookService.getBooksByParameters(list, filterBy, parameter);
+            listAfterFiltering = bookService.getBooksByFilter(filter);
         // Assert
             assertEquals(3, listAfterFiltering.size());
     }
@@ -245,7 +296,7 @@ class BookServiceTest {
             String fileName = "bookLibrary";
             String GUID = "1064A";
         // Act
-            IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> BookService.removeBooksByGUID(GUID, fileName));
+            IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> bookService.removeBooksByGUID(GUID, fileName));
         // Assert
             assertEquals("Wrong file name in removeBooksByGUID(String GUID, String fileName)", thrown.getMessage());
     }
@@ -263,12 +314,12 @@ class BookServiceTest {
             Book book = new Book("Name", "Author", "Category", "Language", LocalDate.parse("2000-10-10"), 100, GUID);
             String wrongGUID = "1001";
             // adding book to the library
-            BookService.saveDataToFile(book, fileName);
+            bookService.saveDataToFile(book, fileName);
         // Act
-            BookService.removeBooksByGUID(wrongGUID, fileName);
-            List<Book> list = BookService.getListOfBooks();
+            bookService.removeBooksByGUID(wrongGUID, fileName);
+            List<Book> list = bookService.getListOfBooks();
             // clearing library
-            BookService.removeBooksByGUID(GUID, fileName);
+            bookService.removeBooksByGUID(GUID, fileName);
         // Assert
             assertEquals(1, list.size());
     }
@@ -284,11 +335,11 @@ class BookServiceTest {
             String fileName = "library";
             String GUID = "1064A";
             Book book = new Book("Name", "Author", "Category", "Language", LocalDate.parse("2000-10-10"), 100, GUID);
-            BookService.saveDataToFile(book, fileName);
+            bookService.saveDataToFile(book, fileName);
         // Act
-            BookService.removeBooksByGUID(GUID, fileName);
+            bookService.removeBooksByGUID(GUID, fileName);
         // Assert
-            assertEquals(0, BookService.getListOfBooks().size());
+            assertEquals(0, bookService.getListOfBooks().size());
     }
 
     /***
@@ -301,12 +352,12 @@ class BookServiceTest {
         // Arrange
             String GUID = "1064A";
             Book book = new Book("Name", "Author", "Category", "Language", LocalDate.parse("2000-10-10"), 100, GUID);
-            BookService.saveDataToFile(book, "library");
+            bookService.saveDataToFile(book, "library");
             String wrongGUID = "1001";
             BookReservation reservation = new BookReservation("Person", 10, wrongGUID);
         // Act
-            String message = BookService.takeBook(reservation);
-            BookService.removeBooksByGUID(GUID, "library");
+            String message = bookService.takeBook(reservation);
+            bookService.removeBooksByGUID(GUID, "library");
         // Assert
             assertEquals("Book does not exist. Try typing book's GUID again.", message);
     }
@@ -323,14 +374,14 @@ class BookServiceTest {
             String libraryFileName = "library";
             String GUID = "1064A";
             Book book = new Book("Name", "Author", "Category", "Language", LocalDate.parse("2000-10-10"), 100, GUID);
-            BookService.saveDataToFile(book, libraryFileName);
+            bookService.saveDataToFile(book, libraryFileName);
             BookReservation reservation = new BookReservation("Person", 10, GUID);
-            BookService.takeBook(reservation);
+            bookService.takeBook(reservation);
             BookReservation newReservation = new BookReservation("Person2", 15, GUID);
         // Act
-            String message = BookService.takeBook(newReservation);
-            BookService.removeBooksByGUID(GUID, libraryFileName);
-            BookService.removeBooksByGUID(GUID, reservationsFileName);
+            String message = bookService.takeBook(newReservation);
+            bookService.removeBooksByGUID(GUID, libraryFileName);
+            bookService.removeBooksByGUID(GUID, reservationsFileName);
         // Assert
             assertEquals("Book is already reserved.", message);
     }
@@ -347,12 +398,12 @@ class BookServiceTest {
             String libraryFileName = "library";
             String GUID = "1064A";
             Book book = new Book("Name", "Author", "Category", "Language", LocalDate.parse("2000-10-10"), 100, GUID);
-            BookService.saveDataToFile(book, libraryFileName);
+            bookService.saveDataToFile(book, libraryFileName);
             BookReservation reservation = new BookReservation("Person", 10, GUID);
         // Act
-            String message = BookService.takeBook(reservation);
-            BookService.removeBooksByGUID(GUID, libraryFileName);
-            BookService.removeBooksByGUID(GUID, reservationsFileName);
+            String message = bookService.takeBook(reservation);
+            bookService.removeBooksByGUID(GUID, libraryFileName);
+            bookService.removeBooksByGUID(GUID, reservationsFileName);
         // Assert
             assertEquals("Book has been successfully taken.", message);
     }
@@ -372,27 +423,495 @@ class BookServiceTest {
             Book book2 = new Book("Name2", "Author2", "Category", "Language", LocalDate.parse("2000-10-10"), 100, "2");
             Book book3 = new Book("Name3", "Author3", "Category", "Language", LocalDate.parse("2000-10-10"), 100, "3");
             Book book4 = new Book("Name4", "Author4", "Category", "Language", LocalDate.parse("2000-10-10"), 100, "4");
-            BookService.saveDataToFile(book1, libraryFileName);
-            BookService.saveDataToFile(book2, libraryFileName);
-            BookService.saveDataToFile(book3, libraryFileName);
-            BookService.saveDataToFile(book4, libraryFileName);
+            bookService.saveDataToFile(book1, libraryFileName);
+            bookService.saveDataToFile(book2, libraryFileName);
+            bookService.saveDataToFile(book3, libraryFileName);
+            bookService.saveDataToFile(book4, libraryFileName);
             // creating reservations
-            BookService.takeBook(new BookReservation("Person", 10, "1"));
-            BookService.takeBook(new BookReservation("Person", 15, "2"));
-            BookService.takeBook(new BookReservation("Person", 50, "3"));
+            bookService.takeBook(new BookReservation("Person", 10, "1"));
+            bookService.takeBook(new BookReservation("Person", 15, "2"));
+            bookService.takeBook(new BookReservation("Person", 50, "3"));
             // when the same person want to have his 4th book
             BookReservation reservation = new BookReservation("Person", 5, "4");
         // Act
-            String message = BookService.takeBook(reservation);
+            String message = bookService.takeBook(reservation);
             // clearing libraries
-            BookService.removeBooksByGUID("1", libraryFileName);
-            BookService.removeBooksByGUID("1", reservationsFileName);
-            BookService.removeBooksByGUID("2", libraryFileName);
-            BookService.removeBooksByGUID("2", reservationsFileName);
-            BookService.removeBooksByGUID("3", libraryFileName);
-            BookService.removeBooksByGUID("3", reservationsFileName);
-            BookService.removeBooksByGUID("4", libraryFileName);
+            bookService.removeBooksByGUID("1", libraryFileName);
+            bookService.removeBooksByGUID("1", reservationsFileName);
+            bookService.removeBooksByGUID("2", libraryFileName);
+            bookService.removeBooksByGUID("2", reservationsFileName);
+            bookService.removeBooksByGUID("3", libraryFileName);
+            bookService.removeBooksByGUID("3", reservationsFileName);
+            bookService.removeBooksByGUID("4", libraryFileName);
         // Assert
             assertEquals("You have already taken 3 books.", message);
     }
-}
\ No newline at end of file
+
+    /***
+     * Testing method takeBook(),
+     * when a person has taken 3 books and one of the reservations is removed,
+     * person's count of taken books decreases and the next book can be taken.
+     */
+    @Test
+    void takeBook_reservationRemovedAfter3Books_returnsSuccessMessage() {
+        // Arrange
+            String reservationsFileName = "reservations";
+            String libraryFileName = "library";
+            for (int i = 1; i <= 4; i++) {
+                bookService.saveDataToFile(new Book("Name" + i, "Author", "Category", "Language", LocalDate.parse("2000-10-10"), 100, String.valueOf(i)), libraryFileName);
+            }
+            bookService.takeBook(new BookReservation("Person", 10, "1"));
+            bookService.takeBook(new BookReservation("Person", 15, "2"));
+            bookService.takeBook(new BookReservation("Person", 50, "3"));
+            bookService.removeBooksByGUID("2", reservationsFileName);
+        // Act
+            String message = bookService.takeBook(new BookReservation("Person", 5, "4"));
+        // Assert
+            assertEquals("Book has been successfully taken.", message);
+    }
+
+    /***
+     * Testing methods getParametersWithCounts() and getBooksByParameter(),
+     * when books are added and one is removed - facet counts and filtered books follow the catalog.
+     */
+    @Test
+    void getParametersWithCounts_booksAddedAndRemoved_returnsCurrentCounts() {
+        // Arrange
+            bookService.saveDataToFile(new Book("Book1", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"), "library");
+            bookService.saveDataToFile(new Book("Book3", "Author2", "Category", "Language", LocalDate.parse("2020-12-12"), 300, "3"), "library");
+            bookService.removeBooksByGUID("2", "library");
+        // Act
+            Map<String, Integer> authors = bookService.getParametersWithCounts("author");
+            Map<String, Integer> ISBNs = bookService.getParametersWithCounts("ISBN");
+            List<Book> booksOfAuthor = bookService.getBooksByParameter("author", "Author1");
+        // Assert
+            assertEquals(Map.of("Author1", 1, "Author2", 1), authors);
+            assertEquals(Map.of("100", 1, "300", 1), ISBNs);
+            assertEquals(1, booksOfAuthor.size());
+            assertEquals("1", booksOfAuthor.get(0).getGUID());
+    }
+
+    /***
+     * Testing method getParametersWithCounts(),
+     * when filterBy is "taken or available books" - returns counts of taken and available books.
+     */
+    @Test
+    void getParametersWithCounts_takenOrAvailable_returnsTakenAndAvailableCounts() {
+        // Arrange
+            bookService.saveDataToFile(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"), "library");
+            bookService.takeBook(new BookReservation("Person", 10, "2"));
+        // Act
+            Map<String, Integer> parameters = bookService.getParametersWithCounts("taken or available books");
+        // Assert
+            assertEquals(Map.of("Available", 1, "Taken", 1), parameters);
+    }
+
+    /***
+     * Testing method getBooksByParameter(),
+     * when a book is taken, another one is returned and a taken book is removed from the library -
+     * Taken and Available books and their counts follow all the changes.
+     */
+    @Test
+    void getBooksByParameter_takenBooksChange_returnsTakenAndAvailableBooks() {
+        // Arrange
+            for (int i = 1; i <= 4; i++) {
+                bookService.saveDataToFile(new Book("Book" + i, "Author", "Category", "Language", LocalDate.parse("2020-12-12"), i, String.valueOf(i)), "library");
+            }
+            bookService.takeBook(new BookReservation("Person", 10, "1"));
+            bookService.takeBook(new BookReservation("Person", 10, "2"));
+            bookService.takeBook(new BookReservation("Person", 10, "3"));
+            bookService.removeBooksByGUID("2", "reservations");
+            bookService.removeBooksByGUID("3", "library");
+            bookService.removeBooksByGUID("3", "reservations");
+        // Act
+            List<Book> taken = bookService.getBooksByParameter("taken or available books", "Taken");
+            List<Book> available = bookService.getBooksByParameter("taken or available books", "Available");
+        // Assert
+            assertEquals(1, taken.size());
+            assertEquals("1", taken.get(0).getGUID());
+            assertEquals(2, available.size());
+            assertEquals(1, bookService.countTakenBooks());
+            assertEquals(2, bookService.countAvailableBooks());
+    }
+
+    /***
+     * Testing method getPageOfBooks(),
+     * when library has 5 books and page size is 2 - next cursors walk through all the books
+     * in name order and previous cursor returns to the first page.
+     */
+    @Test
+    void getPageOfBooks_fiveBooksPageSizeTwo_walksAllPages() {
+        // Arrange
+            String[] names = {"E", "C", "A", "D", "B"};
+            for (int i = 0; i < names.length; i++) {
+                bookService.saveDataToFile(new Book(names[i], "Author", "Category", "Language", LocalDate.parse("2020-12-12"), i, String.valueOf(i)), "library");
+            }
+        // Act
+            BookPage first = bookService.getPageOfBooks(BookSort.NAME, null, null, 2);
+            BookPage second = bookService.getPageOfBooks(BookSort.NAME, first.getNextCursor(), null, 2);
+            BookPage third = bookService.getPageOfBooks(BookSort.NAME, second.getNextCursor(), null, 2);
+            BookPage backToFirst = bookService.getPageOfBooks(BookSort.NAME, null, second.getPreviousCursor(), 2);
+        // Assert
+            assertEquals("A", first.getBooks().get(0).getName());
+            assertNull(first.getPreviousCursor());
+            assertEquals("C", second.getBooks().get(0).getName());
+            assertEquals(1, third.getBooks().size());
+            assertEquals("E", third.getBooks().get(0).getName());
+            assertNull(third.getNextCursor());
+            assertEquals(2, backToFirst.getBooks().size());
+            assertEquals("A", backToFirst.getBooks().get(0).getName());
+            assertNull(backToFirst.getPreviousCursor());
+            assertEquals(5, first.getTotal());
+    }
+
+    /***
+     * Testing method getPageOfBooksByParameter(),
+     * when 3 of 4 books are of the same author and page size is 2 - filtered pages have
+     * only that author's books.
+     */
+    @Test
+    void getPageOfBooksByParameter_filteredByAuthor_returnsFilteredPages() {
+        // Arrange
+            for (int i = 1; i <= 4; i++) {
+                bookService.saveDataToFile(new Book("Book" + i, i == 2 ? "Author2" : "Author1", "Category", "Language", LocalDate.parse("2020-12-12"), i, String.valueOf(i)), "library");
+            }
+        // Act
+            BookPage first = bookService.getPageOfBooksByParameter("author", "Author1", null, null, 2);
+            BookPage second = bookService.getPageOfBooksByParameter("author", "Author1", first.getNextCursor(), null, 2);
+        // Assert
+            assertEquals(3, first.getTotal());
+            assertEquals("1", first.getBooks().get(0).getGUID());
+            assertEquals("3", first.getBooks().get(1).getGUID());
+            assertEquals(1, second.getBooks().size());
+            assertEquals("4", second.getBooks().get(0).getGUID());
+            assertNull(second.getNextCursor());
+    }
+
+    /***
+     * Testing method getCatalogVersion(),
+     * when a book is added, taken and removed - every change gives a new version,
+     * and reading the list of books keeps the same version.
+     */
+    @Test
+    void getCatalogVersion_changesOfBooks_incrementsVersion() {
+        // Arrange
+            long initial = bookService.getCatalogVersion();
+        // Act
+            bookService.saveDataToFile(new Book("Book", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            long added = bookService.getCatalogVersion();
+            bookService.takeBook(new BookReservation("Person", 10, "1"));
+            long taken = bookService.getCatalogVersion();
+            bookService.getPageOfBooks(BookSort.GUID, null, null, 10);
+            long read = bookService.getCatalogVersion();
+            bookService.removeBooksByGUID("1", "library");
+            long removed = bookService.getCatalogVersion();
+        // Assert
+            assertTrue(initial < added);
+            assertTrue(added < taken);
+            assertEquals(taken, read);
+            assertTrue(read < removed);
+            assertEquals(removed, bookService.getCatalog().getBooksVersion());
+    }
+
+    /***
+     * Testing method getCatalog(),
+     * when a book is taken and returned - the catalog's version changes, but the books' version stays,
+     * and when a book is added - both of them change.
+     */
+    @Test
+    void getCatalog_bookTakenAndReturned_keepsBooksVersion() {
+        // Arrange
+            bookService.saveDataToFile(new Book("Book", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            CatalogSnapshot added = bookService.getCatalog();
+        // Act
+            bookService.takeBook(new BookReservation("Person", 10, "1"));
+            bookService.removeBooksByGUID("1", "reservations");
+            CatalogSnapshot returned = bookService.getCatalog();
+            bookService.saveDataToFile(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 2, "2"), "library");
+            CatalogSnapshot changed = bookService.getCatalog();
+        // Assert
+            assertTrue(added.getVersion() < returned.getVersion());
+            assertEquals(added.getBooksVersion(), returned.getBooksVersion());
+            assertEquals(changed.getVersion(), changed.getBooksVersion());
+            assertTrue(returned.getBooksVersion() < changed.getBooksVersion());
+    }
+
+    /***
+     * Testing method getCatalog(),
+     * when books are added, taken and removed after a snapshot is taken - the snapshot keeps its version,
+     * books and counts, and the next snapshot has all the changes.
+     */
+    @Test
+    void getCatalog_changesAfterSnapshot_snapshotStaysUnchanged() {
+        // Arrange
+            for (int i = 1; i <= 3; i++) {
+                bookService.saveDataToFile(new Book("Book" + i, "Author", "Category", "Language", LocalDate.parse("2020-12-12"), i, String.valueOf(i)), "library");
+            }
+            CatalogSnapshot snapshot = bookService.getCatalog();
+        // Act
+            bookService.saveDataToFile(new Book("Book4", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 4, "4"), "library");
+            bookService.takeBook(new BookReservation("Person", 10, "1"));
+            bookService.removeBooksByGUID("2", "library");
+            CatalogSnapshot current = bookService.getCatalog();
+        // Assert
+            assertEquals(3, snapshot.count());
+            assertEquals(0, snapshot.countTaken());
+            assertNotNull(snapshot.findByGUID("2"));
+            assertEquals(Map.of("Author", 3), snapshot.countByFacet(BookFacet.AUTHOR));
+            assertEquals(3, bookService.getPageOfBooks(snapshot, BookSort.GUID, null, null, 10).getBooks().size());
+            assertEquals(3, current.count());
+            assertEquals(1, current.countTaken());
+            assertNull(current.findByGUID("2"));
+            assertTrue(snapshot.getVersion() < current.getVersion());
+    }
+
+    /***
+     * Testing method addBooks(),
+     * when a batch has a new book, a book already in the library, a duplicate GUID in the batch,
+     * a wrong ISBN and a missing field - only the new book is accepted and saved.
+     */
+    @Test
+    void addBooks_mixedBatch_acceptsOnlyValidNewBooks() {
+        // Arrange
+            bookService.saveDataToFile(new Book("Book", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            List<BookDetails> batch = List.of(
+                    new BookDetails("Book2", "Author", "Category", "Language", "2020-12-12", "2", "2"),
+                    new BookDetails("Book1", "Author", "Category", "Language", "2020-12-12", "1", "1"),
+                    new BookDetails("Book2", "Author", "Category", "Language", "2020-12-12", "2", "2"),
+                    new BookDetails("Book3", "Author", "Category", "Language", "2020-12-12", "ISBN", "3"),
+                    new BookDetails("Book4", "", "Category", "Language", "2020-12-12", "4", "4"));
+        // Act
+            List<BatchItemResult> results = bookService.addBooks(batch);
+        // Assert
+            assertEquals(5, results.size());
+            assertTrue(results.get(0).isAccepted());
+            assertFalse(results.get(1).isAccepted());
+            assertFalse(results.get(2).isAccepted());
+            assertFalse(results.get(3).isAccepted());
+            assertFalse(results.get(4).isAccepted());
+            assertEquals(2, bookService.getListOfBooks().size());
+            assertNotNull(bookService.findBookByGUID("2"));
+    }
+
+    /***
+     * Testing method addBooks(),
+     * when a batch has a null element - the element is rejected and the other books are saved.
+     */
+    @Test
+    void addBooks_batchHasNull_rejectsNullElement() {
+        // Arrange
+            List<BookDetails> batch = Arrays.asList(
+                    null,
+                    new BookDetails("Book1", "Author", "Category", "Language", "2020-12-12", "1", "1"));
+        // Act
+            List<BatchItemResult> results = bookService.addBooks(batch);
+        // Assert
+            assertEquals(2, results.size());
+            assertFalse(results.get(0).isAccepted());
+            assertNull(results.get(0).getGUID());
+            assertTrue(results.get(1).isAccepted());
+            assertNotNull(bookService.findBookByGUID("1"));
+    }
+
+    /***
+     * Testing method getBooksByFilter(),
+     * when the filter combines fields with AND, OR and ranges - only the matching books are returned in GUID order,
+     * and a filter, which is not valid, throws an exception.
+     */
+    @Test
+    void getBooksByFilter_severalFields_returnsMatchingBooks() {
+        // Arrange
+            bookService.saveDataToFile(new Book("Book1", "Author1", "Novel", "English", LocalDate.parse("1985-01-01"), 100, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author1", "Novel", "Lithuanian", LocalDate.parse("1995-01-01"), 200, "2"), "library");
+            bookService.saveDataToFile(new Book("Book3", "Author1", "Poetry", "English", LocalDate.parse("2005-01-01"), 300, "3"), "library");
+            bookService.saveDataToFile(new Book("Book 4", "Author2", "Novel", "English", LocalDate.parse("2015-01-01"), 400, "4"), "library");
+        // Act
+            List<Book> byAuthorAndDate = bookService.getBooksByFilter(BookFilter.parse("author = Author1 AND publicationDate > 1990-12-31"));
+            List<Book> byLanguageOrISBN = bookService.getBooksByFilter(BookFilter.parse("language=Lithuanian OR (ISBN >= 300 AND ISBN < 400)"));
+            List<Book> byQuotedName = bookService.getBooksByFilter(BookFilter.parse("name = \"Book 4\" OR category = Poetry"));
+            IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> BookFilter.parse("category > Novel"));
+        // Assert
+            assertEquals(List.of("2", "3"), byAuthorAndDate.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("2", "3"), byLanguageOrISBN.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("3", "4"), byQuotedName.stream().map(Book::getGUID).toList());
+            assertEquals("Wrong filter \"category > Novel\": category can only be compared with =", thrown.getMessage());
+    }
+
+    /***
+     * Testing method getBooksByFilter(),
+     * when the library has a book with the smallest int ISBN and a book without ISBN - the smallest ISBN is kept,
+     * found by ranges and by value, and the book without ISBN is not matched by any of them.
+     */
+    @Test
+    void getBooksByFilter_smallestISBNAndMissingISBN_keepsThemApart() throws IOException {
+        // Arrange
+            Path library = Files.writeString(dataDirectory.resolve("library.json"),
+                    "[{\"Name\":\"Book1\",\"Author\":\"Author1\",\"Category\":\"Novel\",\"Language\":\"English\"," +
+                    "\"Publication date\":\"1985-01-01\",\"ISBN\":" + Integer.MIN_VALUE + ",\"GUID\":\"1\"}," +
+                    "{\"Name\":\"Book2\",\"Author\":\"Author1\",\"Category\":\"Novel\",\"Language\":\"English\"," +
+                    "\"Publication date\":\"1995-01-01\",\"GUID\":\"2\"}]");
+            bookService = new BookService(
+                    new BookRepository(new SnapshotStorage<>(library.toString(), new BookCodec())),
+                    new ReservationRepository(new SnapshotStorage<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec())));
+        // Act
+            Book smallest = bookService.findBookByGUID("1");
+            Book missing = bookService.findBookByGUID("2");
+            List<Book> byRange = bookService.getBooksByFilter(BookFilter.parse("ISBN < 0"));
+            List<Book> byValue = bookService.getBooksByFilter(BookFilter.parse("ISBN = " + Integer.MIN_VALUE));
+        // Assert
+            assertEquals(Integer.MIN_VALUE, smallest.getISBN());
+            assertNull(missing.getISBN());
+            assertEquals(List.of("1"), byRange.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("1"), byValue.stream().map(Book::getGUID).toList());
+    }
+
+    /***
+     * Testing method searchBooks(),
+     * when a word is typed partly and without accents - books with the word are found, whole words
+     * in the name go first, and a removed book is not found anymore.
+     */
+    @Test
+    void searchBooks_prefixOfWord_findsRankedBooks() {
+        // Arrange
+            bookService.saveDataToFile(new Book("The Great Gatsby", "F. Scott Fitzgerald", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            bookService.saveDataToFile(new Book("Gatsby", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 2, "2"), "library");
+            bookService.saveDataToFile(new Book("Žvaigždė", "Gatsby Fan", "Category", "Language", LocalDate.parse("2020-12-12"), 3, "3"), "library");
+            bookService.saveDataToFile(new Book("Other", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 4, "4"), "library");
+        // Act
+            List<Book> byPrefix = bookService.searchBooks("gats", 10);
+            List<Book> byTwoWords = bookService.searchBooks("great gats", 10);
+            List<Book> withoutAccents = bookService.searchBooks("zvaigzde", 10);
+            bookService.removeBooksByGUID("2", "library");
+            List<Book> afterRemoval = bookService.searchBooks("gatsby", 10);
+        // Assert
+            assertEquals(List.of("2", "1", "3"), byPrefix.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("1"), byTwoWords.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("3"), withoutAccents.stream().map(Book::getGUID).toList());
+            assertEquals(List.of("1", "3"), afterRemoval.stream().map(Book::getGUID).toList());
+    }
+
+    /***
+     * Testing method suggestSearchWords(),
+     * when the last word is typed partly - words starting with it are suggested, most common first.
+     */
+    @Test
+    void suggestSearchWords_partlyTypedWord_suggestsMostCommonFirst() {
+        // Arrange
+            bookService.saveDataToFile(new Book("Harry Potter", "J. K. Rowling", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            bookService.saveDataToFile(new Book("Harry Potter 2", "J. K. Rowling", "Category", "Language", LocalDate.parse("2020-12-12"), 2, "2"), "library");
+            bookService.saveDataToFile(new Book("Hard Times", "Charles Dickens", "Category", "Language", LocalDate.parse("2020-12-12"), 3, "3"), "library");
+        // Act
+            List<String> suggestions = bookService.suggestSearchWords("the ha", 10);
+        // Assert
+            assertEquals(List.of("harry", "hard"), suggestions);
+    }
+
+    /***
+     * Testing method expireReservations(),
+     * when one reservation has ended and another ends in 14 days - only the ended one expires and its book is available,
+     * its removal is in the reservations' file, and the other reservation expires 14 days later.
+     */
+    @Test
+    void expireReservations_endedReservation_returnsBookToLibrary() {
+        // Arrange
+            Instant now = Instant.now();
+            bookService.saveDataToFile(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            bookService.saveDataToFile(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 2, "2"), "library");
+            bookService.takeBook(new BookReservation("Person", 14, "1", now.minus(Duration.ofDays(15))));
+            bookService.takeBook(new BookReservation("Person", 14, "2", now));
+        // Act
+            int expired = bookService.expireReservations(now);
+            ReservationRepository reloaded = new ReservationRepository(
+                    new SnapshotStorage<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec()));
+            int expiredLater = bookService.expireReservations(now.plus(Duration.ofDays(14)).plusSeconds(60));
+        // Assert
+            assertEquals(1, expired);
+            assertEquals(1, reloaded.findAll().size());
+            assertEquals("2", reloaded.findAll().get(0).getBookGUID());
+            assertEquals(now, reloaded.findAll().get(0).getTakenAt());
+            assertEquals(1, expiredLater);
+            assertEquals(2, bookService.countAvailableBooks());
+            assertEquals("Book has been successfully taken.", bookService.takeBook(new BookReservation("Person", 14, "1")));
+    }
+
+    /***
+     * Testing method reloadLibrary(),
+     * when the library file is changed by another process (a book changed, one removed and a reserved one added) -
+     * the changes are published in one version, the reserved book is taken, and an unchanged file is not reloaded.
+     */
+    @Test
+    void reloadLibrary_fileChangedByAnotherProcess_publishesChangesInOneVersion() throws IOException {
+        // Arrange
+            bookService.saveDataToFile(new Book("Book 1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            bookService.saveDataToFile(new Book("Book 2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 2, "2"), "library");
+            bookService.saveDataToFile(new Book("Book 3", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 3, "3"), "library");
+            bookService.saveDataToFile(new BookReservation("Person", 14, "4"), "reservations");
+            long version = bookService.getCatalogVersion();
+            Files.writeString(dataDirectory.resolve("library.json"), """
+                    [{"Name":"Book 1","Author":"Author","Category":"Category","Language":"Language","Publication date":"2020-12-12","ISBN":1,"GUID":"1"},
+                     {"Name":"Restored","Author":"Author","Category":"Category","Language":"Language","Publication date":"2020-12-12","ISBN":2,"GUID":"2"},
+                     {"Name":"Book 4","Author":"Author","Category":"Category","Language":"Language","Publication date":"2020-12-12","ISBN":4,"GUID":"4"}]
+                    """);
+        // Act
+            boolean reloaded = bookService.reloadLibrary();
+            boolean reloadedAgain = bookService.reloadLibrary();
+        // Assert
+            assertTrue(reloaded);
+            assertFalse(reloadedAgain);
+            assertEquals(version + 1, bookService.getCatalogVersion());
+            assertEquals(List.of("1", "2", "4"), bookService.getListOfBooks().stream().map(Book::getGUID).toList());
+            assertEquals("Restored", bookService.findBookByGUID("2").getName());
+            assertEquals(List.of("2"), bookService.getBooksByParameter("name", "Restored").stream().map(Book::getGUID).toList());
+            assertNull(bookService.findBookByGUID("3"));
+            assertEquals(1, bookService.countTakenBooks());
+    }
+
+    /***
+     * Testing method reloadReservations(),
+     * when the reservations file is cut off by another process - it is not reloaded and the reservations are kept,
+     * and when a whole file without the reservation is written - the reservation is removed and its book is available.
+     */
+    @Test
+    void reloadReservations_fileChangedByAnotherProcess_keepsReservationsUntilFileIsWhole() throws IOException {
+        // Arrange
+            bookService.saveDataToFile(new Book("Book 1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 1, "1"), "library");
+            bookService.takeBook(new BookReservation("Person", 14, "1"));
+            Path reservations = dataDirectory.resolve("reservations.json");
+        // Act
+            Files.writeString(reservations, "[{\"Person\":\"Other\",\"Period\":14,");
+            assertThrows(IOException.class, () -> bookService.reloadReservations());
+            int takenAfterCutOff = bookService.countTakenBooks();
+            Files.writeString(reservations, "[]");
+            boolean reloaded = bookService.reloadReservations();
+        // Assert
+            assertEquals(1, takenAfterCutOff);
+            assertTrue(reloaded);
+            assertEquals(0, bookService.countTakenBooks());
+            assertEquals("Book has been successfully taken.", bookService.takeBook(new BookReservation("Other", 14, "1")));
+    }
+
+    /***
+     * Testing method reload() of ReservationRepository,
+     * when another process writes the same reservations file without checkout instants again -
+     * nothing is reloaded and the reservation keeps its checkout instant, so its expiry is not reset.
+     */
+    @Test
+    void reload_legacyFileWrittenAgainUnchanged_changesNothing() throws IOException {
+        // Arrange
+            String legacy = "[{\"Person\":\"Person\",\"Period\":14,\"GUID\":\"1\"}]";
+            Path reservations = Files.writeString(dataDirectory.resolve("reservations.json"), legacy);
+            ReservationRepository repository = new ReservationRepository(new SnapshotStorage<>(reservations.toString(), new ReservationCodec()));
+            Instant takenAt = repository.findByGUID("1").getTakenAt();
+            long version = repository.getVersion();
+        // Act
+            Path rewritten = Files.writeString(dataDirectory.resolve("reservations.json.new"), legacy);
+            Files.move(rewritten, reservations, StandardCopyOption.REPLACE_EXISTING);
+            Set<String> changed = repository.reload();
+        // Assert
+            assertEquals(Set.of(), changed);
+            assertEquals(takenAt, repository.findByGUID("1").getTakenAt());
+            assertEquals(version, repository.getVersion());
+    }
+}
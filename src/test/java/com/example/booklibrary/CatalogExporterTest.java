@@ -0,0 +1,125 @@
+package com.example.booklibrary;
+import com.example.booklibrary.models.BookDetails;
+import com.example.booklibrary.models.ImportReport;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.repositories.ReservationRepository;
+import com.example.booklibrary.services.BookImporter;
+import com.example.booklibrary.services.BookService;
+import com.example.booklibrary.services.CatalogExporter;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.ExportFormat;
+import com.example.booklibrary.storage.ImportFormat;
+import com.example.booklibrary.storage.ReservationCodec;
+import com.example.booklibrary.storage.SnapshotStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Tests class for testing CatalogExporter class methods.
+ */
+class CatalogExporterTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    private Path library;
+
+    private BookService bookService;
+
+    private CatalogExporter catalogExporter;
+
+    /***
+     * Every test starts with a catalog of 2 books, one of them has a comma and quotes in its name.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        library = Files.writeString(dataDirectory.resolve("library.json"), "[]");
+        Path reservations = Files.writeString(dataDirectory.resolve("reservations.json"), "[]");
+        BookRepository bookRepository = new BookRepository(new SnapshotStorage<>(library.toString(), new BookCodec()));
+        ReservationRepository reservationRepository = new ReservationRepository(new SnapshotStorage<>(reservations.toString(), new ReservationCodec()));
+
+        bookService = new BookService(bookRepository, reservationRepository);
+        catalogExporter = new CatalogExporter(bookRepository, reservationRepository);
+        bookService.addBooks(List.of(
+                new BookDetails("The \"Book\", part 1", "Author", "Category", "Language", "2020-12-12", "1", "1"),
+                new BookDetails("Book 2", "Author", "Category", "Language", "2021-01-01", "2", "2")));
+    }
+
+    /***
+     * Testing method exportBooks(),
+     * when the books are exported to CSV and NDJSON - both exports are imported back into an empty catalog
+     * with the same books.
+     */
+    @Test
+    void exportBooks_csvAndNdjson_areImportedBack() throws IOException {
+        // Arrange
+            ByteArrayOutputStream csv = new ByteArrayOutputStream();
+            ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        // Act
+            catalogExporter.exportBooks(ExportFormat.CSV, csv);
+            catalogExporter.exportBooks(ExportFormat.NDJSON, ndjson);
+            ImportReport csvReport = importIntoEmptyCatalog("csv", csv, ImportFormat.CSV);
+            ImportReport ndjsonReport = importIntoEmptyCatalog("ndjson", ndjson, ImportFormat.NDJSON);
+        // Assert
+            assertTrue(csv.toString(StandardCharsets.UTF_8).startsWith("Name,Author,Category,Language,Publication date,ISBN,GUID\n\"The \"\"Book\"\", part 1\","));
+            assertEquals(2, ndjson.toString(StandardCharsets.UTF_8).lines().count());
+            assertEquals(2, csvReport.getAccepted());
+            assertEquals(2, ndjsonReport.getAccepted());
+            assertEquals(0, csvReport.getRejected() + ndjsonReport.getRejected());
+    }
+
+    /***
+     * Testing method exportBooks(),
+     * when a book's name has a line break - the CSV export quotes it and is imported back with the same name.
+     */
+    @Test
+    void exportBooks_csvNameWithLineBreak_isImportedBack() throws IOException {
+        // Arrange
+            bookService.addBooks(List.of(new BookDetails("Two\nlines", "Author", "Category", "Language", "2022-02-02", "3", "3")));
+            ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        // Act
+            catalogExporter.exportBooks(ExportFormat.CSV, csv);
+            ImportReport report = importIntoEmptyCatalog("csv", csv, ImportFormat.CSV);
+        // Assert
+            assertTrue(csv.toString(StandardCharsets.UTF_8).contains("\"Two\nlines\""));
+            assertEquals(3, report.getAccepted());
+            assertEquals(0, report.getRejected());
+    }
+
+    /***
+     * Testing method exportBooks(),
+     * when all the books are written to the library file - JSON export is the library file as it is.
+     */
+    @Test
+    void exportBooks_json_sendsLibraryFile() throws IOException {
+        // Arrange
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+        // Act
+            catalogExporter.exportBooks(ExportFormat.JSON, json);
+        // Assert
+            assertArrayEquals(Files.readAllBytes(library), json.toByteArray());
+            assertEquals("The \"Book\", part 1", bookService.findBookByGUID("1").getName());
+    }
+
+    private ImportReport importIntoEmptyCatalog(String name, ByteArrayOutputStream export, ImportFormat format) throws IOException {
+        Path copyLibrary = Files.writeString(dataDirectory.resolve(name + "-library.json"), "[]");
+        Path copyReservations = Files.writeString(dataDirectory.resolve(name + "-reservations.json"), "[]");
+        BookService copy = new BookService(
+                new BookRepository(new SnapshotStorage<>(copyLibrary.toString(), new BookCodec())),
+                new ReservationRepository(new SnapshotStorage<>(copyReservations.toString(), new ReservationCodec())));
+        ImportReport report = new BookImporter(copy, 10, 1, 1).importBooks(new ByteArrayInputStream(export.toByteArray()), format);
+
+        assertEquals("The \"Book\", part 1", copy.findBookByGUID("1").getName());
+        return report;
+    }
+}
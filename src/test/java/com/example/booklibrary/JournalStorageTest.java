@@ -0,0 +1,217 @@
+package com.example.booklibrary;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.repositories.BookRepository;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.Durability;
+import com.example.booklibrary.storage.JournalStorage;
+import com.example.booklibrary.storage.JsonRecordFile;
+import com.example.booklibrary.storage.SnapshotStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Tests class for testing JournalStorage and failures of storages through the BookRepository.
+ */
+class JournalStorageTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    private Path library;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        library = Files.writeString(dataDirectory.resolve("library.json"), "[]");
+    }
+
+    /***
+     * Testing journal replay,
+     * when books are added and removed - new repository replays the snapshot and the journal,
+     * and the data file itself is not rewritten.
+     */
+    @Test
+    void load_journalHasMutations_replaysSnapshotAndJournal() throws IOException {
+        // Arrange
+            BookRepository repository = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec()));
+            repository.save(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
+            repository.save(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+            repository.removeByGUID("1");
+        // Act
+            List<Book> books = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertEquals("[]", Files.readString(library));
+            assertEquals(1, books.size());
+            assertEquals("2", books.get(0).getGUID());
+    }
+
+    /***
+     * Testing compaction,
+     * when journal is compacted - snapshot has all the books and journal is gone.
+     */
+    @Test
+    void compact_journalHasMutations_writesSnapshotAndRemovesJournal() {
+        // Arrange
+            BookRepository repository = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec()));
+            repository.save(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
+            repository.save(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+        // Act
+            repository.compact();
+            repository.save(new Book("Book3", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 300, "3"));
+            List<Book> books = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertFalse(Files.exists(dataDirectory.resolve("library.json.journal.compacting")));
+            assertEquals(3, books.size());
+    }
+
+    /***
+     * Testing journal replay,
+     * when compaction was interrupted before the snapshot was written - moved journal is replayed too.
+     */
+    @Test
+    void load_compactionInterrupted_replaysMovedJournal() {
+        // Arrange
+            JournalStorage<Book> storage = new JournalStorage<>(library.toString(), new BookCodec());
+            BookRepository repository = new BookRepository(storage);
+            repository.save(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
+            storage.startCompaction();
+            repository.save(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+        // Act
+            List<Book> books = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertEquals(2, books.size());
+    }
+
+    /***
+     * Testing journal replay,
+     * when the journal ends with a torn line and a book is saved after it -
+     * the torn line is skipped and the book is replayed.
+     */
+    @Test
+    void load_bookSavedAfterTornLine_replaysBook() throws IOException {
+        // Arrange
+            Path journal = dataDirectory.resolve("library.json.journal");
+            Files.writeString(journal, "{\"Op\":\"add\",\"Record\":{\"GUID\":\"1\",\"Na");
+            BookRepository repository = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec()));
+            repository.save(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+        // Act
+            List<Book> books = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertEquals(1, books.size());
+            assertEquals("2", books.get(0).getGUID());
+    }
+
+    /***
+     * Testing "group" durability,
+     * when 8 threads save books concurrently - every save returns after its book is committed,
+     * so a new repository finds all the books.
+     */
+    @Test
+    void save_groupDurabilityConcurrentWriters_allBooksCommitted() throws InterruptedException {
+        // Arrange
+            JournalStorage<Book> storage = new JournalStorage<>(new JsonRecordFile<>(library.toString(), new BookCodec()), new BookCodec(), Durability.GROUP, 2);
+            BookRepository repository = new BookRepository(storage);
+            List<Thread> writers = new ArrayList<>();
+
+            for(int i = 0; i < 8; i++){
+                int writer = i;
+                writers.add(new Thread(() -> {
+                    for(int j = 0; j < 50; j++){
+                        String GUID = writer + "-" + j;
+                        repository.save(new Book("Book" + GUID, "Author", "Category", "Language", LocalDate.parse("2020-12-12"), j, GUID));
+                    }
+                }));
+            }
+        // Act
+            writers.forEach(Thread::start);
+
+            for(Thread writer : writers){
+                writer.join();
+            }
+
+            List<Book> books = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertEquals(400, books.size());
+    }
+
+    /***
+     * Testing "async" durability,
+     * when the storage is closed - appends, which were still waiting for the background thread, are written.
+     */
+    @Test
+    void close_asyncDurability_writesPendingAppends() {
+        // Arrange
+            JournalStorage<Book> storage = new JournalStorage<>(new JsonRecordFile<>(library.toString(), new BookCodec()), new BookCodec(), Durability.ASYNC, 60_000);
+            BookRepository repository = new BookRepository(storage);
+            repository.save(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1"));
+            repository.save(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+        // Act
+            storage.close();
+            List<Book> books = new BookRepository(new JournalStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertEquals(2, books.size());
+    }
+
+    /***
+     * Testing "group" durability of SnapshotStorage,
+     * when the data file cannot be written - save throws instead of reporting the book as committed,
+     * and the next write, after the file can be written again, has the book.
+     */
+    @Test
+    void save_groupDurabilityWriteFails_throwsAndWritesBookLater() throws IOException {
+        // Arrange
+            BookRepository repository = new BookRepository(new SnapshotStorage<>(new JsonRecordFile<>(library.toString(), new BookCodec()), Durability.GROUP, 0));
+            Path temporary = Files.createDirectory(dataDirectory.resolve("library.json.tmp"));
+            Files.writeString(temporary.resolve("blocker"), "");
+        // Act
+            assertThrows(UncheckedIOException.class, () -> repository.save(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1")));
+            String afterFailure = Files.readString(library);
+            Files.delete(temporary.resolve("blocker"));
+            Files.delete(temporary);
+            repository.save(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+            List<Book> books = new BookRepository(new SnapshotStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertEquals("[]", afterFailure);
+            assertEquals(2, books.size());
+    }
+
+    /***
+     * Testing "sync" durability of SnapshotStorage,
+     * when the write of the data file fails - save throws, the book is not visible in the repository,
+     * and the next write does not have it.
+     */
+    @Test
+    void save_syncDurabilityWriteFails_takesBookBack() {
+        // Arrange
+            boolean[] failing = {true};
+            JsonRecordFile<Book> file = new JsonRecordFile<>(library.toString(), new BookCodec()) {
+                @Override
+                public void write(Iterable<Book> records, Path location) {
+                    if(failing[0])
+                        throw new IllegalStateException("Disk is full");
+
+                    super.write(records, location);
+                }
+            };
+            BookRepository repository = new BookRepository(new SnapshotStorage<>(file));
+        // Act
+            assertThrows(IllegalStateException.class, () -> repository.save(new Book("Book1", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 100, "1")));
+            Book afterFailure = repository.findByGUID("1");
+            failing[0] = false;
+            repository.save(new Book("Book2", "Author", "Category", "Language", LocalDate.parse("2020-12-12"), 200, "2"));
+            List<Book> books = new BookRepository(new SnapshotStorage<>(library.toString(), new BookCodec())).findAll();
+        // Assert
+            assertNull(afterFailure);
+            assertEquals(1, repository.count());
+            assertEquals(List.of("2"), books.stream().map(Book::getGUID).toList());
+    }
+}
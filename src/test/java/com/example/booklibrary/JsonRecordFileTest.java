@@ -0,0 +1,130 @@
+package com.example.booklibrary;
+import com.example.booklibrary.models.Book;
+import com.example.booklibrary.models.BookReservation;
+import com.example.booklibrary.storage.BookCodec;
+import com.example.booklibrary.storage.JsonRecordFile;
+import com.example.booklibrary.storage.ReservationCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Tests class for testing streaming JsonRecordFile with book and reservation codecs.
+ */
+class JsonRecordFileTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    /***
+     * Testing method iterator(),
+     * when data file has fields in any order, unknown fields and ISBN as a string -
+     * iterator reads books one by one.
+     */
+    @Test
+    void iterator_dataFileHasBooks_readsBooksOneByOne() throws IOException {
+        // Arrange
+            Path location = Files.writeString(dataDirectory.resolve("library.json"),
+                    "[{\"GUID\":\"1\",\"ISBN\":100,\"Name\":\"Book1\",\"Author\":\"Author1\",\"Category\":\"Category\"," +
+                    "\"Language\":\"Language\",\"Publication date\":\"2020-12-12\",\"Unknown\":{\"a\":[1]}}," +
+                    "{\"Name\":\"Book2\",\"Author\":\"Author2\",\"Category\":\"Category\",\"Language\":\"Language\"," +
+                    "\"Publication date\":\"2000-01-01\",\"ISBN\":\"200\",\"GUID\":\"2\"}]");
+            JsonRecordFile<Book> file = new JsonRecordFile<>(location.toString(), new BookCodec());
+            List<Book> books = new ArrayList<>();
+        // Act
+            try (JsonRecordFile.RecordIterator<Book> iterator = file.iterator()) {
+                iterator.forEachRemaining(books::add);
+            }
+        // Assert
+            assertEquals(2, books.size());
+            assertEquals("Book1", books.get(0).getName());
+            assertEquals(100, books.get(0).getISBN());
+            assertEquals(LocalDate.parse("2000-01-01"), books.get(1).getPublicationDate());
+            assertEquals(200, books.get(1).getISBN());
+    }
+
+    /***
+     * Testing method write(),
+     * when reservations are written and read again - all the values remain the same.
+     */
+    @Test
+    void write_reservations_readsTheSameValues() {
+        // Arrange
+            JsonRecordFile<BookReservation> file = new JsonRecordFile<>(dataDirectory.resolve("reservations.json").toString(), new ReservationCodec());
+            List<BookReservation> reservations = List.of(new BookReservation("Person1", 10, "1"), new BookReservation("Person2", 60, "2"));
+            List<BookReservation> readReservations = new ArrayList<>();
+        // Act
+            file.write(reservations);
+            file.forEach(readReservations::add);
+        // Assert
+            assertEquals(2, readReservations.size());
+            assertEquals("Person2", readReservations.get(1).getPerson());
+            assertEquals(60, readReservations.get(1).getPeriod());
+            assertEquals("2", readReservations.get(1).getBookGUID());
+    }
+
+    /***
+     * Testing method forEach(),
+     * when data file does not exist - no records are read.
+     */
+    @Test
+    void forEach_dataFileDoesNotExist_readsNothing() {
+        // Arrange
+            JsonRecordFile<Book> file = new JsonRecordFile<>(dataDirectory.resolve("missing.json").toString(), new BookCodec());
+            List<Book> books = new ArrayList<>();
+        // Act
+            file.forEach(books::add);
+        // Assert
+            assertEquals(0, books.size());
+    }
+
+    /***
+     * Testing method write(),
+     * when a book has no ISBN and no publication date - the fields are left out and read back as missing.
+     */
+    @Test
+    void write_bookWithoutISBNAndDate_readsMissingValues() throws IOException {
+        // Arrange
+            JsonRecordFile<Book> file = new JsonRecordFile<>(dataDirectory.resolve("library.json").toString(), new BookCodec());
+            List<Book> books = new ArrayList<>();
+        // Act
+            file.write(List.of(new Book("Book1", "Author1", "Category", "Language", null, null, "1")));
+            file.forEach(books::add);
+        // Assert
+            assertEquals(1, books.size());
+            assertEquals("Book1", books.get(0).getName());
+            assertNull(books.get(0).getISBN());
+            assertNull(books.get(0).getPublicationDate());
+            assertFalse(Files.readString(file.getLocation()).contains("ISBN"));
+    }
+
+    /***
+     * Testing method forEach(),
+     * when data file is cut in the middle or has a wrong value - reading fails instead of giving the books before it.
+     */
+    @Test
+    void forEach_dataFileIsCorrupt_throws() throws IOException {
+        // Arrange
+            String book = "{\"Name\":\"Book1\",\"Author\":\"Author1\",\"Category\":\"Category\",\"Language\":\"Language\"," +
+                    "\"Publication date\":\"2020-12-12\",\"ISBN\":100,\"GUID\":\"1\"}";
+            Path truncated = Files.writeString(dataDirectory.resolve("truncated.json"), "[" + book + ",{\"Name\":\"Bo");
+            Path wrongDate = Files.writeString(dataDirectory.resolve("wrong.json"), "[" + book + ",{\"Publication date\":\"12/12/2020\"}]");
+            List<Book> books = new ArrayList<>();
+        // Act
+            UncheckedIOException truncatedThrown = assertThrows(UncheckedIOException.class,
+                    () -> new JsonRecordFile<>(truncated.toString(), new BookCodec()).forEach(books::add));
+            UncheckedIOException wrongDateThrown = assertThrows(UncheckedIOException.class,
+                    () -> new JsonRecordFile<>(wrongDate.toString(), new BookCodec()).forEach(books::add));
+        // Assert
+            assertTrue(truncatedThrown.getMessage().contains("truncated.json"));
+            assertTrue(wrongDateThrown.getMessage().contains("wrong.json"));
+    }
+}
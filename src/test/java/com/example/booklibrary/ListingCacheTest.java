@@ -0,0 +1,79 @@
+package com.example.booklibrary;
+import com.example.booklibrary.controllers.ListingCache;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/***
+ * Tests class for testing ListingCache of rendered /listbooks pages.
+ */
+class ListingCacheTest {
+
+    /***
+     * Testing method get(),
+     * when the same page of the same version is requested again - it is rendered once,
+     * and when the catalog's version changes - the page is rendered again and older versions are not cached any more.
+     */
+    @Test
+    void get_catalogVersionChanges_rendersPageAgain() {
+        // Arrange
+            ListingCache cache = new ListingCache(1000);
+            AtomicInteger renders = new AtomicInteger();
+            List<?> query = List.of("author", "Author1");
+        // Act
+            String first = cache.get(1, query, () -> "page " + renders.incrementAndGet());
+            String second = cache.get(1, query, () -> "page " + renders.incrementAndGet());
+            String changed = cache.get(2, query, () -> "page " + renders.incrementAndGet());
+            String older = cache.get(1, query, () -> "page " + renders.incrementAndGet());
+        // Assert
+            assertEquals("page 1", first);
+            assertEquals("page 1", second);
+            assertEquals("page 2", changed);
+            assertEquals("page 3", older);
+            assertEquals(3, renders.get());
+    }
+
+    /***
+     * Testing method get(),
+     * when the pages are longer than the cache size - the least recently used page is evicted.
+     */
+    @Test
+    void get_cacheIsFull_evictsLeastRecentlyUsedPage() {
+        // Arrange
+            ListingCache cache = new ListingCache(10);
+            AtomicInteger renders = new AtomicInteger();
+            cache.get(1, List.of("a"), () -> "aaaa" + renders.incrementAndGet());
+            cache.get(1, List.of("b"), () -> "bbbb" + renders.incrementAndGet());
+        // Act
+            cache.get(1, List.of("a"), () -> "aaaa" + renders.incrementAndGet());
+            cache.get(1, List.of("c"), () -> "cccc" + renders.incrementAndGet());
+            String a = cache.get(1, List.of("a"), () -> "aaaa" + renders.incrementAndGet());
+            String b = cache.get(1, List.of("b"), () -> "bbbb" + renders.incrementAndGet());
+        // Assert
+            assertEquals("aaaa1", a);
+            assertEquals("bbbb4", b);
+            assertEquals(4, renders.get());
+    }
+
+    /***
+     * Testing method get(),
+     * when one query's page is rendered for a newer version - pages of the other queries stay cached.
+     */
+    @Test
+    void get_newerVersionOfOneQuery_keepsPagesOfOtherQueries() {
+        // Arrange
+            ListingCache cache = new ListingCache(1000);
+            AtomicInteger renders = new AtomicInteger();
+            cache.get(1, List.of("all"), () -> "all " + renders.incrementAndGet());
+            cache.get(1, List.of("author", "Author1"), () -> "author " + renders.incrementAndGet());
+        // Act
+            String all = cache.get(2, List.of("all"), () -> "all " + renders.incrementAndGet());
+            String author = cache.get(1, List.of("author", "Author1"), () -> "author " + renders.incrementAndGet());
+        // Assert
+            assertEquals("all 3", all);
+            assertEquals("author 2", author);
+            assertEquals(3, renders.get());
+    }
+}